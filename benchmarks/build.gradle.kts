@@ -0,0 +1,52 @@
+import com.android.build.gradle.LibraryExtension
+
+plugins {
+    java
+    id("me.champeau.jmh") version "0.6.8"
+}
+
+/**
+ * Plain JVM module that runs JMH benchmarks and install regression tests against pojlib's compiled classes,
+ * fully offline. Only code paths that don't touch the android framework at runtime can be run here,
+ * android.jar is only on the runtime classpath so classes referencing android types can be linked.
+ */
+evaluationDependsOn(":lib")
+
+val androidJar = files(project(":lib").extensions.getByType<LibraryExtension>().bootClasspath)
+val libClasses = files(project(":lib").layout.buildDirectory.dir("intermediates/javac/release/classes"))
+    .builtBy(":lib:compileReleaseJavaWithJavac")
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    implementation(libClasses)
+    compileOnly(androidJar)
+    jmhCompileOnly(androidJar)
+    jmhRuntimeOnly(androidJar)
+    testCompileOnly(androidJar)
+    testRuntimeOnly(androidJar)
+    testImplementation("junit:junit:4.13.2")
+
+    // Same versions as :lib
+    implementation("com.google.code.gson:gson:2.9.1")
+    implementation("commons-io:commons-io:2.11.0")
+    implementation("commons-codec:commons-codec:1.15")
+}
+
+tasks.test {
+    // Keeps Constants away from android's external storage
+    systemProperty("pojlib.storageDir", layout.buildDirectory.dir("test-storage").get().asFile.absolutePath)
+}
+
+jmh {
+    jmhVersion.set("1.36")
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+    // Same as the tests, the install benchmarks write to USER_HOME
+    jvmArgsAppend.add("-Dpojlib.storageDir=" + layout.buildDirectory.dir("jmh-storage").get().asFile.absolutePath)
+}
@@ -0,0 +1,72 @@
+package org.lwjgl.glfw;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A game poll's worth of controller samples through {@link InputQueue}, against sending every sample on its own.
+ * The sink stands in for the native bridge, the crossings counter is how many JNI calls that would have been.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InputQueueBenchmark {
+
+    // 120 Hz controller against a game polling at 120, 60 and 30 fps
+    @Param({"1", "2", "4"})
+    public int samplesPerPoll;
+
+    private InputQueue queue;
+    private Blackhole blackhole;
+    private long sinkCalls;
+    private float x;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Crossings {
+        public long crossings;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            crossings = 0;
+        }
+    }
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        queue = new InputQueue(64, (events, count) -> {
+            sinkCalls++;
+            blackhole.consume(events[(count - 1) * InputQueue.STRIDE + 1]);
+        });
+    }
+
+    private void send(float x, float y) {
+        sinkCalls++;
+        blackhole.consume(x);
+        blackhole.consume(y);
+    }
+
+    @Benchmark
+    public void direct(Crossings crossings) {
+        for (int i = 0; i < samplesPerPoll; i++) {
+            x += 0.25f;
+            send(x, x);
+        }
+        crossings.crossings += sinkCalls;
+        sinkCalls = 0;
+    }
+
+    @Benchmark
+    public void batched(Crossings crossings) {
+        for (int i = 0; i < samplesPerPoll; i++) {
+            x += 0.25f;
+            queue.cursorPos(x, x);
+        }
+        queue.flush();
+        crossings.crossings += sinkCalls;
+        sinkCalls = 0;
+    }
+}
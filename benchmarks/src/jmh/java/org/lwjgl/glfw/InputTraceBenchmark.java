@@ -0,0 +1,38 @@
+package org.lwjgl.glfw;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events per second through the input debug trace that every {@link CallbackBridge} send goes past.
+ * Run with {@code -prof gc} to see the allocation rate, which should stay at zero either way.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InputTraceBenchmark {
+
+    @Param({"false", "true"})
+    public boolean tracing;
+
+    private InputTrace trace;
+    private float x;
+
+    @Setup
+    public void setup() {
+        trace = new InputTrace(1024);
+        trace.setEnabled(tracing);
+    }
+
+    @Benchmark
+    public void cursorPos() {
+        x += 0.5f;
+        trace.record(InputTrace.CURSOR_POS, 0, 0, x, x);
+    }
+
+    @Benchmark
+    public void mouseButton() {
+        trace.record(InputTrace.MOUSE_BUTTON, 0, 1, 0, 0);
+    }
+}
@@ -0,0 +1,99 @@
+package pojlib.install;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import pojlib.bench.StandInServer;
+import pojlib.util.APIHandler;
+import pojlib.util.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads a whole asset index from {@link StandInServer} with the adaptive concurrency {@link Installer#installAssets}
+ * uses, against the fixed 5 threads it used before. Each profile throttles the stand-in server like a kind of link,
+ * the controller's stats for every run end up in the log.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class AssetDownloadBenchmark {
+
+    /** latency ms, link bytes per second */
+    public enum Profile {
+        LAN(1, 0),
+        BROADBAND(30, 12_500_000),
+        HEADSET_WIFI(60, 2_500_000),
+        WEAK_WIFI(150, 500_000);
+
+        final long latencyMs;
+        final long linkBytesPerSecond;
+
+        Profile(long latencyMs, long linkBytesPerSecond) {
+            this.latencyMs = latencyMs;
+            this.linkBytesPerSecond = linkBytesPerSecond;
+        }
+    }
+
+    @Param({"LAN", "BROADBAND", "HEADSET_WIFI", "WEAK_WIFI"})
+    public Profile profile;
+
+    private StandInServer server;
+    private VersionInfo versionInfo;
+    private File gameDir;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        new File(Constants.USER_HOME).mkdirs();
+        // Small objects like the real index, but fewer so the weak profile finishes in reasonable time
+        server = new StandInServer(600, 64 * 1024);
+        server.pointPojlibHere();
+        for (MinecraftMeta.MinecraftVersion version : MinecraftMeta.getVersions()) {
+            if (version.id.equals(StandInServer.MINECRAFT_VERSION)) versionInfo = MinecraftMeta.getVersionInfo(version);
+        }
+        server.setLatencyMs(profile.latencyMs);
+        server.setLinkBytesPerSecond(profile.linkBytesPerSecond);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() {
+        server.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyGameDir() throws IOException {
+        gameDir = Files.createTempDirectory("pojlib-assets").toFile();
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteGameDir() throws IOException {
+        FileUtils.deleteDirectory(gameDir);
+    }
+
+    @Benchmark
+    public String adaptive() throws Exception {
+        return Installer.installAssets(versionInfo, gameDir.getAbsolutePath()).get(10, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    public void fixedFiveThreads() throws InterruptedException {
+        JsonObject assets = APIHandler.getFullUrl(versionInfo.assetIndex.url, JsonObject.class);
+        ExecutorService tp = Executors.newFixedThreadPool(5);
+        for (Map.Entry<String, JsonElement> entry : assets.getAsJsonObject("objects").entrySet()) {
+            tp.execute(new Installer.DownloadTask(entry, versionInfo, gameDir.getAbsolutePath()));
+        }
+        tp.shutdown();
+        tp.awaitTermination(10, TimeUnit.MINUTES);
+    }
+}
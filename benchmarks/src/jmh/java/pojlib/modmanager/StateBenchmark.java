@@ -0,0 +1,62 @@
+package pojlib.modmanager;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import pojlib.bench.Fixtures;
+import pojlib.util.GsonUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instance and mod lookups on the mod manager state, plus the mods.json round trip done after every change
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StateBenchmark {
+
+    @Param({"2", "20"})
+    public int instances;
+
+    @Param({"50"})
+    public int mods;
+
+    private State state;
+    private String stateJson;
+    private String lastInstance;
+    private String lastMod;
+
+    @Setup
+    public void setup() {
+        state = Fixtures.state(instances, mods);
+        stateJson = GsonUtils.GLOBAL_GSON.toJson(state);
+        // Worst case, the lookups are linear and case insensitive
+        lastInstance = state.getInstances().get(instances - 1).getName().toUpperCase();
+        lastMod = "mod-" + (mods - 1);
+    }
+
+    @Benchmark
+    public void getInstanceAndMod(Blackhole bh) {
+        State.Instance instance = state.getInstance(lastInstance);
+        bh.consume(instance.getMod(lastMod));
+    }
+
+    @Benchmark
+    public List<ModData> getCoreMods() {
+        return state.getCoreMods("1.19.2");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public State parseModsJson() {
+        return GsonUtils.GLOBAL_GSON.fromJson(stateJson, State.class);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String writeModsJson() {
+        return GsonUtils.GLOBAL_GSON.toJson(state);
+    }
+}
@@ -0,0 +1,42 @@
+package pojlib.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import pojlib.bench.Fixtures;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FileUtil#read(String)} on a version json and on a full asset index
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FileUtilBenchmark {
+
+    @Param({"version", "assetIndex"})
+    public String fixture;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        String json = fixture.equals("version") ? Fixtures.versionJson() : Fixtures.assetIndexJson(Fixtures.ASSET_COUNT, 119);
+        file = Files.createTempFile("pojlib-read-bench", ".json");
+        Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public String read() throws IOException {
+        return FileUtil.read(file.toString());
+    }
+}
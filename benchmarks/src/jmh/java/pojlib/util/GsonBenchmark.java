@@ -0,0 +1,59 @@
+package pojlib.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import pojlib.bench.Fixtures;
+import pojlib.install.VersionInfo;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per call reflective Gson (what the installer used to do) against the shared {@link GsonUtils#GLOBAL_GSON}
+ * with its hand written adapters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GsonBenchmark {
+
+    private String versionJson;
+    private String assetIndexJson;
+
+    @Setup
+    public void setup() {
+        versionJson = Fixtures.versionJson();
+        assetIndexJson = Fixtures.assetIndexJson(Fixtures.ASSET_COUNT, 119);
+    }
+
+    @Benchmark
+    public VersionInfo versionJsonNewGson() {
+        return new Gson().fromJson(versionJson, VersionInfo.class);
+    }
+
+    @Benchmark
+    public VersionInfo versionJsonShared() {
+        return GsonUtils.GLOBAL_GSON.fromJson(versionJson, VersionInfo.class);
+    }
+
+    @Benchmark
+    public void assetIndexNewGson(Blackhole bh) {
+        JsonObject assets = new Gson().fromJson(assetIndexJson, JsonObject.class);
+        for (Map.Entry<String, JsonElement> entry : assets.getAsJsonObject("objects").entrySet()) {
+            bh.consume(new Gson().fromJson(entry.getValue(), VersionInfo.Asset.class));
+        }
+    }
+
+    @Benchmark
+    public void assetIndexShared(Blackhole bh) {
+        JsonObject assets = GsonUtils.GLOBAL_GSON.fromJson(assetIndexJson, JsonObject.class);
+        for (Map.Entry<String, JsonElement> entry : assets.getAsJsonObject("objects").entrySet()) {
+            bh.consume(GsonUtils.GLOBAL_GSON.fromJson(entry.getValue(), VersionInfo.Asset.class));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package pojlib.util;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import org.openjdk.jmh.annotations.*;
+
+import pojlib.bench.Fixtures;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DownloadUtils#compareSHA1(File, String)} on client/library sized files
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HashBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int sizeMb;
+
+    private Path dir;
+    private File file;
+    private String sha1;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("pojlib-hash-bench");
+        file = Fixtures.writeRandomFile(dir.resolve("file.jar"), sizeMb * 1024L * 1024L, sizeMb).toFile();
+        try (InputStream is = Files.newInputStream(file.toPath())) {
+            sha1 = new String(Hex.encodeHex(DigestUtils.sha1(is)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public boolean compareSHA1() {
+        if (!DownloadUtils.compareSHA1(file, sha1)) throw new IllegalStateException("Hash mismatch");
+        return true;
+    }
+}
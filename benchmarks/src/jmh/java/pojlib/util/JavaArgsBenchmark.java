@@ -0,0 +1,24 @@
+package pojlib.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JREUtils#parseJavaArguments(String)}, run through {@link JavaArgs} since JREUtils loads the native launcher
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JavaArgsBenchmark {
+
+    // A typical custom argument line, including a list value
+    @Param({"-Xms2048M -Xmx2048M -XX:+UseG1GC -XX:MaxGCPauseMillis=50 -XX:G1HeapRegionSize=16M -XX:-UseBiasedLocking -Dfabric.addMods=/sdcard/mods -Dlog4j2.formatMsgNoLookups=true -Djava.library.path=/a,/b,/c"})
+    public String args;
+
+    @Benchmark
+    public ArrayList<String> parse() {
+        return JavaArgs.parse(args);
+    }
+}
@@ -0,0 +1,40 @@
+package pojlib.util;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link Logger#appendToLog(String)} for the calling thread, with several threads logging at once
+ * like the download workers do
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+public class LoggerBenchmark {
+
+    private File dir;
+    private Logger logger;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("pojlib-logger").toFile();
+        logger = new Logger(new File(dir, "latestlog.txt"), Logger.DEFAULT_CAPACITY, Logger.MAX_FILE_BYTES);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        logger.shutdown();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public void appendToLog() {
+        logger.appendToLog("Downloading: https://resources.download.minecraft.net/ab/abcdef0123456789abcdef0123456789abcdef01");
+    }
+}
@@ -0,0 +1,45 @@
+package pojlib.util;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a download stream with a progress listener attached, the same way {@link DownloadUtils} copies it.
+ * Reads from memory so only the stream overhead is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StreamDLBenchmark {
+
+    @Param({"16384", "4194304"})
+    public int size;
+
+    private byte[] data;
+    private volatile double progress;
+
+    @Setup
+    public void setup() {
+        data = new byte[size];
+        new Random(size).nextBytes(data);
+    }
+
+    @Benchmark
+    public long plainCopy() throws IOException {
+        return IOUtils.copy(new ByteArrayInputStream(data), NullOutputStream.INSTANCE);
+    }
+
+    @Benchmark
+    public long streamDLCopy() throws IOException {
+        StreamDL in = new StreamDL(new ByteArrayInputStream(data));
+        in.addListener((b, count) -> progress = count * 0.000001);
+        return IOUtils.copy(in, NullOutputStream.INSTANCE);
+    }
+}
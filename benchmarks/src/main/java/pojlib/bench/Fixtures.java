@@ -0,0 +1,139 @@
+package pojlib.bench;
+
+import pojlib.modmanager.ModData;
+import pojlib.modmanager.State;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Offline stand-ins for the files pojlib normally downloads.
+ * Everything is deterministic so benchmark runs are comparable between machines and commits.
+ */
+public class Fixtures {
+
+    /** Roughly the number of objects in the 1.19 asset index */
+    public static final int ASSET_COUNT = 3400;
+
+    private static final String[] ASSET_DIRS = {
+            "minecraft/sounds/ambient/cave/", "minecraft/sounds/block/stone/", "minecraft/sounds/mob/zombie/",
+            "minecraft/sounds/music/game/", "minecraft/lang/", "minecraft/textures/gui/title/background/",
+            "realms/lang/", "minecraft/sounds/random/"
+    };
+
+    private Fixtures() {}
+
+    /**
+     * A 1.19.2 client version json with the same shape and library list as the one served by piston-meta,
+     * hashes and sizes are made up.
+     */
+    public static String versionJson() {
+        return resource("fixtures/version-1.19.2.json");
+    }
+
+    /**
+     * An asset index in the same format as resources.download.minecraft.net indexes
+     * @param count Number of objects in the index
+     * @param seed Seed for names, hashes and sizes
+     */
+    public static String assetIndexJson(int count, long seed) {
+        Random random = new Random(seed);
+        StringBuilder json = new StringBuilder(count * 110);
+        json.append("{\"objects\": {");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) json.append(", ");
+            String dir = ASSET_DIRS[random.nextInt(ASSET_DIRS.length)];
+            json.append('"').append(dir).append("asset").append(i).append(dir.contains("lang") ? ".json" : ".ogg").append("\": ");
+            json.append("{\"hash\": \"").append(randomSha1(random)).append("\", \"size\": ").append(assetSize(random)).append('}');
+        }
+        json.append("}}");
+        return json.toString();
+    }
+
+    /**
+     * Writes a file of random bytes, streamed so multi hundred MB fixtures don't need the heap
+     * @param path The file to write
+     * @param size Size in bytes
+     * @param seed Seed for the content
+     */
+    public static Path writeRandomFile(Path path, long size, long seed) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Random random = new Random(seed);
+        byte[] chunk = new byte[64 * 1024];
+        try (OutputStream out = Files.newOutputStream(path)) {
+            long remaining = size;
+            while (remaining > 0) {
+                random.nextBytes(chunk);
+                int len = (int) Math.min(chunk.length, remaining);
+                out.write(chunk, 0, len);
+                remaining -= len;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * A mod manager state like the one saved to mods.json
+     * @param instances Number of instances
+     * @param modsPerInstance Number of mods in each instance, also used for the core mods of every game version
+     */
+    public static State state(int instances, int modsPerInstance) {
+        Random random = new Random(instances * 31L + modsPerInstance);
+        State state = new State();
+        state.fabricLoaderVersion = "0.14.9";
+        for (int i = 0; i < instances; i++) {
+            State.Instance instance = new State.Instance();
+            String gameVersion = "1.19." + (i % 3);
+            instance.setName("fabric-loader-0.14.9-" + gameVersion + "-" + i);
+            instance.setGameVersion(gameVersion);
+            instance.setLoaderVersion("fabric-loader-0.14.9-" + gameVersion);
+            for (int m = 0; m < modsPerInstance; m++) instance.addMod(mod(random, m));
+            state.addInstance(instance);
+        }
+        for (int v = 0; v < 3; v++) {
+            for (int m = 0; m < modsPerInstance; m++) state.addCoreMod("1.19." + v, mod(random, m));
+        }
+        return state;
+    }
+
+    private static ModData mod(Random random, int index) {
+        ModData mod = new ModData();
+        mod.title = "Mod " + index;
+        mod.slug = "mod-" + index;
+        mod.iconUrl = "https://cdn.modrinth.com/data/" + index + "/icon.png";
+        mod.platform = "modrinth";
+        mod.isActive = random.nextBoolean();
+        mod.fileData.id = randomSha1(random).substring(0, 8);
+        mod.fileData.filename = mod.slug + "-1.0.0.jar";
+        mod.fileData.url = "https://cdn.modrinth.com/data/" + index + "/versions/" + mod.fileData.id + "/" + mod.fileData.filename;
+        return mod;
+    }
+
+    public static String randomSha1(Random random) {
+        byte[] bytes = new byte[20];
+        random.nextBytes(bytes);
+        StringBuilder hex = new StringBuilder(40);
+        for (byte b : bytes) hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return hex.toString();
+    }
+
+    // Most objects are a few KB, a handful of music files are several MB
+    private static int assetSize(Random random) {
+        if (random.nextInt(100) == 0) return 2_000_000 + random.nextInt(6_000_000);
+        return 500 + random.nextInt(20_000);
+    }
+
+    private static String resource(String name) {
+        try (InputStream in = Fixtures.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) throw new IllegalStateException("Missing fixture " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read fixture " + name, e);
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package pojlib.bench;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import pojlib.install.LoaderMeta;
+import pojlib.util.APIHandler;
+import pojlib.util.Constants;
+import pojlib.util.Mirrors;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded HTTP server standing in for piston-meta, resources.download.minecraft.net, the maven repos,
+ * the fabric/quilt meta apis and modrinth, so whole installs can run offline.
+ * <p>
+ * Everything served is synthetic and deterministic: one minecraft version ({@link #MINECRAFT_VERSION}) with its
+ * version json, asset index, asset objects, client jar and libraries, a fabric and a quilt loader profile with
+ * maven libraries, and a few modrinth projects with their mod jars. Hashes in the jsons match the served bytes.
+ * <p>
+ * Latency, bandwidth and failures can be changed at any time, including while an install is running.
+ */
+public class StandInServer implements Closeable {
+
+    public static final String MINECRAFT_VERSION = "1.19.2";
+    public static final String ASSET_INDEX = "1.19";
+    public static final String FABRIC_LOADER_VERSION = "0.14.9";
+    public static final String QUILT_LOADER_VERSION = "0.17.5";
+    public static final String[] MOD_SLUGS = {"sodium", "lithium", "modmenu"};
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "StandInServer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requestsPerPath = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> failuresPerPath = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger bytesSent = new AtomicInteger();
+    private final Random failureRandom = new Random(42);
+
+    private volatile long latencyMs;
+    private volatile long bytesPerSecond;
+    private volatile long linkBytesPerSecond;
+    // When the shared link is free again, in System.nanoTime
+    private long linkFreeAt;
+    private volatile double failureRate;
+    private volatile int failFirstAttempts;
+    private volatile int failureStatus = 503;
+
+    private String versionSha1;
+
+    /**
+     * Starts a server with 64 KB libraries and a small asset index, enough for regression tests
+     */
+    public static StandInServer start() throws IOException {
+        return new StandInServer(200, 64 * 1024);
+    }
+
+    /**
+     * @param assetCount Number of objects in the asset index, see {@link Fixtures#ASSET_COUNT} for a full sized one
+     * @param librarySize Size in bytes of every library jar, the client jar is 8 times that
+     */
+    public StandInServer(int assetCount, int librarySize) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        generate(assetCount, librarySize);
+    }
+
+    public String url() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * Points every base url in {@link Constants} at this server and drops cached api responses and loader versions
+     */
+    public void pointPojlibHere() {
+        Constants.MOJANG_META_URL = url() + "/meta";
+        Constants.MOJANG_RESOURCES_URL = url() + "/resources";
+        Constants.FABRIC_META_URL = url() + "/fabric";
+        Constants.QUILT_META_URL = url() + "/quilt";
+        Constants.MODRINTH_API_URL = url() + "/modrinth";
+        APIHandler.clearResponseCache();
+        Mirrors.reset();
+        for (LoaderMeta.Loader loader : LoaderMeta.Loader.values()) LoaderMeta.invalidate(loader);
+    }
+
+    /** Delay before every response starts */
+    public void setLatencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    /** Per connection bandwidth limit, 0 for unlimited */
+    public void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /** Bandwidth limit shared by all connections, like a slow Wi-Fi link, 0 for unlimited */
+    public void setLinkBytesPerSecond(long linkBytesPerSecond) {
+        this.linkBytesPerSecond = linkBytesPerSecond;
+    }
+
+    /** Chance of any request failing with {@link #setFailureStatus(int)} */
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /** Fail the first n requests to every path, then serve it normally */
+    public void setFailFirstAttempts(int failFirstAttempts) {
+        this.failFirstAttempts = failFirstAttempts;
+    }
+
+    /** The http status used for injected failures, 0 drops the connection halfway through the body instead */
+    public void setFailureStatus(int failureStatus) {
+        this.failureStatus = failureStatus;
+    }
+
+    public int getRequestCount() {
+        return requests.get();
+    }
+
+    public int getRequestCount(String path) {
+        AtomicInteger count = requestsPerPath.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public void resetCounters() {
+        requests.set(0);
+        bytesSent.set(0);
+        requestsPerPath.clear();
+        failuresPerPath.clear();
+    }
+
+    /** Adds or replaces a served file, the path doesn't include the server url */
+    public void putFile(String path, byte[] content) {
+        files.put(path, content);
+    }
+
+    /** Stops serving a file, requests for it get a 404 */
+    public byte[] removeFile(String path) {
+        return files.remove(path);
+    }
+
+    public byte[] getFile(String path) {
+        return files.get(path);
+    }
+
+    public String getVersionSha1() {
+        return versionSha1;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        requests.incrementAndGet();
+        requestsPerPath.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+        try {
+            sleep(latencyMs);
+            byte[] body = files.get(path);
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            boolean fail = failuresPerPath.computeIfAbsent(path, p -> new AtomicInteger()).getAndIncrement() < failFirstAttempts;
+            if (!fail && failureRate > 0) {
+                synchronized (failureRandom) {
+                    fail = failureRandom.nextDouble() < failureRate;
+                }
+            }
+            if (fail && failureStatus != 0) {
+                exchange.sendResponseHeaders(failureStatus, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", path.endsWith("json") ? "application/json" : "application/octet-stream");
+            exchange.sendResponseHeaders(200, body.length);
+            // A dropped connection sends half the promised body
+            int length = fail ? body.length / 2 : body.length;
+            writeThrottled(exchange.getResponseBody(), body, length);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void writeThrottled(OutputStream out, byte[] body, int length) throws IOException {
+        long start = System.nanoTime();
+        int chunk = 16 * 1024;
+        for (int sent = 0; sent < length; ) {
+            int len = Math.min(chunk, length - sent);
+            out.write(body, sent, len);
+            sent += len;
+            bytesSent.addAndGet(len);
+
+            long link = linkBytesPerSecond;
+            if (link > 0) sleepNanos(reserveLink(len * 1_000_000_000L / link));
+
+            long limit = bytesPerSecond;
+            if (limit > 0) {
+                long expectedNanos = sent * 1_000_000_000L / limit;
+                long aheadNanos = expectedNanos - (System.nanoTime() - start);
+                if (aheadNanos > 0) sleep(aheadNanos / 1_000_000);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Takes the next turn on the shared link
+     * @return How long to wait until the chunk has gone through
+     */
+    private synchronized long reserveLink(long nanos) {
+        long now = System.nanoTime();
+        linkFreeAt = Math.max(linkFreeAt, now) + nanos;
+        return linkFreeAt - now;
+    }
+
+    private static void sleepNanos(long nanos) {
+        if (nanos <= 0) return;
+        try {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void generate(int assetCount, int librarySize) {
+        Random random = new Random(1192);
+        String url = url();
+
+        // Assets
+        JsonObject objects = new JsonObject();
+        long totalSize = 0;
+        for (int i = 0; i < assetCount; i++) {
+            // Mostly tiny objects like the real index, with the odd big one
+            int size = random.nextInt(50) == 0 ? 256 * 1024 + random.nextInt(256 * 1024) : 200 + random.nextInt(8 * 1024);
+            byte[] content = randomBytes(random, size);
+            String hash = DigestUtils.sha1Hex(content);
+            files.put("/resources/" + hash.substring(0, 2) + "/" + hash, content);
+
+            JsonObject asset = new JsonObject();
+            asset.addProperty("hash", hash);
+            asset.addProperty("size", size);
+            objects.add("minecraft/generated/asset" + i + (i % 10 == 0 ? ".json" : ".ogg"), asset);
+            totalSize += size;
+        }
+        JsonObject assetIndexJson = new JsonObject();
+        assetIndexJson.add("objects", objects);
+        byte[] assetIndex = json(assetIndexJson);
+        String assetIndexSha1 = DigestUtils.sha1Hex(assetIndex);
+        files.put("/meta/v1/packages/" + assetIndexSha1 + "/" + ASSET_INDEX + ".json", assetIndex);
+
+        // Client
+        byte[] client = randomBytes(random, librarySize * 8);
+        String clientSha1 = DigestUtils.sha1Hex(client);
+        files.put("/data/v1/objects/" + clientSha1 + "/client.jar", client);
+
+        // Vanilla libraries
+        JsonArray libraries = new JsonArray();
+        String[] libraryNames = {
+                "com.mojang:logging:1.0.0", "com.mojang:brigadier:1.0.18", "com.mojang:datafixerupper:5.0.28",
+                "com.mojang:authlib:3.11.49", "com.google.guava:guava:31.0.1-jre", "com.google.code.gson:gson:2.8.9",
+                "io.netty:netty-common:4.1.77.Final", "io.netty:netty-buffer:4.1.77.Final", "it.unimi.dsi:fastutil:8.5.6",
+                "org.apache.logging.log4j:log4j-api:2.17.0", "org.apache.logging.log4j:log4j-core:2.17.0",
+                "org.lwjgl:lwjgl:3.3.1", "org.lwjgl:lwjgl-glfw:3.3.1"
+        };
+        for (String name : libraryNames) {
+            String path = mavenPath(name);
+            byte[] jar = randomBytes(random, librarySize);
+            files.put("/libraries/" + path, jar);
+
+            JsonObject artifact = new JsonObject();
+            artifact.addProperty("path", path);
+            artifact.addProperty("sha1", DigestUtils.sha1Hex(jar));
+            artifact.addProperty("size", jar.length);
+            artifact.addProperty("url", url + "/libraries/" + path);
+            JsonObject downloads = new JsonObject();
+            downloads.add("artifact", artifact);
+            JsonObject library = new JsonObject();
+            library.add("downloads", downloads);
+            library.addProperty("name", name);
+            libraries.add(library);
+        }
+
+        // Version json and manifest
+        JsonObject versionJson = new JsonObject();
+        JsonObject arguments = new JsonObject();
+        arguments.add("game", new JsonArray());
+        arguments.add("jvm", new JsonArray());
+        versionJson.add("arguments", arguments);
+        JsonObject assetIndexRef = new JsonObject();
+        assetIndexRef.addProperty("id", ASSET_INDEX);
+        assetIndexRef.addProperty("sha1", assetIndexSha1);
+        assetIndexRef.addProperty("size", assetIndex.length);
+        assetIndexRef.addProperty("totalSize", totalSize);
+        assetIndexRef.addProperty("url", url + "/meta/v1/packages/" + assetIndexSha1 + "/" + ASSET_INDEX + ".json");
+        versionJson.add("assetIndex", assetIndexRef);
+        versionJson.addProperty("assets", ASSET_INDEX);
+        JsonObject clientRef = new JsonObject();
+        clientRef.addProperty("sha1", clientSha1);
+        clientRef.addProperty("size", client.length);
+        clientRef.addProperty("url", url + "/data/v1/objects/" + clientSha1 + "/client.jar");
+        JsonObject versionDownloads = new JsonObject();
+        versionDownloads.add("client", clientRef);
+        versionJson.add("downloads", versionDownloads);
+        versionJson.addProperty("id", MINECRAFT_VERSION);
+        versionJson.add("libraries", libraries);
+        versionJson.addProperty("mainClass", "net.minecraft.client.main.Main");
+        versionJson.addProperty("type", "release");
+        byte[] version = json(versionJson);
+        versionSha1 = DigestUtils.sha1Hex(version);
+        files.put("/meta/v1/packages/" + versionSha1 + "/" + MINECRAFT_VERSION + ".json", version);
+
+        JsonObject manifestVersion = new JsonObject();
+        manifestVersion.addProperty("id", MINECRAFT_VERSION);
+        manifestVersion.addProperty("type", "release");
+        manifestVersion.addProperty("url", url + "/meta/v1/packages/" + versionSha1 + "/" + MINECRAFT_VERSION + ".json");
+        manifestVersion.addProperty("sha1", versionSha1);
+        JsonArray manifestVersions = new JsonArray();
+        manifestVersions.add(manifestVersion);
+        JsonObject latest = new JsonObject();
+        latest.addProperty("release", MINECRAFT_VERSION);
+        latest.addProperty("snapshot", MINECRAFT_VERSION);
+        JsonObject manifest = new JsonObject();
+        manifest.add("latest", latest);
+        manifest.add("versions", manifestVersions);
+        files.put("/meta/mc/game/version_manifest_v2.json", json(manifest));
+
+        // Mod loaders
+        generateLoader(random, "fabric", FABRIC_LOADER_VERSION, "net.fabricmc:fabric-loader", "net.fabricmc.loader.impl.launch.knot.KnotClient", librarySize);
+        generateLoader(random, "quilt", QUILT_LOADER_VERSION, "org.quiltmc:quilt-loader", "org.quiltmc.loader.impl.launch.knot.KnotClient", librarySize);
+
+        // Modrinth
+        for (String slug : MOD_SLUGS) {
+            String filename = slug + "-1.0.0.jar";
+            files.put("/mods/" + filename, randomBytes(random, librarySize));
+
+            JsonObject project = new JsonObject();
+            project.addProperty("title", slug);
+            project.addProperty("slug", slug);
+            project.addProperty("icon_url", url + "/mods/" + slug + ".png");
+            project.addProperty("body", "Stand-in project");
+            files.put("/modrinth/project/" + slug, json(project));
+
+            JsonObject file = new JsonObject();
+            file.addProperty("url", url + "/mods/" + filename);
+            file.addProperty("filename", filename);
+            JsonArray modFiles = new JsonArray();
+            modFiles.add(file);
+            JsonArray loaders = new JsonArray();
+            loaders.add("fabric");
+            JsonArray gameVersions = new JsonArray();
+            gameVersions.add(MINECRAFT_VERSION);
+            JsonObject modVersion = new JsonObject();
+            modVersion.addProperty("id", slug.substring(0, 3) + "100");
+            modVersion.add("loaders", loaders);
+            modVersion.add("game_versions", gameVersions);
+            modVersion.add("files", modFiles);
+            JsonArray modVersions = new JsonArray();
+            modVersions.add(modVersion);
+            files.put("/modrinth/project/" + slug + "/version", json(modVersions));
+        }
+    }
+
+    private void generateLoader(Random random, String name, String loaderVersion, String loaderArtifact, String mainClass, int librarySize) {
+        JsonObject loader = new JsonObject();
+        loader.addProperty("version", loaderVersion);
+        loader.addProperty("stable", true);
+        JsonArray loaders = new JsonArray();
+        loaders.add(loader);
+        files.put("/" + name + "/versions/loader", json(loaders));
+
+        JsonArray libraries = new JsonArray();
+        for (String library : new String[]{loaderArtifact + ":" + loaderVersion, "org.ow2.asm:asm:9.3", "net.fabricmc:sponge-mixin:0.11.4+mixin.0.8.5"}) {
+            String path = mavenPath(library);
+            byte[] jar = randomBytes(random, librarySize);
+            files.put("/maven/" + path, jar);
+            files.put("/maven/" + path + ".sha1", DigestUtils.sha1Hex(jar).getBytes(StandardCharsets.UTF_8));
+
+            JsonObject entry = new JsonObject();
+            entry.addProperty("name", library);
+            entry.addProperty("url", url() + "/maven/");
+            libraries.add(entry);
+        }
+
+        JsonObject profile = new JsonObject();
+        profile.addProperty("id", name + "-loader-" + loaderVersion + "-" + MINECRAFT_VERSION);
+        profile.addProperty("inheritsFrom", MINECRAFT_VERSION);
+        profile.addProperty("type", "release");
+        profile.addProperty("mainClass", mainClass);
+        profile.add("libraries", libraries);
+        files.put("/" + name + "/versions/loader/" + MINECRAFT_VERSION + "/" + loaderVersion + "/profile/json", json(profile));
+    }
+
+    private static String mavenPath(String name) {
+        String[] parts = name.split(":");
+        return parts[0].replace('.', '/') + "/" + parts[1] + "/" + parts[2] + "/" + parts[1] + "-" + parts[2] + ".jar";
+    }
+
+    private static byte[] randomBytes(Random random, int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] json(Object json) {
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,82 @@
+package org.lwjgl.glfw;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InputQueueTest {
+
+    private final List<double[]> batches = new ArrayList<>();
+    private InputQueue queue;
+
+    @Before
+    public void setUp() {
+        queue = new InputQueue(4, (events, count) -> batches.add(Arrays.copyOf(events, count * InputQueue.STRIDE)));
+    }
+
+    @Test
+    public void keepsOnlyTheLastOfConsecutiveCursorMoves() {
+        assertTrue(queue.cursorPos(1, 1));
+        assertFalse(queue.cursorPos(2, 3));
+        assertFalse(queue.cursorPos(4, 5));
+        queue.flush();
+
+        assertEquals(1, batches.size());
+        assertArrayEquals(new double[]{InputQueue.EVENT_CURSOR_POS, 4, 5}, batches.get(0), 0);
+    }
+
+    @Test
+    public void addsUpConsecutiveScrolls() {
+        queue.scroll(0, 1);
+        queue.scroll(0, 1);
+        queue.scroll(0.5, -3);
+        queue.flush();
+
+        assertArrayEquals(new double[]{InputQueue.EVENT_SCROLL, 0.5, -1}, batches.get(0), 0);
+    }
+
+    @Test
+    public void keepsTheOrderOfDifferentEvents() {
+        queue.cursorPos(1, 1);
+        queue.scroll(0, 1);
+        queue.cursorPos(2, 2);
+        queue.cursorPos(3, 3);
+        queue.flush();
+
+        assertArrayEquals(new double[]{
+                InputQueue.EVENT_CURSOR_POS, 1, 1,
+                InputQueue.EVENT_SCROLL, 0, 1,
+                InputQueue.EVENT_CURSOR_POS, 3, 3}, batches.get(0), 0);
+    }
+
+    @Test
+    public void flushesByItselfWhenFull() {
+        for (int i = 0; i < 5; i++) {
+            queue.cursorPos(i, i);
+            queue.scroll(0, 1);
+        }
+
+        assertEquals(2, batches.size());
+        assertEquals(4 * InputQueue.STRIDE, batches.get(0).length);
+        assertEquals(2, queue.getPendingCount());
+    }
+
+    @Test
+    public void emptyFlushSendsNothing() {
+        queue.flush();
+        queue.cursorPos(1, 1);
+        queue.flush();
+        queue.flush();
+
+        assertEquals(1, batches.size());
+        assertTrue(queue.cursorPos(2, 2));
+    }
+}
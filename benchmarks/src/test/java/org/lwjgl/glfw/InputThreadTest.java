@@ -0,0 +1,95 @@
+package org.lwjgl.glfw;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InputThreadTest {
+
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final List<Thread> senders = new CopyOnWriteArrayList<>();
+    private volatile Thread attachedThread;
+    private InputThread input;
+
+    @Before
+    public void setUp() {
+        input = new InputThread(4, 50, () -> {
+            attachedThread = Thread.currentThread();
+            return true;
+        }, (events, count) -> {
+            senders.add(Thread.currentThread());
+            StringBuilder batch = new StringBuilder("batch");
+            for (int i = 0; i < count; i++) {
+                int offset = i * InputQueue.STRIDE;
+                batch.append(events[offset] == InputQueue.EVENT_CURSOR_POS ? " cursor " : " scroll ")
+                        .append((int) events[offset + 1]).append(',').append((int) events[offset + 2]);
+            }
+            sent.add(batch.toString());
+        });
+    }
+
+    @Test
+    public void sendsOnTheAttachedThread() throws InterruptedException {
+        input.cursorPos(1, 1);
+        input.post(() -> {
+            senders.add(Thread.currentThread());
+            sent.add("key");
+        });
+        input.scroll(0, 1);
+        await();
+
+        assertEquals(Arrays.asList("batch cursor 1,1", "key", "batch scroll 0,1"), sent);
+        assertNotEquals(Thread.currentThread(), attachedThread);
+        for (Thread sender : senders) assertEquals(attachedThread, sender);
+    }
+
+    @Test
+    public void keepsOrderWithKeysFromOtherThreads() throws InterruptedException {
+        input.cursorPos(1, 1);
+        input.cursorPos(2, 2);
+        Thread keys = new Thread(() -> input.post(() -> sent.add("key")));
+        keys.start();
+        keys.join();
+        input.cursorPos(3, 3);
+        input.scroll(0, 1);
+        input.flush();
+        input.post(() -> sent.add("key"));
+        await();
+
+        assertEquals(Arrays.asList("batch cursor 2,2", "key", "batch cursor 3,3 scroll 0,1", "key"), sent);
+    }
+
+    @Test
+    public void flushesAfterTheBatchWindow() throws InterruptedException {
+        CountDownLatch flushed = new CountDownLatch(1);
+        input.cursorPos(1, 1);
+        input.scroll(0, 1);
+        input.post(flushed::countDown);
+        assertTrue(flushed.await(5, TimeUnit.SECONDS));
+        sent.clear();
+
+        long start = System.nanoTime();
+        input.cursorPos(2, 2);
+        input.cursorPos(3, 3);
+        while (sent.isEmpty() && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) Thread.sleep(5);
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(Arrays.asList("batch cursor 3,3"), sent);
+    }
+
+    // Everything posted before has been sent
+    private void await() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        input.post(done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+}
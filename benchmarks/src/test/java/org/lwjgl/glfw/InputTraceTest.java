@@ -0,0 +1,56 @@
+package org.lwjgl.glfw;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InputTraceTest {
+
+    @Test
+    public void recordsNothingWhenDisabled() {
+        InputTrace trace = new InputTrace(16);
+        trace.record(InputTrace.CURSOR_POS, 0, 0, 1, 2);
+        assertEquals("", trace.dump());
+    }
+
+    @Test
+    public void keepsOnlyTheLastEvents() {
+        InputTrace trace = new InputTrace(4);
+        trace.setEnabled(true);
+        for (int i = 0; i < 10; i++) trace.record(InputTrace.MOUSE_BUTTON, i, 1, 0, 0);
+
+        String[] lines = trace.dump().split("\n");
+        assertEquals(4, lines.length);
+        assertEquals("MouseKey=6, down=true", lines[0]);
+        assertEquals("MouseKey=9, down=true", lines[3]);
+    }
+
+    @Test
+    public void formatsEveryType() {
+        InputTrace trace = new InputTrace(8);
+        trace.setEnabled(true);
+        trace.record(InputTrace.CURSOR_POS, 0, 0, 1.5f, 2.5f);
+        trace.record(InputTrace.KEY, 65, 'a', 1, 0);
+        trace.record(InputTrace.SCROLL, 0, 0, 0, -1);
+
+        assertEquals("CursorPos=1.5, 2.5\nKeyCode=65, Char=a, down=true\nScrollX=0.0, ScrollY=-1.0\n", trace.dump());
+    }
+
+    @Test
+    public void recordingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        InputTrace trace = new InputTrace(1024);
+        trace.setEnabled(true);
+        // Let the jit settle first
+        for (int i = 0; i < 200_000; i++) trace.record(InputTrace.CURSOR_POS, 0, 0, i, i);
+
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < 1_000_000; i++) trace.record(InputTrace.CURSOR_POS, 0, 0, i, i);
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+        // A few bytes of noise from the measurement itself, not a million events worth
+        assertTrue("Allocated " + allocated + " bytes", allocated < 4096);
+    }
+}
@@ -0,0 +1,123 @@
+package org.lwjgl.glfw;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeyStateTest {
+
+    @Test
+    public void buildsModsFromHeldKeys() {
+        KeyState state = new KeyState();
+        state.set(KeyState.KEY_RIGHT_SHIFT, true);
+        state.set(KeyState.KEY_LEFT_CONTROL, true);
+        assertEquals(KeyState.MOD_SHIFT | KeyState.MOD_CONTROL, state.getMods());
+
+        state.set(KeyState.KEY_RIGHT_SHIFT, false);
+        assertEquals(KeyState.MOD_CONTROL, state.getMods());
+        assertTrue(state.isDown(KeyState.KEY_LEFT_CONTROL));
+        assertFalse(state.isDown(KeyState.KEY_RIGHT_SHIFT));
+    }
+
+    @Test
+    public void locksFlipOnPressOnly() {
+        KeyState state = new KeyState();
+        state.set(KeyState.KEY_CAPS_LOCK, true);
+        // Key repeat
+        state.set(KeyState.KEY_CAPS_LOCK, true);
+        state.set(KeyState.KEY_CAPS_LOCK, false);
+        assertEquals(KeyState.MOD_CAPS_LOCK, state.getMods());
+
+        state.set(KeyState.KEY_CAPS_LOCK, true);
+        state.set(KeyState.KEY_CAPS_LOCK, false);
+        assertEquals(0, state.getMods());
+    }
+
+    @Test
+    public void ignoresKeysOutsideGlfw() {
+        KeyState state = new KeyState();
+        state.set(-1, true);
+        state.set(KeyState.KEY_LAST + 1, true);
+        assertFalse(state.isDown(-1));
+        assertEquals(0, state.getMods());
+    }
+
+    @Test
+    public void concurrentWritersLoseNoUpdates() throws InterruptedException {
+        KeyState state = new KeyState();
+        int threads = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            // Neighbouring keys, so every writer competes for the same word
+            int key = 65 + t;
+            Thread writer = new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < 100_000; i++) {
+                    state.set(key, true);
+                    state.set(key, false);
+                }
+                state.set(key, true);
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        start.countDown();
+        for (Thread writer : writers) writer.join();
+
+        for (int t = 0; t < threads; t++) assertTrue(state.isDown(65 + t));
+        assertFalse(state.isDown(65 + threads));
+    }
+
+    @Test
+    public void readerNeverSeesTornMods() throws InterruptedException {
+        KeyState state = new KeyState();
+        // Held for the whole test, like a shift the player never lets go of
+        state.set(KeyState.KEY_LEFT_SHIFT, true);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger bad = new AtomicInteger();
+
+        // Input thread
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 200_000; i++) {
+                state.set(KeyState.KEY_RIGHT_SHIFT, true);
+                state.set(KeyState.KEY_LEFT_ALT, true);
+                state.set(KeyState.KEY_RIGHT_SHIFT, false);
+                state.set(KeyState.KEY_LEFT_ALT, false);
+            }
+            running.set(false);
+        });
+        // Game thread
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                int mods = state.getMods();
+                if ((mods & KeyState.MOD_SHIFT) == 0 || (mods & ~(KeyState.MOD_SHIFT | KeyState.MOD_ALT)) != 0) {
+                    bad.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+        writer.start();
+        writer.join();
+        reader.join();
+
+        assertEquals(0, bad.get());
+        assertEquals(KeyState.MOD_SHIFT, state.getMods());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package pojlib.install;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import pojlib.bench.StandInServer;
+import pojlib.util.APIHandler;
+import pojlib.util.Constants;
+import pojlib.util.HttpStatusException;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the installer against {@link StandInServer} instead of the real mojang/fabric/quilt servers
+ */
+public class InstallerTest {
+
+    private static StandInServer server;
+    private File gameDir;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        new File(Constants.USER_HOME).mkdirs();
+        server = StandInServer.start();
+        server.pointPojlibHere();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.close();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server.setLatencyMs(0);
+        server.setFailFirstAttempts(0);
+        server.setFailureRate(0);
+        server.setFailureStatus(503);
+        server.resetCounters();
+        gameDir = Files.createTempDirectory("pojlib-install").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(gameDir);
+    }
+
+    private static MinecraftMeta.MinecraftVersion minecraftVersion() {
+        for (MinecraftMeta.MinecraftVersion version : MinecraftMeta.getVersions()) {
+            if (version.id.equals(StandInServer.MINECRAFT_VERSION)) return version;
+        }
+        throw new AssertionError("Stand-in manifest is missing " + StandInServer.MINECRAFT_VERSION);
+    }
+
+    private static <T> T await(java.util.concurrent.CompletableFuture<T> future) throws Exception {
+        return future.get(30, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void installsClient() throws Exception {
+        VersionInfo versionInfo = MinecraftMeta.getVersionInfo(minecraftVersion());
+        String clientPath = await(Installer.installClient(versionInfo, gameDir.getAbsolutePath()));
+
+        assertArrayEquals(server.getFile("/data/v1/objects/" + versionInfo.downloads.client.sha1 + "/client.jar"),
+                Files.readAllBytes(new File(clientPath).toPath()));
+
+        // Already installed, nothing is downloaded again
+        server.resetCounters();
+        await(Installer.installClient(versionInfo, gameDir.getAbsolutePath()));
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void replacesCorruptClient() throws Exception {
+        VersionInfo versionInfo = MinecraftMeta.getVersionInfo(minecraftVersion());
+        File clientFile = new File(await(Installer.installClient(versionInfo, gameDir.getAbsolutePath())));
+        Files.write(clientFile.toPath(), new byte[]{1, 2, 3});
+
+        await(Installer.installClient(versionInfo, gameDir.getAbsolutePath()));
+        assertArrayEquals(server.getFile("/data/v1/objects/" + versionInfo.downloads.client.sha1 + "/client.jar"),
+                Files.readAllBytes(clientFile.toPath()));
+    }
+
+    @Test
+    public void missingAssetFailsTheStage() throws Exception {
+        VersionInfo versionInfo = MinecraftMeta.getVersionInfo(minecraftVersion());
+        JsonObject objects = APIHandler.getFullUrl(versionInfo.assetIndex.url, JsonObject.class).getAsJsonObject("objects");
+        String hash = objects.entrySet().iterator().next().getValue().getAsJsonObject().get("hash").getAsString();
+        String path = "/resources/" + hash.substring(0, 2) + "/" + hash;
+        byte[] content = server.removeFile(path);
+        try {
+            await(Installer.installAssets(versionInfo, gameDir.getAbsolutePath()));
+            fail("Install succeeded without " + path);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (!(cause instanceof HttpStatusException)) cause = cause.getCause();
+            assertEquals(404, ((HttpStatusException) cause).status);
+            // A 404 isn't retried, small assets try once pipelined and once on their own
+            assertTrue(server.getRequestCount(path) <= 2);
+        } finally {
+            server.putFile(path, content);
+        }
+    }
+
+    @Test
+    public void installsAssets() throws Exception {
+        VersionInfo versionInfo = MinecraftMeta.getVersionInfo(minecraftVersion());
+        String assetsDir = await(Installer.installAssets(versionInfo, gameDir.getAbsolutePath()));
+
+        JsonObject objects = JsonParser.parseString(new String(Files.readAllBytes(
+                new File(assetsDir, "indexes/" + versionInfo.assets + ".json").toPath()), StandardCharsets.UTF_8)).getAsJsonObject().getAsJsonObject("objects");
+        for (Map.Entry<String, JsonElement> entry : objects.entrySet()) {
+            String hash = entry.getValue().getAsJsonObject().get("hash").getAsString();
+            String path = hash.substring(0, 2) + "/" + hash;
+            assertArrayEquals(entry.getKey(), server.getFile("/resources/" + path), Files.readAllBytes(new File(assetsDir, "objects/" + path).toPath()));
+        }
+    }
+
+    @Test
+    public void installsAssetsWhenPipelinedRequestsFail() throws Exception {
+        VersionInfo versionInfo = MinecraftMeta.getVersionInfo(minecraftVersion());
+        // Every object fails once, the batches fall back to one request per object
+        server.setFailFirstAttempts(1);
+        failIndexOnce(versionInfo);
+        assertAssetsInstalled(await(Installer.installAssets(versionInfo, gameDir.getAbsolutePath())));
+    }
+
+    @Test
+    public void installsAssetsWhenConnectionsDrop() throws Exception {
+        VersionInfo versionInfo = MinecraftMeta.getVersionInfo(minecraftVersion());
+        server.setFailFirstAttempts(1);
+        server.setFailureStatus(0);
+        failIndexOnce(versionInfo);
+        assertAssetsInstalled(await(Installer.installAssets(versionInfo, gameDir.getAbsolutePath())));
+    }
+
+    @Test
+    public void reinstallSkipsSmallAssets() throws Exception {
+        VersionInfo versionInfo = MinecraftMeta.getVersionInfo(minecraftVersion());
+        await(Installer.installAssets(versionInfo, gameDir.getAbsolutePath()));
+
+        server.resetCounters();
+        String assetsDir = await(Installer.installAssets(versionInfo, gameDir.getAbsolutePath()));
+        JsonObject objects = readIndex(assetsDir);
+        for (Map.Entry<String, JsonElement> entry : objects.entrySet()) {
+            String hash = entry.getValue().getAsJsonObject().get("hash").getAsString();
+            assertEquals(entry.getKey(), 0, server.getRequestCount("/resources/" + hash.substring(0, 2) + "/" + hash));
+        }
+    }
+
+    @Test
+    public void reinstallReplacesSmallAssetsCutShort() throws Exception {
+        VersionInfo versionInfo = MinecraftMeta.getVersionInfo(minecraftVersion());
+        String assetsDir = await(Installer.installAssets(versionInfo, gameDir.getAbsolutePath()));
+        // What a crash while writing can leave
+        String hash = readIndex(assetsDir).entrySet().iterator().next().getValue().getAsJsonObject().get("hash").getAsString();
+        File object = new File(assetsDir, "objects/" + hash.substring(0, 2) + "/" + hash);
+        Files.write(object.toPath(), Arrays.copyOf(Files.readAllBytes(object.toPath()), (int) object.length() / 2));
+
+        await(Installer.installAssets(versionInfo, gameDir.getAbsolutePath()));
+        assertAssetsInstalled(assetsDir);
+    }
+
+    /**
+     * Uses up the failed first attempt of the asset index, the failures are meant for the objects
+     */
+    private static void failIndexOnce(VersionInfo versionInfo) {
+        APIHandler.clearResponseCache();
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL(versionInfo.assetIndex.url).openConnection();
+            IOUtils.toByteArray(conn.getInputStream());
+        } catch (IOException ignored) {}
+    }
+
+    private static JsonObject readIndex(String assetsDir) throws IOException {
+        return JsonParser.parseString(new String(Files.readAllBytes(
+                new File(assetsDir, "indexes/" + StandInServer.ASSET_INDEX + ".json").toPath()), StandardCharsets.UTF_8)).getAsJsonObject().getAsJsonObject("objects");
+    }
+
+    private void assertAssetsInstalled(String assetsDir) throws IOException {
+        JsonObject objects = readIndex(assetsDir);
+        for (Map.Entry<String, JsonElement> entry : objects.entrySet()) {
+            String hash = entry.getValue().getAsJsonObject().get("hash").getAsString();
+            String path = hash.substring(0, 2) + "/" + hash;
+            assertArrayEquals(entry.getKey(), server.getFile("/resources/" + path), Files.readAllBytes(new File(assetsDir, "objects/" + path).toPath()));
+        }
+    }
+
+    @Test
+    public void installsVanillaAndFabricLibraries() throws Exception {
+        MinecraftMeta.MinecraftVersion minecraftVersion = minecraftVersion();
+        VersionInfo vanilla = MinecraftMeta.getVersionInfo(minecraftVersion);
+        VersionInfo fabric = FabricMeta.getVersionInfo(FabricMeta.getLatestStableVersion(), minecraftVersion);
+        assertEquals(StandInServer.FABRIC_LOADER_VERSION, LoaderMeta.getLatestVersion(LoaderMeta.Loader.FABRIC));
+
+        String vanillaClasspath = await(Installer.installLibraries(vanilla, gameDir.getAbsolutePath()));
+        String fabricClasspath = await(Installer.installLibraries(fabric, gameDir.getAbsolutePath()));
+
+        for (VersionInfo.Library library : vanilla.libraries) {
+            if (library.downloads.artifact.path.contains("lwjgl")) continue;
+            File file = new File(gameDir, "libraries/" + library.downloads.artifact.path);
+            assertTrue(library.name, file.exists());
+            assertTrue(library.name, vanillaClasspath.contains(file.getAbsolutePath()));
+        }
+        for (VersionInfo.Library library : fabric.libraries) {
+            String[] parts = library.name.split(":");
+            String path = parts[0].replace('.', '/') + "/" + parts[1] + "/" + parts[2] + "/" + parts[1] + "-" + parts[2] + ".jar";
+            File file = new File(gameDir, "libraries/" + path);
+            assertArrayEquals(library.name, server.getFile("/maven/" + path), Files.readAllBytes(file.toPath()));
+            assertTrue(library.name, fabricClasspath.contains(file.getAbsolutePath()));
+        }
+    }
+
+    @Test
+    public void installsQuiltProfile() throws Exception {
+        VersionInfo quilt = QuiltMeta.getVersionInfo(QuiltMeta.getLatestVersion(), minecraftVersion());
+        assertEquals(StandInServer.QUILT_LOADER_VERSION, LoaderMeta.getLatestVersion(LoaderMeta.Loader.QUILT));
+        assertEquals("org.quiltmc.loader.impl.launch.knot.KnotClient", quilt.mainClass);
+        await(Installer.installLibraries(quilt, gameDir.getAbsolutePath()));
+    }
+
+    @Test
+    public void installsOverSlowConnection() throws Exception {
+        VersionInfo versionInfo = MinecraftMeta.getVersionInfo(minecraftVersion());
+        server.setLatencyMs(50);
+        server.setBytesPerSecond(4 * 1024 * 1024);
+
+        long start = System.nanoTime();
+        String clientPath = await(Installer.installClient(versionInfo, gameDir.getAbsolutePath()));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        server.setBytesPerSecond(0);
+        // 512 KB at 4 MB/s plus the latency
+        assertTrue("Throttling wasn't applied, took " + elapsedMs + "ms", elapsedMs >= 150);
+        assertArrayEquals(server.getFile("/data/v1/objects/" + versionInfo.downloads.client.sha1 + "/client.jar"),
+                Files.readAllBytes(new File(clientPath).toPath()));
+    }
+
+    @Test
+    public void fallsBackWhenLoaderMetaIsDown() {
+        server.setFailFirstAttempts(Integer.MAX_VALUE);
+        // Earlier tests leave the loader list in the response cache
+        APIHandler.clearResponseCache();
+        try {
+            LoaderMeta.invalidate(LoaderMeta.Loader.FABRIC);
+            assertEquals(LoaderMeta.Loader.FABRIC.fallbackVersion, LoaderMeta.getLatestVersion(LoaderMeta.Loader.FABRIC));
+            assertEquals(1, server.getRequestCount("/fabric/versions/loader"));
+        } finally {
+            server.setFailFirstAttempts(0);
+            LoaderMeta.invalidate(LoaderMeta.Loader.FABRIC);
+        }
+    }
+}
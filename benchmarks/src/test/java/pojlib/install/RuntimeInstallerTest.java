@@ -0,0 +1,235 @@
+package pojlib.install;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import pojlib.util.Constants;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RuntimeInstallerTest {
+
+    private final Random random = new Random(17);
+    private final Map<String, byte[]> files = new LinkedHashMap<>();
+    private final AtomicInteger zipOpens = new AtomicInteger();
+    private File runtimeDir;
+
+    @BeforeClass
+    public static void createHome() {
+        new File(Constants.USER_HOME).mkdirs();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        // A few big files like libjvm.so and modules, and many small ones
+        for (int i = 0; i < 3; i++) files.put("lib/big" + i + ".so", bytes(5 * 1024 * 1024 + i));
+        for (int i = 0; i < 300; i++) files.put("lib/small/file" + i, bytes(random.nextInt(64 * 1024)));
+        files.put("release", "JAVA_VERSION=\"17\"".getBytes());
+        runtimeDir = Files.createTempDirectory("pojlib-runtime").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(runtimeDir);
+    }
+
+    @Test
+    public void extractsEverything() throws IOException {
+        install(files);
+
+        assertTrue(new File(runtimeDir, RuntimeInstaller.INSTALLED_MANIFEST).exists());
+        assertFiles(files);
+        assertEquals(1, RuntimeInstaller.getProgress(), 0);
+    }
+
+    @Test
+    public void doesNothingWhenUpToDate() throws IOException {
+        install(files);
+        zipOpens.set(0);
+        install(files);
+        assertEquals(0, zipOpens.get());
+    }
+
+    @Test
+    public void resumesInterruptedExtraction() throws IOException {
+        byte[] zip = zip(files);
+        try {
+            RuntimeInstaller.update(() -> new FailingInputStream(new ByteArrayInputStream(zip), zip.length / 2), zip.length, manifest(files, zip), runtimeDir);
+            fail("Extraction should have failed");
+        } catch (IOException expected) {
+        }
+        assertFalse(new File(runtimeDir, RuntimeInstaller.INSTALLED_MANIFEST).exists());
+
+        // Only complete files may be left behind, and they are kept by the next run
+        Map<String, Long> leftBehind = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            File extracted = new File(runtimeDir, file.getKey());
+            if (!extracted.exists()) continue;
+            assertArrayEquals(file.getKey(), file.getValue(), Files.readAllBytes(extracted.toPath()));
+            assertTrue(extracted.setLastModified(1_000_000_000L));
+            leftBehind.put(file.getKey(), extracted.lastModified());
+        }
+        assertFalse(leftBehind.isEmpty());
+
+        install(files);
+        assertFiles(files);
+        for (Map.Entry<String, Long> file : leftBehind.entrySet()) {
+            assertEquals(file.getKey(), (long) file.getValue(), new File(runtimeDir, file.getKey()).lastModified());
+        }
+    }
+
+    @Test
+    public void repairsOnlyDamagedFiles() throws IOException {
+        install(files);
+        File untouched = new File(runtimeDir, "lib/small/file10");
+        long untouchedModified = untouched.lastModified();
+
+        FileUtils.writeByteArrayToFile(new File(runtimeDir, "lib/big0.so"), new byte[10]);
+        assertTrue(new File(runtimeDir, "lib/small/file1").delete());
+        File sameSize = new File(runtimeDir, "lib/small/file2");
+        FileUtils.writeByteArrayToFile(sameSize, new byte[files.get("lib/small/file2").length]);
+        assertTrue(sameSize.setLastModified(sameSize.lastModified() - 10_000));
+
+        install(files);
+        assertFiles(files);
+        assertEquals(untouchedModified, untouched.lastModified());
+    }
+
+    @Test
+    public void upgradesChangedFiles() throws IOException {
+        install(files);
+        File untouched = new File(runtimeDir, "lib/small/file10");
+        long untouchedModified = untouched.lastModified();
+
+        Map<String, byte[]> upgraded = new LinkedHashMap<>(files);
+        upgraded.put("lib/big1.so", bytes(5 * 1024 * 1024));
+        upgraded.put("lib/small/file3", bytes(100));
+        upgraded.remove("lib/small/file4");
+        upgraded.put("lib/new.so", bytes(2000));
+        install(upgraded);
+
+        assertFiles(upgraded);
+        assertFalse(new File(runtimeDir, "lib/small/file4").exists());
+        assertEquals(untouchedModified, untouched.lastModified());
+    }
+
+    @Test
+    public void extractsWithoutShippedManifest() throws IOException {
+        byte[] zip = zip(files);
+        RuntimeInstaller.update(() -> open(zip), zip.length, null, runtimeDir);
+        assertFiles(files);
+
+        assertTrue(new File(runtimeDir, "lib/small/file5").delete());
+        RuntimeInstaller.update(() -> open(zip), zip.length, null, runtimeDir);
+        assertFiles(files);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsZipNotMatchingManifest() throws IOException {
+        byte[] zip = zip(files);
+        RuntimeManifest manifest = manifest(files, zip);
+        manifest.files.get(0).sha1 = DigestUtils.sha1Hex("something else");
+        RuntimeInstaller.update(() -> open(zip), zip.length, manifest, runtimeDir);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsEntriesOutsideTheRuntime() throws IOException {
+        Map<String, byte[]> evil = new LinkedHashMap<>();
+        evil.put("../evil.so", new byte[]{1});
+        byte[] zip = zip(evil);
+        RuntimeInstaller.update(() -> open(zip), zip.length, null, runtimeDir);
+    }
+
+    private void install(Map<String, byte[]> content) throws IOException {
+        byte[] zip = zip(content);
+        RuntimeInstaller.update(() -> open(zip), zip.length, manifest(content, zip), runtimeDir);
+    }
+
+    private InputStream open(byte[] zip) {
+        zipOpens.incrementAndGet();
+        return new ByteArrayInputStream(zip);
+    }
+
+    private void assertFiles(Map<String, byte[]> content) throws IOException {
+        for (Map.Entry<String, byte[]> file : content.entrySet()) {
+            assertArrayEquals(file.getKey(), file.getValue(), Files.readAllBytes(new File(runtimeDir, file.getKey()).toPath()));
+        }
+        assertTrue(FileUtils.listFiles(runtimeDir, new String[]{"part"}, true).isEmpty());
+    }
+
+    private static byte[] zip(Map<String, byte[]> content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(out)) {
+            zos.putNextEntry(new ZipEntry("lib/"));
+            zos.closeEntry();
+            for (Map.Entry<String, byte[]> file : content.entrySet()) {
+                zos.putNextEntry(new ZipEntry(file.getKey()));
+                zos.write(file.getValue());
+                zos.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    // What the build generates
+    private static RuntimeManifest manifest(Map<String, byte[]> content, byte[] zip) {
+        RuntimeManifest manifest = new RuntimeManifest();
+        manifest.id = DigestUtils.sha1Hex(zip);
+        for (Map.Entry<String, byte[]> file : content.entrySet()) {
+            manifest.files.add(new RuntimeManifest.Entry(file.getKey(), file.getValue().length, DigestUtils.sha1Hex(file.getValue())));
+        }
+        return manifest;
+    }
+
+    private byte[] bytes(int size) {
+        byte[] bytes = new byte[size];
+        // Half random, half zeros so it compresses a bit like real binaries
+        for (int i = 0; i < size / 2; i++) bytes[i] = (byte) random.nextInt();
+        return bytes;
+    }
+
+    private static class FailingInputStream extends FilterInputStream {
+        private long remaining;
+
+        FailingInputStream(InputStream in, long failAfter) {
+            super(in);
+            remaining = failAfter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining-- <= 0) throw new IOException("Killed");
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) throw new IOException("Killed");
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) remaining -= read;
+            return read;
+        }
+    }
+}
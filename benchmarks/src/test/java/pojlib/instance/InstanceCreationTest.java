@@ -0,0 +1,182 @@
+package pojlib.instance;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import pojlib.bench.StandInServer;
+import pojlib.install.MinecraftMeta;
+import pojlib.util.Constants;
+import pojlib.util.GsonUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs instance creation against {@link StandInServer}, with lwjgl and the configs stubbed out since they come from
+ * the app's assets
+ */
+public class InstanceCreationTest {
+
+    private static StandInServer server;
+    private File gameDir;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        new File(Constants.USER_HOME).mkdirs();
+        server = StandInServer.start();
+        server.pointPojlibHere();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.close();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server.setLatencyMs(0);
+        server.setFailureStatus(503);
+        gameDir = Files.createTempDirectory("pojlib-create").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(gameDir);
+    }
+
+    private static MinecraftMeta.MinecraftVersion minecraftVersion() {
+        for (MinecraftMeta.MinecraftVersion version : MinecraftMeta.getVersions()) {
+            if (version.id.equals(StandInServer.MINECRAFT_VERSION)) return version;
+        }
+        throw new AssertionError("Stand-in manifest is missing " + StandInServer.MINECRAFT_VERSION);
+    }
+
+    private InstanceCreation create(int modLoader) {
+        return InstanceCreation.start("test", gameDir.getPath(), minecraftVersion(), modLoader,
+                CompletableFuture.completedFuture("/app/lwjgl.jar"), CompletableFuture.completedFuture(0));
+    }
+
+    private InstanceCreation create(CompletableFuture<String> lwjgl) {
+        return InstanceCreation.start("test", gameDir.getPath(), minecraftVersion(), 0, lwjgl, CompletableFuture.completedFuture(0));
+    }
+
+    private File instanceJson() {
+        return new File(gameDir, "instances/test/instance.json");
+    }
+
+    @Test
+    public void persistsOnceComplete() throws Exception {
+        InstanceCreation creation = create(1);
+        MinecraftInstance created = creation.getResult().get(60, TimeUnit.SECONDS);
+
+        MinecraftInstance saved = MinecraftInstance.load("test", gameDir.getPath());
+        assertNotNull(saved);
+        assertEquals(created.classpath, saved.classpath);
+        assertTrue(saved.classpath.contains("/versions/" + StandInServer.MINECRAFT_VERSION + "/"));
+        assertTrue(saved.classpath.endsWith("/app/lwjgl.jar"));
+        assertEquals(new File(gameDir, "assets").getAbsolutePath(), saved.assetsDir);
+        assertEquals(StandInServer.ASSET_INDEX, saved.assetIndex);
+
+        assertEquals(InstanceCreation.Stage.values().length, creation.getTimings().size());
+        assertTrue(creation.getPending().isEmpty());
+    }
+
+    @Test
+    public void stagesAreTimedFromWhenTheyStart() throws Exception {
+        // Downloading the client takes a while, joining the classpath and saving don't
+        server.setLatencyMs(50);
+        InstanceCreation creation = create(1);
+        creation.getResult().get(60, TimeUnit.SECONDS);
+
+        Map<InstanceCreation.Stage, Long> timings = creation.getTimings();
+        long client = timings.get(InstanceCreation.Stage.CLIENT);
+        assertTrue(timings.toString(), client >= 50);
+        assertTrue(timings.toString(), timings.get(InstanceCreation.Stage.CLASSPATH) < client);
+        assertTrue(timings.toString(), timings.get(InstanceCreation.Stage.PERSIST) < client);
+    }
+
+    @Test
+    public void failedStageFailsTheCreation() throws Exception {
+        String client = new URL(MinecraftMeta.getVersionInfo(minecraftVersion()).downloads.client.url).getPath();
+        byte[] content = server.removeFile(client);
+        try {
+            create(0).getResult().get(60, TimeUnit.SECONDS);
+            fail("Created without a client");
+        } catch (ExecutionException expected) {
+        } finally {
+            server.putFile(client, content);
+        }
+        assertFalse(instanceJson().exists());
+    }
+
+    @Test
+    public void unsupportedLoadersFail() throws Exception {
+        try {
+            create(3).getResult().get(60, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnsupportedOperationException);
+        }
+    }
+
+    @Test
+    public void deletingDuringCreationKeepsTheFiles() throws Exception {
+        File library = new File(gameDir, "libraries/old.jar");
+        FileUtils.writeByteArrayToFile(library, new byte[16]);
+        MinecraftInstance old = new MinecraftInstance();
+        old.versionName = "old";
+        old.classpath = library.getAbsolutePath();
+        assertTrue(GsonUtils.objectToJsonFile(new File(gameDir, "instances/old/instance.json").getPath(), old));
+
+        // Held back until the deletes are done
+        CompletableFuture<String> lwjgl = new CompletableFuture<>();
+        InstanceCreation creation = create(lwjgl);
+        assertFalse(InstanceStorage.delete("test", gameDir.getPath()));
+        // The new instance might use the library, there's no json to tell yet
+        assertTrue(InstanceStorage.delete("old", gameDir.getPath()));
+        assertTrue(library.exists());
+
+        lwjgl.complete("/app/lwjgl.jar");
+        creation.getResult().get(60, TimeUnit.SECONDS);
+        assertTrue(instanceJson().exists());
+    }
+
+    @Test
+    public void cancelledCreationsAreNotSaved() throws Exception {
+        server.setLatencyMs(100);
+        InstanceCreation creation = create(1);
+        // The downloads are running by then
+        creation.awaitMeta();
+        int beforeCancel = server.getRequestCount();
+        creation.cancel();
+        try {
+            creation.getResult().get(60, TimeUnit.SECONDS);
+            fail();
+        } catch (CancellationException | ExecutionException expected) {}
+
+        // The client, the two library lists and the asset index finish what they sent, nothing new starts
+        int requests = server.getRequestCount();
+        assertTrue(requests - beforeCancel + " requests after cancelling", requests - beforeCancel <= 8);
+        // Every download stopped before the result failed
+        Thread.sleep(500);
+        assertEquals(requests, server.getRequestCount());
+        assertFalse(instanceJson().exists());
+    }
+}
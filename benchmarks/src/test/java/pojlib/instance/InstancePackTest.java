@@ -0,0 +1,276 @@
+package pojlib.instance;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import pojlib.util.Constants;
+import pojlib.util.GsonUtils;
+import pojlib.util.HashMismatchException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InstancePackTest {
+
+    private static final String FROM_HOME = "/sdcard/Android/data/other/files";
+    private static final String FROM_GAME_DIR = FROM_HOME + "/.minecraft";
+
+    private File work;
+    private File pack;
+    private File gameDir;
+    private final Map<String, byte[]> files = new LinkedHashMap<>();
+
+    @BeforeClass
+    public static void createHome() {
+        new File(Constants.USER_HOME).mkdirs();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        work = Files.createTempDirectory("pojlib-pack").toFile();
+        pack = new File(work, "pack");
+        gameDir = new File(work, ".minecraft");
+        files.put("versions/1.0/1.0.jar", bytes("client"));
+        files.put("libraries/a/a.jar", bytes("library"));
+        // The same file twice, it's in the pack once
+        files.put("mods/1.0/a.jar", bytes("mod"));
+        files.put("mods/1.0/copy-of-a.jar", bytes("mod"));
+        files.put("config/options.txt", bytes("fov:90"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(work);
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void writePack() throws IOException {
+        InstancePack.Manifest manifest = new InstancePack.Manifest();
+        manifest.name = "packed";
+        manifest.gameDir = FROM_GAME_DIR;
+        manifest.userHome = FROM_HOME;
+        manifest.instance = new MinecraftInstance();
+        manifest.instance.versionName = "1.0";
+        manifest.instance.gameDir = FROM_GAME_DIR;
+        manifest.instance.assetsDir = FROM_GAME_DIR + "/assets";
+        manifest.instance.classpath = String.join(File.pathSeparator, FROM_GAME_DIR + "/versions/1.0/1.0.jar",
+                FROM_HOME + "/lwjgl3/lwjgl-glfw-classes.jar", "/system/framework/other.jar");
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            String sha1 = DigestUtils.sha1Hex(file.getValue());
+            manifest.files.add(new InstancePack.Entry(file.getKey(), sha1, file.getValue().length));
+            FileUtils.writeByteArrayToFile(new File(pack, InstancePack.objectPath(sha1)), file.getValue());
+        }
+        GsonUtils.objectToJsonFile(new File(pack, InstancePack.MANIFEST).getPath(), manifest);
+    }
+
+    private File zipPack() throws IOException {
+        File zip = new File(work, "pack.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            for (File file : FileUtils.listFiles(pack, null, true)) {
+                out.putNextEntry(new ZipEntry(pack.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/')));
+                out.write(Files.readAllBytes(file.toPath()));
+                out.closeEntry();
+            }
+        }
+        return zip;
+    }
+
+    private MinecraftInstance importFrom(File source) throws Exception {
+        return InstancePack.importPack(source, null, gameDir.getPath(), "/home/new").get(30, TimeUnit.SECONDS);
+    }
+
+    private void assertInstalled() throws IOException {
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            assertArrayEquals(file.getKey(), file.getValue(), Files.readAllBytes(new File(gameDir, file.getKey()).toPath()));
+        }
+    }
+
+    @Test
+    public void importsADirectoryWithLinks() throws Exception {
+        writePack();
+        MinecraftInstance instance = importFrom(pack);
+        assertInstalled();
+
+        File client = new File(pack, InstancePack.objectPath(DigestUtils.sha1Hex(bytes("client"))));
+        assertTrue(Files.isSameFile(client.toPath(), new File(gameDir, "versions/1.0/1.0.jar").toPath()));
+        // The game writes to these, that must not change the pack
+        File mod = new File(pack, InstancePack.objectPath(DigestUtils.sha1Hex(bytes("mod"))));
+        assertFalse(Files.isSameFile(mod.toPath(), new File(gameDir, "mods/1.0/a.jar").toPath()));
+        assertFalse(Files.isSameFile(mod.toPath(), new File(gameDir, "mods/1.0/copy-of-a.jar").toPath()));
+        assertFalse(Files.isSameFile(new File(gameDir, "mods/1.0/a.jar").toPath(), new File(gameDir, "mods/1.0/copy-of-a.jar").toPath()));
+        File options = new File(gameDir, "config/options.txt");
+        FileUtils.writeByteArrayToFile(options, bytes("fov:70"));
+        assertArrayEquals(bytes("fov:90"), Files.readAllBytes(new File(pack, InstancePack.objectPath(DigestUtils.sha1Hex(bytes("fov:90")))).toPath()));
+
+        assertEquals(gameDir.getAbsolutePath(), instance.gameDir);
+        assertEquals(gameDir.getAbsolutePath() + "/assets", instance.assetsDir);
+        assertEquals(String.join(File.pathSeparator, gameDir.getAbsolutePath() + "/versions/1.0/1.0.jar",
+                "/home/new/lwjgl3/lwjgl-glfw-classes.jar", "/system/framework/other.jar"), instance.classpath);
+        assertEquals(instance.classpath, MinecraftInstance.load("packed", gameDir.getPath()).classpath);
+    }
+
+    @Test
+    public void importsAZip() throws Exception {
+        writePack();
+        importFrom(zipPack());
+        assertInstalled();
+    }
+
+    @Test
+    public void importingAgainKeepsTheFiles() throws Exception {
+        writePack();
+        importFrom(zipPack());
+        File options = new File(gameDir, "config/options.txt");
+        assertTrue(options.setLastModified(1000));
+        importFrom(zipPack());
+        assertEquals(1000, options.lastModified());
+        assertInstalled();
+    }
+
+    @Test
+    public void corruptObjectsFailTheImport() throws Exception {
+        writePack();
+        FileUtils.writeByteArrayToFile(new File(pack, InstancePack.objectPath(DigestUtils.sha1Hex(bytes("library")))), bytes("tampered"));
+        try {
+            importFrom(zipPack());
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause().getCause()), e.getCause().getCause() instanceof HashMismatchException);
+        }
+        assertFalse(new File(gameDir, "libraries/a/a.jar").exists());
+        assertFalse(new File(gameDir, "instances/packed/instance.json").exists());
+    }
+
+    @Test
+    public void unwrittenInstanceJsonFailsTheImport() throws Exception {
+        writePack();
+        // Can't be written over
+        assertTrue(new File(gameDir, "instances/packed/instance.json").mkdirs());
+        try {
+            importFrom(pack);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause().getCause()), e.getCause().getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void pathsOutsideTheGameDirAreRejected() throws Exception {
+        files.put("../escaped.txt", bytes("nope"));
+        writePack();
+        try {
+            importFrom(pack);
+            fail();
+        } catch (ExecutionException expected) {}
+        assertFalse(new File(work, "escaped.txt").exists());
+        assertFalse(gameDir.exists());
+    }
+
+    private File installInstance(File dir) throws IOException {
+        files.clear();
+        files.put("versions/1.0/1.0.jar", bytes("client"));
+        files.put("libraries/a/a.jar", bytes("library"));
+        files.put("mods/1.0/a.jar", bytes("mod"));
+        files.put("config/options.txt", bytes("fov:90"));
+        // Bigger than what is kept in memory, one that deflates and one that doesn't
+        byte[] text = new byte[3 * 1024 * 1024];
+        for (int i = 0; i < text.length; i++) text[i] = (byte) ('a' + i % 7);
+        byte[] noise = new byte[3 * 1024 * 1024];
+        new Random(1).nextBytes(noise);
+        files.put("libraries/big/text.jar", text);
+        files.put("libraries/big/noise.jar", noise);
+
+        String sound = DigestUtils.sha1Hex(bytes("sound"));
+        String lang = DigestUtils.sha1Hex(bytes("lang"));
+        files.put("assets/objects/" + sound.substring(0, 2) + "/" + sound, bytes("sound"));
+        files.put("assets/objects/" + lang.substring(0, 2) + "/" + lang, bytes("lang"));
+        // Two names for the same object, the way real indexes have them
+        String index = "{\"objects\": {\"a.ogg\": {\"hash\": \"" + sound + "\", \"size\": 5}, \"b.ogg\": {\"hash\": \"" + sound
+                + "\", \"size\": 5}, \"en_us.json\": {\"hash\": \"" + lang + "\", \"size\": 4}}}";
+        files.put("assets/indexes/1.0.json", bytes(index));
+        for (Map.Entry<String, byte[]> file : files.entrySet()) FileUtils.writeByteArrayToFile(new File(dir, file.getKey()), file.getValue());
+
+        MinecraftInstance instance = new MinecraftInstance();
+        instance.versionName = "1.0";
+        instance.assetIndex = "1.0";
+        instance.gameDir = dir.getAbsolutePath();
+        instance.assetsDir = dir.getAbsolutePath() + "/assets";
+        instance.classpath = String.join(File.pathSeparator, dir.getAbsolutePath() + "/versions/1.0/1.0.jar",
+                dir.getAbsolutePath() + "/libraries/a/a.jar", dir.getAbsolutePath() + "/libraries/big/text.jar",
+                dir.getAbsolutePath() + "/libraries/big/noise.jar", Constants.USER_HOME + "/lwjgl3/lwjgl-glfw-classes.jar");
+        GsonUtils.objectToJsonFile(dir + "/instances/exported/instance.json", instance);
+        return dir;
+    }
+
+    @Test
+    public void exportedPacksImportElsewhere() throws Exception {
+        File source = installInstance(new File(work, "source"));
+        // Also a mod that is a copy of a library
+        files.put("mods/1.0/copy.jar", bytes("library"));
+        FileUtils.writeByteArrayToFile(new File(source, "mods/1.0/copy.jar"), bytes("library"));
+
+        File zip = InstancePack.exportPack("exported", source.getPath(), new File(work, "out/exported.zip")).get(30, TimeUnit.SECONDS);
+        try (ZipFile archive = new ZipFile(zip)) {
+            // Every distinct content once, plus pack.json
+            assertEquals(files.size() - 1 + 1, archive.size());
+            ZipEntry noise = archive.getEntry(InstancePack.objectPath(DigestUtils.sha1Hex(files.get("libraries/big/noise.jar"))));
+            assertEquals(ZipEntry.STORED, noise.getMethod());
+            ZipEntry text = archive.getEntry(InstancePack.objectPath(DigestUtils.sha1Hex(files.get("libraries/big/text.jar"))));
+            assertEquals(ZipEntry.DEFLATED, text.getMethod());
+            assertTrue(text.getCompressedSize() < text.getSize() / 10);
+        }
+        assertEquals(0, new File(work, "out").list((dir, name) -> !name.equals("exported.zip")).length);
+
+        MinecraftInstance instance = importFrom(zip);
+        assertInstalled();
+        assertEquals(gameDir.getAbsolutePath() + "/libraries/a/a.jar", instance.classpath.split(File.pathSeparator)[1]);
+        assertTrue(instance.classpath.endsWith("/home/new/lwjgl3/lwjgl-glfw-classes.jar"));
+    }
+
+    @Test
+    public void exportsAreReproducible() throws Exception {
+        File source = installInstance(new File(work, "source"));
+        // Which copy of shared content ends up in the pack must not depend on which thread got to it first
+        for (int i = 0; i < 8; i++) FileUtils.writeByteArrayToFile(new File(source, "mods/1.0/copy-" + i + ".jar"), bytes("library"));
+        File first = InstancePack.exportPack("exported", source.getPath(), new File(work, "first.zip")).get(30, TimeUnit.SECONDS);
+        for (int i = 0; i < 5; i++) {
+            File again = InstancePack.exportPack("exported", source.getPath(), new File(work, "again.zip")).get(30, TimeUnit.SECONDS);
+            assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(again.toPath()));
+        }
+    }
+
+    @Test
+    public void incompleteInstancesAreNotExported() throws Exception {
+        File source = installInstance(new File(work, "source"));
+        assertTrue(new File(source, "libraries/a/a.jar").delete());
+        try {
+            InstancePack.exportPack("exported", source.getPath(), new File(work, "broken.zip")).get(30, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException expected) {}
+        assertEquals(0, work.list((dir, name) -> name.startsWith("broken")).length);
+    }
+}
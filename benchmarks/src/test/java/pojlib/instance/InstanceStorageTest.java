@@ -0,0 +1,154 @@
+package pojlib.instance;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import pojlib.util.Constants;
+import pojlib.util.GsonUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InstanceStorageTest {
+
+    private File gameDir;
+    private String shared;
+    private String onlyOld;
+    private String onlyNew;
+
+    @BeforeClass
+    public static void createHome() {
+        new File(Constants.USER_HOME).mkdirs();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        gameDir = Files.createTempDirectory("pojlib-storage").toFile();
+        shared = object("shared sound");
+        onlyOld = object("old lang");
+        onlyNew = object("new lang");
+        index("1.0", shared, onlyOld);
+        index("2.0", shared, onlyNew);
+        write("libraries/common.jar", 100);
+        write("libraries/old.jar", 200);
+        write("versions/1.0/1.0.jar", 1000);
+        write("mods/1.0/mod.jar", 50);
+        write("saves/world/level.dat", 300);
+        write("logs/latest.log", 7);
+
+        instance("old", "1.0", "versions/1.0/1.0.jar", "libraries/common.jar", "libraries/old.jar");
+        instance("new", "2.0", "libraries/common.jar");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(gameDir);
+    }
+
+    private void write(String path, int bytes) throws IOException {
+        FileUtils.writeByteArrayToFile(new File(gameDir, path), new byte[bytes]);
+    }
+
+    private String object(String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        String hash = DigestUtils.sha1Hex(bytes);
+        FileUtils.writeByteArrayToFile(new File(gameDir, "assets/objects/" + hash.substring(0, 2) + "/" + hash), bytes);
+        return hash;
+    }
+
+    private long objectSize(String hash) {
+        return new File(gameDir, "assets/objects/" + hash.substring(0, 2) + "/" + hash).length();
+    }
+
+    private void index(String id, String... hashes) throws IOException {
+        StringBuilder json = new StringBuilder("{\"objects\": {");
+        for (int i = 0; i < hashes.length; i++) {
+            if (i > 0) json.append(", ");
+            json.append("\"").append(i).append("\": {\"hash\": \"").append(hashes[i]).append("\", \"size\": ").append(objectSize(hashes[i])).append("}");
+        }
+        FileUtils.writeStringToFile(new File(gameDir, "assets/indexes/" + id + ".json"), json.append("}}").toString(), StandardCharsets.UTF_8);
+    }
+
+    private void instance(String name, String version, String... classpath) {
+        MinecraftInstance instance = new MinecraftInstance();
+        instance.versionName = version;
+        instance.assetIndex = version;
+        StringBuilder paths = new StringBuilder(Constants.USER_HOME + "/lwjgl3/lwjgl-glfw-classes.jar");
+        for (String path : classpath) paths.append(File.pathSeparator).append(new File(gameDir, path).getAbsolutePath());
+        instance.classpath = paths.toString();
+        GsonUtils.objectToJsonFile(gameDir + "/instances/" + name + "/instance.json", instance);
+    }
+
+    @Test
+    public void splitsPrivateAndSharedBytes() {
+        InstanceStorage.Usage old = InstanceStorage.measure("old", gameDir.getPath());
+        long json = new File(gameDir, "instances/old/instance.json").length();
+        long index = new File(gameDir, "assets/indexes/1.0.json").length();
+        assertEquals(json, old.instanceBytes);
+        assertEquals(1300, old.librariesBytes);
+        assertEquals(50, old.modsBytes);
+        assertEquals(index + objectSize(shared) + objectSize(onlyOld), old.assetsBytes);
+        assertEquals(json + 1200 + 50 + index + objectSize(onlyOld), old.privateBytes);
+        assertEquals(100 + objectSize(shared), old.sharedBytes);
+
+        assertNull(InstanceStorage.measure("missing", gameDir.getPath()));
+    }
+
+    @Test
+    public void measuresTheGameDir() {
+        InstanceStorage.GameDirUsage usage = InstanceStorage.measure(gameDir.getPath());
+        assertEquals(2, usage.instances.size());
+        assertEquals(300, usage.savesBytes);
+        assertEquals(7, usage.logsBytes);
+        assertTrue(usage.totalBytes > 1300 + 300);
+    }
+
+    @Test
+    public void deletesOnlyWhatNobodyElseUses() {
+        assertTrue(InstanceStorage.delete("old", gameDir.getPath()));
+        assertFalse(new File(gameDir, "instances/old").exists());
+        assertFalse(new File(gameDir, "versions/1.0/1.0.jar").exists());
+        assertFalse(new File(gameDir, "libraries/old.jar").exists());
+        assertFalse(new File(gameDir, "mods/1.0").exists());
+        assertFalse(new File(gameDir, "assets/indexes/1.0.json").exists());
+        assertEquals(0, objectSize(onlyOld));
+
+        assertTrue(new File(gameDir, "libraries/common.jar").exists());
+        assertTrue(objectSize(shared) > 0);
+        assertTrue(new File(gameDir, "saves/world/level.dat").exists());
+        assertTrue(new File(gameDir, "instances/new/instance.json").exists());
+
+        assertFalse(InstanceStorage.delete("old", gameDir.getPath()));
+    }
+
+    @Test
+    public void refusesNamesOutsideTheInstances() {
+        for (String name : new String[]{"", ".", "..", "../instances", "old/..", "/old"}) {
+            assertFalse(name, InstanceStorage.delete(name, gameDir.getPath()));
+        }
+        assertTrue(new File(gameDir, "instances/old/instance.json").exists());
+        assertTrue(new File(gameDir, "saves/world/level.dat").exists());
+    }
+
+    @Test
+    public void keepsSharedFilesWhileAnotherInstanceIsUnreadable() throws IOException {
+        // Created, but not persisted yet
+        new File(gameDir, "instances/creating").mkdirs();
+        assertTrue(InstanceStorage.delete("old", gameDir.getPath()));
+        assertFalse(new File(gameDir, "instances/old").exists());
+        assertTrue(new File(gameDir, "libraries/old.jar").exists());
+        assertTrue(new File(gameDir, "mods/1.0/mod.jar").exists());
+        assertTrue(objectSize(onlyOld) > 0);
+    }
+}
@@ -0,0 +1,75 @@
+package pojlib.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AppCdsTest {
+
+    private File root;
+    private File runtimeDir;
+    private File modsDir;
+    private String classpath;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("pojlib-cds").toFile();
+        runtimeDir = new File(root, "jre-17");
+        FileUtils.writeByteArrayToFile(new File(runtimeDir, "lib/server/classes.jsa"), new byte[16]);
+        FileUtils.writeByteArrayToFile(new File(runtimeDir, "lib/modules"), new byte[16]);
+        modsDir = new File(root, "mods");
+        FileUtils.writeByteArrayToFile(new File(modsDir, "sodium.jar"), new byte[16]);
+        File client = new File(root, "client.jar");
+        File library = new File(root, "library.jar");
+        FileUtils.writeByteArrayToFile(client, new byte[16]);
+        FileUtils.writeByteArrayToFile(library, new byte[16]);
+        classpath = client.getAbsolutePath() + File.pathSeparator + library.getAbsolutePath();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Test
+    public void dumpsOnceThenShares() throws IOException {
+        List<String> first = AppCds.jvmArgs(runtimeDir, classpath, modsDir);
+        assertEquals(1, first.size());
+        assertTrue(first.get(0).startsWith("-XX:ArchiveClassesAtExit="));
+
+        // What the jvm does on exit
+        File archive = new File(first.get(0).substring(first.get(0).indexOf('=') + 1));
+        FileUtils.writeByteArrayToFile(archive, new byte[16]);
+
+        assertEquals("-XX:SharedArchiveFile=" + archive.getAbsolutePath(), AppCds.jvmArgs(runtimeDir, classpath, modsDir).get(0));
+    }
+
+    @Test
+    public void keyChangesWithModsAndClasspath() throws IOException {
+        String key = AppCds.key(runtimeDir, classpath, modsDir);
+        assertEquals(key, AppCds.key(runtimeDir, classpath, modsDir));
+
+        FileUtils.writeByteArrayToFile(new File(modsDir, "lithium.jar"), new byte[16]);
+        String withMod = AppCds.key(runtimeDir, classpath, modsDir);
+        assertNotEquals(key, withMod);
+
+        FileUtils.writeByteArrayToFile(new File(root, "library.jar"), new byte[32]);
+        assertNotEquals(withMod, AppCds.key(runtimeDir, classpath, modsDir));
+    }
+
+    @Test
+    public void nothingWithoutBaseArchive() {
+        assertTrue(new File(runtimeDir, "lib/server/classes.jsa").delete());
+        assertTrue(AppCds.jvmArgs(runtimeDir, classpath, modsDir).isEmpty());
+    }
+}
@@ -0,0 +1,89 @@
+package pojlib.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DiskUsageTest {
+
+    private File dir;
+
+    @BeforeClass
+    public static void createHome() {
+        new File(Constants.USER_HOME).mkdirs();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("pojlib-usage").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private void write(String path, int bytes) throws IOException {
+        FileUtils.writeByteArrayToFile(new File(dir, path), new byte[bytes]);
+    }
+
+    @Test
+    public void sizesATree() throws IOException {
+        write("a.txt", 10);
+        write("one/b.txt", 20);
+        write("one/two/c.txt", 30);
+        write("one/two/three/d.txt", 40);
+        DiskUsage.Size size = DiskUsage.of(dir);
+        assertEquals(100, size.bytes);
+        assertEquals(4, size.files);
+        assertEquals(70, DiskUsage.of(new File(dir, "one/two")).bytes);
+        assertEquals(10, DiskUsage.of(new File(dir, "a.txt")).bytes);
+        assertEquals(0, DiskUsage.of(new File(dir, "missing")).bytes);
+    }
+
+    @Test
+    public void changedDirectoriesAreListedAgain() throws IOException {
+        write("one/b.txt", 20);
+        File one = new File(dir, "one");
+        assertTrue(one.setLastModified(10_000));
+        assertEquals(20, DiskUsage.of(dir).bytes);
+
+        write("one/c.txt", 5);
+        assertTrue(one.setLastModified(20_000));
+        assertEquals(25, DiskUsage.of(dir).bytes);
+
+        assertTrue(new File(dir, "one/b.txt").delete());
+        assertTrue(one.setLastModified(30_000));
+        assertEquals(5, DiskUsage.of(dir).bytes);
+    }
+
+    @Test
+    public void symlinksAreNotFollowed() throws IOException {
+        write("real/a.txt", 10);
+        Files.createSymbolicLink(new File(dir, "link").toPath(), new File(dir, "real").toPath());
+        assertEquals(10, DiskUsage.of(dir).bytes);
+
+        DiskUsage.delete(new File(dir, "link"));
+        assertTrue(new File(dir, "real/a.txt").exists());
+    }
+
+    @Test
+    public void deletesNonEmptyTrees() throws IOException {
+        for (int i = 0; i < 50; i++) write("tree/" + i % 5 + "/" + i % 3 + "/" + i + ".txt", i);
+        File tree = new File(dir, "tree");
+        DiskUsage.of(tree);
+        DiskUsage.delete(tree);
+        assertFalse(tree.exists());
+        assertEquals(0, DiskUsage.of(tree).bytes);
+    }
+}
@@ -0,0 +1,124 @@
+package pojlib.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DownloadConcurrencyTest {
+
+    private long now;
+
+    private DownloadConcurrency controller(int initial) {
+        return new DownloadConcurrency(2, 16, initial, () -> now);
+    }
+
+    /**
+     * Runs one window of downloads on a link that moves at most bytesPerSecond, with the given round trip
+     */
+    private void window(DownloadConcurrency concurrency, long bytesPerSecond, long rttMs, boolean failAll) throws InterruptedException {
+        int limit = concurrency.getLimit();
+        long objectSize = 8 * 1024;
+        // Everything in flight shares the link, on top of the round trip
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(rttMs) + limit * objectSize * 1_000_000_000L / bytesPerSecond;
+        for (int i = 0; i < limit; i++) concurrency.acquire();
+        now += windowNanos;
+        for (int i = 0; i < limit; i++) concurrency.release(objectSize, windowNanos, failAll);
+    }
+
+    @Test
+    public void growsWhileMoreDownloadsPayOff() throws InterruptedException {
+        DownloadConcurrency concurrency = controller(2);
+        // Latency dominated, every extra download adds throughput
+        for (int i = 0; i < 20; i++) window(concurrency, 1_000_000_000L, 50, false);
+        assertEquals(16, concurrency.getLimit());
+    }
+
+    @Test
+    public void holdsWhenBandwidthIsTheLimit() throws InterruptedException {
+        DownloadConcurrency concurrency = controller(4);
+        // 128 KB/s, a few more downloads only split the same bandwidth
+        for (int i = 0; i < 20; i++) window(concurrency, 128 * 1024, 1, false);
+        assertTrue("Limit " + concurrency.getLimit(), concurrency.getLimit() <= 6);
+    }
+
+    @Test
+    public void halvesOnFailures() throws InterruptedException {
+        DownloadConcurrency concurrency = controller(12);
+        window(concurrency, 1_000_000_000L, 50, true);
+        assertEquals(6, concurrency.getLimit());
+        window(concurrency, 1_000_000_000L, 50, true);
+        window(concurrency, 1_000_000_000L, 50, true);
+        assertEquals(2, concurrency.getLimit());
+    }
+
+    @Test
+    public void halvesWhenLatencyBlowsUp() throws InterruptedException {
+        DownloadConcurrency concurrency = controller(8);
+        window(concurrency, 1_000_000_000L, 20, false);
+        int limit = concurrency.getLimit();
+        window(concurrency, 1_000_000_000L, 200, false);
+        assertEquals(limit / 2, concurrency.getLimit());
+    }
+
+    @Test
+    public void batchesAreComparedWithBatches() throws InterruptedException {
+        DownloadConcurrency concurrency = controller(4);
+        for (int round = 0; round < 6; round++) {
+            int limit = concurrency.getLimit();
+            // Single objects first, then batches far slower than them on the same link, then both at once
+            window(concurrency, 1_000_000_000L, 20, false);
+            mixedWindow(concurrency, 1, 400);
+            mixedWindow(concurrency, 2, 400);
+            assertTrue("Round " + round + " limit " + concurrency.getLimit(), concurrency.getLimit() >= limit);
+        }
+        int limit = concurrency.getLimit();
+        assertTrue("Limit " + limit, limit > 4);
+
+        // Batches slowing down still count
+        mixedWindow(concurrency, 1, 4000);
+        assertEquals(limit / 2, concurrency.getLimit());
+    }
+
+    /**
+     * Runs one window where every batchEvery-th download is a batch of 64 objects taking batchMs, the rest single objects
+     */
+    private void mixedWindow(DownloadConcurrency concurrency, int batchEvery, long batchMs) throws InterruptedException {
+        int limit = concurrency.getLimit();
+        for (int i = 0; i < limit; i++) concurrency.acquire();
+        now += TimeUnit.MILLISECONDS.toNanos(batchMs);
+        for (int i = 0; i < limit; i++) {
+            if (i % batchEvery == 0) concurrency.releaseBatch(64 * 8 * 1024, TimeUnit.MILLISECONDS.toNanos(batchMs), false);
+            else concurrency.release(8 * 1024, TimeUnit.MILLISECONDS.toNanos(20), false);
+        }
+    }
+
+    @Test
+    public void neverRunsMoreThanTheLimit() throws InterruptedException {
+        DownloadConcurrency concurrency = new DownloadConcurrency(1, 1, 1);
+        concurrency.acquire();
+        Thread waiter = new Thread(() -> {
+            try {
+                concurrency.acquire();
+            } catch (InterruptedException ignored) {}
+        });
+        waiter.start();
+        waiter.join(200);
+        assertTrue(waiter.isAlive());
+
+        concurrency.skip();
+        waiter.join(5000);
+        assertTrue(!waiter.isAlive());
+    }
+
+    @Test
+    public void summarizesTheRun() throws InterruptedException {
+        DownloadConcurrency concurrency = controller(2);
+        window(concurrency, 1_000_000_000L, 50, false);
+        window(concurrency, 1_000_000_000L, 50, true);
+        String summary = concurrency.summary();
+        assertTrue(summary, summary.startsWith("5 downloads, 3 failed"));
+    }
+}
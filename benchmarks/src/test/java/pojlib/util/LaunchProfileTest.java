@@ -0,0 +1,105 @@
+package pojlib.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LaunchProfileTest {
+
+    private static final long QUEST_2_MB = 5800;
+    private static final long QUEST_3_MB = 7600;
+
+    @Test
+    public void heapGrowsWithDeviceAndMods() {
+        for (LaunchProfile profile : LaunchProfile.values()) {
+            assertTrue(profile.heapMb(QUEST_3_MB, 0) >= profile.heapMb(QUEST_2_MB, 0));
+            assertTrue(profile.heapMb(QUEST_2_MB, 40) >= profile.heapMb(QUEST_2_MB, 0));
+        }
+        assertTrue(LaunchProfile.LOW_MEMORY.heapMb(QUEST_2_MB, 0) < LaunchProfile.BALANCED.heapMb(QUEST_2_MB, 0));
+        assertTrue(LaunchProfile.BALANCED.heapMb(QUEST_2_MB, 0) < LaunchProfile.PERFORMANCE.heapMb(QUEST_2_MB, 0));
+    }
+
+    @Test
+    public void heapLeavesRoomForTheSystem() {
+        for (LaunchProfile profile : LaunchProfile.values()) {
+            assertTrue(profile.heapMb(4096, 200) <= 2048);
+            assertTrue(profile.heapMb(2048, 0) >= 1024);
+        }
+    }
+
+    @Test
+    public void performanceDoesNotCommitWholeHeap() {
+        List<String> args = LaunchProfile.PERFORMANCE.jvmArgs(QUEST_3_MB, 10, true);
+        long heap = LaunchProfile.PERFORMANCE.heapMb(QUEST_3_MB, 10);
+        assertTrue(args.contains("-Xmx" + heap + "M"));
+        assertFalse(args.contains("-Xms" + heap + "M"));
+        assertFalse(args.contains("-XX:+AlwaysPreTouch"));
+    }
+
+    @Test
+    public void performanceFallsBackToG1() {
+        assertTrue(LaunchProfile.PERFORMANCE.jvmArgs(QUEST_3_MB, 0, true).contains("-XX:+UseShenandoahGC"));
+        List<String> args = LaunchProfile.PERFORMANCE.jvmArgs(QUEST_3_MB, 0, false);
+        assertTrue(args.contains("-XX:+UseG1GC"));
+        assertFalse(args.contains("-XX:+UseShenandoahGC"));
+    }
+
+    @Test
+    public void findsShenandoahInLibjvm() throws IOException {
+        File runtime = Files.createTempDirectory("pojlib-jre").toFile();
+        try {
+            assertFalse(LaunchProfile.hasShenandoah(runtime));
+
+            File libjvm = new File(runtime, "lib/server/libjvm.so");
+            // Past the first read, across its end
+            byte[] bytes = new byte[64 * 1024 + 100];
+            FileUtils.writeByteArrayToFile(libjvm, bytes);
+            assertTrue(libjvm.setLastModified(1_000_000));
+            assertFalse(LaunchProfile.hasShenandoah(runtime));
+
+            byte[] flag = "UseShenandoahGC".getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(flag, 0, bytes, 64 * 1024 - 5, flag.length);
+            FileUtils.writeByteArrayToFile(libjvm, bytes);
+            // Same length, the new mtime tells it apart
+            assertTrue(libjvm.setLastModified(2_000_000));
+            assertTrue(LaunchProfile.hasShenandoah(runtime));
+        } finally {
+            FileUtils.deleteDirectory(runtime);
+        }
+    }
+
+    @Test
+    public void unknownProfileIsBalanced() {
+        assertEquals(LaunchProfile.BALANCED, LaunchProfile.fromName(null));
+        assertEquals(LaunchProfile.BALANCED, LaunchProfile.fromName("turbo"));
+        assertEquals(LaunchProfile.LOW_MEMORY, LaunchProfile.fromName("low_memory"));
+    }
+
+    @Test
+    public void laterArgumentsOverrideEarlierOnes() {
+        List<String> merged = JavaArgs.merge(
+                Arrays.asList("-Dos.name=Linux", "-Xms1024M", "-Xmx2048M"),
+                LaunchProfile.PERFORMANCE.jvmArgs(QUEST_3_MB, 0, true),
+                JavaArgs.parse("-Xmx3G -XX:+UseG1GC -XX:-AlwaysPreTouch -Dos.name=Android"));
+
+        assertTrue(merged.contains("-Xmx3G"));
+        assertTrue(merged.contains("-XX:+UseG1GC"));
+        assertTrue(merged.contains("-XX:-AlwaysPreTouch"));
+        assertTrue(merged.contains("-Dos.name=Android"));
+        assertEquals(1, merged.stream().filter(arg -> arg.startsWith("-Xmx")).count());
+        assertEquals(1, merged.stream().filter(arg -> arg.startsWith("-XX:+Use") && arg.endsWith("GC")).count());
+        assertEquals(1, merged.stream().filter(arg -> arg.endsWith("AlwaysPreTouch")).count());
+        // Order of first appearance is kept
+        assertEquals("-Dos.name=Android", merged.get(0));
+    }
+}
@@ -0,0 +1,100 @@
+package pojlib.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogChannelTest {
+
+    private File dir;
+    private File logFile;
+    private Logger logger;
+    private LogChannel channel;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("pojlib-logchannel").toFile();
+        logFile = new File(dir, "latestlog.txt");
+        logger = new Logger(logFile, 8192, Long.MAX_VALUE);
+        channel = new LogChannel(logger);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        logger.shutdown();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private List<String> lines() throws IOException {
+        logger.flush();
+        return FileUtils.readLines(logFile, StandardCharsets.UTF_8);
+    }
+
+    private void write(int source, String text) {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        channel.accept(source, data, data.length);
+    }
+
+    @Test
+    public void splitsAndTagsLines() throws IOException {
+        write(LogChannel.SOURCE_STDOUT, "first\nsecond\r\n");
+        write(LogChannel.SOURCE_STDERR, "broken\n");
+
+        List<String> lines = lines();
+        assertEquals(3, lines.size());
+        assertEquals("[out] first", lines.get(0));
+        assertEquals("[out] second", lines.get(1));
+        assertEquals("[err] broken", lines.get(2));
+    }
+
+    @Test
+    public void joinsLinesSplitAcrossReads() throws IOException {
+        write(LogChannel.SOURCE_STDOUT, "[Render thread/INFO]: Load");
+        write(LogChannel.SOURCE_STDERR, "Exception in ");
+        write(LogChannel.SOURCE_STDOUT, "ing ");
+        write(LogChannel.SOURCE_STDOUT, "textures\nnext");
+        write(LogChannel.SOURCE_STDERR, "thread \"main\"\n");
+        channel.finish();
+
+        List<String> lines = lines();
+        assertEquals(3, lines.size());
+        assertEquals("[out] [Render thread/INFO]: Loading textures", lines.get(0));
+        assertEquals("[err] Exception in thread \"main\"", lines.get(1));
+        assertEquals("[out] next", lines.get(2));
+    }
+
+    @Test
+    public void keepsMultiByteCharactersSplitAcrossReads() throws IOException {
+        byte[] data = "Gr\u00fc\u00dfe\n".getBytes(StandardCharsets.UTF_8);
+        // Cut in the middle of the two bytes of the u umlaut
+        channel.accept(LogChannel.SOURCE_STDOUT, data, 3);
+        byte[] rest = new byte[data.length - 3];
+        System.arraycopy(data, 3, rest, 0, rest.length);
+        channel.accept(LogChannel.SOURCE_STDOUT, rest, rest.length);
+
+        assertEquals("[out] Gr\u00fc\u00dfe", lines().get(0));
+    }
+
+    @Test
+    public void breaksUpVeryLongLines() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < LogChannel.MAX_LINE + 10; i++) text.append('x');
+        write(LogChannel.SOURCE_STDOUT, text.toString());
+        write(LogChannel.SOURCE_STDOUT, "tail\n");
+
+        // The carried part is logged once it grows too big instead of waiting for the end of the line
+        List<String> lines = lines();
+        assertEquals(2, lines.size());
+        assertEquals("[out] " + text, lines.get(0));
+        assertEquals("[out] tail", lines.get(1));
+    }
+}
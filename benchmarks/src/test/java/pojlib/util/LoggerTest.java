@@ -0,0 +1,164 @@
+package pojlib.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LoggerTest {
+
+    private File dir;
+    private File logFile;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("pojlib-logger").toFile();
+        logFile = new File(dir, "latestlog.txt");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void writesLinesInOrder() throws IOException {
+        Logger logger = new Logger(logFile, 8192, Long.MAX_VALUE);
+        for (int i = 0; i < 5000; i++) logger.appendToLog("line " + i);
+        logger.shutdown();
+
+        List<String> lines = FileUtils.readLines(logFile, StandardCharsets.UTF_8);
+        assertEquals(5000, lines.size());
+        for (int i = 0; i < 5000; i++) assertEquals("line " + i, lines.get(i));
+    }
+
+    @Test
+    public void keepsEveryLineFromManyThreads() throws Exception {
+        Logger logger = new Logger(logFile, 1024, Long.MAX_VALUE);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    logger.appendToLog(thread + ":" + i);
+                    // Stay below what the writer can take, so nothing is dropped
+                    if (i % 64 == 0) logger.flush();
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+        logger.shutdown();
+
+        List<String> lines = FileUtils.readLines(logFile, StandardCharsets.UTF_8);
+        assertEquals(0, logger.getDroppedCount());
+        assertEquals(16000, new HashSet<>(lines).size());
+        // Lines of one thread stay in the order they were logged
+        int[] next = new int[8];
+        for (String line : lines) {
+            String[] parts = line.split(":");
+            int thread = Integer.parseInt(parts[0]);
+            assertEquals(next[thread]++, Integer.parseInt(parts[1]));
+        }
+    }
+
+    @Test
+    public void rotatesWhenTooBig() throws IOException {
+        Logger logger = new Logger(logFile, 4096, 10_000);
+        for (int i = 0; i < 3000; i++) logger.appendToLog(String.format("line %05d", i));
+        logger.shutdown();
+
+        File first = new File(dir, "latestlog.1.txt");
+        File second = new File(dir, "latestlog.2.txt");
+        assertTrue(first.isFile());
+        assertTrue(second.isFile());
+        assertFalse(new File(dir, "latestlog.3.txt").exists());
+        assertTrue(logFile.length() <= 10_000 + 11);
+        List<String> last = FileUtils.readLines(logFile, StandardCharsets.UTF_8);
+        assertEquals("line 02999", last.get(last.size() - 1));
+        // The newest rotated file continues right before the current one
+        List<String> previous = FileUtils.readLines(first, StandardCharsets.UTF_8);
+        assertEquals(String.format("line %05d", Integer.parseInt(last.get(0).substring(5)) - 1), previous.get(previous.size() - 1));
+    }
+
+    @Test
+    public void dropsAndReportsWhenFull() throws IOException {
+        Logger logger = new Logger(logFile, 2, Long.MAX_VALUE);
+        // Block the writer thread in the listener so the buffer fills up
+        Object lock = new Object();
+        Logger.eventLogListener listener = text -> {
+            synchronized (lock) {
+                // Waits for the test to let go
+            }
+        };
+        logger.setLogListener(listener);
+        synchronized (lock) {
+            for (int i = 0; i < 100; i++) logger.appendToLog("line " + i);
+        }
+        logger.shutdown();
+
+        assertTrue(logger.getDroppedCount() > 0);
+        int written = 0;
+        long reported = 0;
+        for (String line : FileUtils.readLines(logFile, StandardCharsets.UTF_8)) {
+            if (line.startsWith("[Logger] ")) reported += Long.parseLong(line.split(" ")[1]);
+            else written++;
+        }
+        assertEquals(logger.getDroppedCount(), reported);
+        assertEquals(100, written + reported);
+    }
+
+    @Test
+    public void censorsSessionIds() throws IOException {
+        Logger logger = new Logger(logFile, 64, Long.MAX_VALUE);
+        Set<String> seen = new HashSet<>();
+        Logger.eventLogListener listener = seen::add;
+        logger.setLogListener(listener);
+        logger.appendToLog("Session ID is token:abc");
+        logger.appendToLog("visible");
+        logger.appendToLogUnchecked("Session ID is shown on purpose");
+        logger.shutdown();
+
+        List<String> lines = FileUtils.readLines(logFile, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals("visible", lines.get(0));
+        assertEquals("Session ID is shown on purpose", lines.get(1));
+        assertEquals(2, seen.size());
+    }
+
+    @Test
+    public void resetErasesTheLog() throws IOException {
+        Logger logger = new Logger(logFile, 64, Long.MAX_VALUE);
+        logger.appendToLog("old");
+        logger.reset();
+        logger.appendToLog("new");
+        logger.shutdown();
+
+        assertEquals("new\n", FileUtils.readFileToString(logFile, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writesNullAsText() throws IOException {
+        Logger logger = new Logger(logFile, 64, Long.MAX_VALUE);
+        logger.appendToLog(null);
+        logger.appendToLogUnchecked(null);
+        logger.appendToLog("after");
+        logger.shutdown();
+
+        assertEquals("null\nnull\nafter\n", FileUtils.readFileToString(logFile, StandardCharsets.UTF_8));
+        assertEquals(0, logger.getDroppedCount());
+    }
+}
@@ -0,0 +1,159 @@
+package pojlib.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MirrorsTest {
+
+    private static final String ORIGIN = "http://origin.test/meta";
+    private static final String LAN = "http://lan.test:8080/cache";
+    private static final String OTHER = "http://other.test/meta";
+
+    private String metaUrl;
+
+    @Before
+    public void pointAtTestHosts() {
+        new File(Constants.USER_HOME).mkdirs();
+        metaUrl = Constants.MOJANG_META_URL;
+        Constants.MOJANG_META_URL = ORIGIN;
+        Mirrors.reset();
+    }
+
+    @After
+    public void restore() {
+        Constants.MOJANG_META_URL = metaUrl;
+        new File(Constants.USER_HOME, "mirrors.json").delete();
+        Mirrors.reset();
+    }
+
+    @Test
+    public void otherHostsAreLeftAlone() {
+        Mirrors.setMirrors(Mirrors.Origin.MOJANG_META, Collections.singletonList(LAN));
+        assertEquals(Collections.singletonList("http://example.test/meta/a.json"), Mirrors.route("http://example.test/meta/a.json"));
+        // Only whole path segments match
+        assertEquals(Collections.singletonList(ORIGIN + "data/a.json"), Mirrors.route(ORIGIN + "data/a.json"));
+    }
+
+    @Test
+    public void configuredMirrorsGoFirst() {
+        Mirrors.setMirrors(Mirrors.Origin.MOJANG_META, Arrays.asList(LAN + "/", OTHER));
+        assertEquals(Arrays.asList(LAN + "/v1/a.json", OTHER + "/v1/a.json", ORIGIN + "/v1/a.json"), Mirrors.route(ORIGIN + "/v1/a.json"));
+        assertEquals(LAN, Mirrors.best(Mirrors.Origin.MOJANG_META));
+    }
+
+    @Test
+    public void fasterMirrorsAreTriedFirst() {
+        Mirrors.setMirrors(Mirrors.Origin.MOJANG_META, Arrays.asList(LAN, OTHER));
+        for (int i = 0; i < 5; i++) {
+            Mirrors.record(LAN + "/x", true, 200);
+            Mirrors.record(OTHER + "/x", true, 80);
+            Mirrors.record(ORIGIN + "/x", true, 20);
+        }
+        assertEquals(Arrays.asList(ORIGIN + "/a", OTHER + "/a", LAN + "/a"), Mirrors.route(ORIGIN + "/a"));
+    }
+
+    @Test
+    public void failingMirrorsGoLast() {
+        Mirrors.setMirrors(Mirrors.Origin.MOJANG_META, Collections.singletonList(LAN));
+        Mirrors.record(LAN + "/x", true, 5);
+        Mirrors.record(ORIGIN + "/x", true, 100);
+        assertEquals(LAN + "/a", Mirrors.route(ORIGIN + "/a").get(0));
+        for (int i = 0; i < 3; i++) Mirrors.record(LAN + "/x", false, 0);
+        assertEquals(ORIGIN + "/a", Mirrors.route(ORIGIN + "/a").get(0));
+    }
+
+    @Test
+    public void fetchFallsBackToTheNextMirror() throws IOException {
+        Mirrors.setMirrors(Mirrors.Origin.MOJANG_META, Collections.singletonList(LAN));
+        List<String> tried = new ArrayList<>();
+        String result = Mirrors.fetch(ORIGIN + "/a", url -> {
+            tried.add(url);
+            // A LAN cache that doesn't have the file
+            if (url.startsWith(LAN)) throw new HttpStatusException(url, 404);
+            return "ok";
+        });
+        assertEquals("ok", result);
+        assertEquals(Arrays.asList(LAN + "/a", ORIGIN + "/a"), tried);
+    }
+
+    @Test
+    public void missingFilesDontCountAgainstAMirror() throws IOException {
+        Mirrors.setMirrors(Mirrors.Origin.MOJANG_META, Collections.singletonList(LAN));
+        Mirrors.record(LAN + "/x", true, 5);
+        Mirrors.record(ORIGIN + "/x", true, 100);
+        for (int i = 0; i < 5; i++) {
+            Mirrors.fetch(ORIGIN + "/a", url -> {
+                if (url.startsWith(LAN)) throw new HttpStatusException(url, 404);
+                return "ok";
+            });
+        }
+        assertEquals(LAN + "/a", Mirrors.route(ORIGIN + "/a").get(0));
+    }
+
+    @Test
+    public void fetchThrowsTheLastFailure() {
+        Mirrors.setMirrors(Mirrors.Origin.MOJANG_META, Collections.singletonList(LAN));
+        try {
+            Mirrors.fetch(ORIGIN + "/a", url -> {
+                if (url.startsWith(LAN)) throw new HttpStatusException(url, 404);
+                throw new SocketTimeoutException();
+            });
+            fail();
+        } catch (IOException e) {
+            assertTrue(e instanceof SocketTimeoutException);
+        }
+    }
+
+    @Test
+    public void slowMirrorIsHedged() throws IOException {
+        Mirrors.setMirrors(Mirrors.Origin.MOJANG_META, Collections.singletonList(LAN));
+        Mirrors.record(LAN + "/x", true, 1);
+        Mirrors.record(ORIGIN + "/x", true, 10);
+        long start = System.nanoTime();
+        String result = Mirrors.fetchHedged(ORIGIN + "/a", url -> {
+            if (url.startsWith(LAN)) {
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            return url;
+        });
+        assertEquals(ORIGIN + "/a", result);
+        assertTrue(System.nanoTime() - start < 2_000_000_000L);
+    }
+
+    @Test
+    public void hedgedFetchTriesEveryMirror() throws IOException {
+        Mirrors.setMirrors(Mirrors.Origin.MOJANG_META, Arrays.asList(LAN, OTHER));
+        String result = Mirrors.fetchHedged(ORIGIN + "/a", url -> {
+            if (!url.startsWith(ORIGIN)) throw new HttpStatusException(url, 503);
+            return "ok";
+        });
+        assertEquals("ok", result);
+    }
+
+    @Test
+    public void readsMirrorsJson() throws IOException {
+        try (FileWriter writer = new FileWriter(new File(Constants.USER_HOME, "mirrors.json"))) {
+            writer.write("{\"MOJANG_META\": [\"" + LAN + "\"], \"NOT_AN_ORIGIN\": []}");
+        }
+        Mirrors.reset();
+        assertEquals(Arrays.asList(LAN + "/a", ORIGIN + "/a"), Mirrors.route(ORIGIN + "/a"));
+    }
+}
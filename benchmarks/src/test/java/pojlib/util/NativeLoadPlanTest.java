@@ -0,0 +1,94 @@
+package pojlib.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NativeLoadPlanTest {
+
+    private File root;
+    private File runtimeDir;
+    private File nativeLibDir;
+    private final AtomicInteger lookups = new AtomicInteger();
+    private Function<String, String> resolver;
+
+    @BeforeClass
+    public static void createHome() {
+        new File(Constants.USER_HOME).mkdirs();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        NativeLoadPlan.invalidate();
+        root = Files.createTempDirectory("pojlib-natives").toFile();
+        runtimeDir = new File(root, "jre-17");
+        nativeLibDir = new File(root, "native");
+        for (String lib : new String[]{"lib/libjli.so", "lib/server/libjvm.so", "lib/libverify.so", "lib/libjava.so",
+                "lib/libnet.so", "lib/libnio.so", "lib/libzip.so", "lib/libawt.so", "lib/libfontmanager.so", "lib/libfreetype.so",
+                "lib/libmanagement.so"}) {
+            touch(new File(runtimeDir, lib));
+        }
+        touch(new File(nativeLibDir, "libopenal.so"));
+        resolver = name -> {
+            lookups.incrementAndGet();
+            return new File(runtimeDir, "lib/" + name).getAbsolutePath();
+        };
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        NativeLoadPlan.invalidate();
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Test
+    public void coreFirstOptionalDeferredOpenalLast() {
+        List<String> libs = NativeLoadPlan.get(runtimeDir.getPath(), runtimeDir + "/lib/server", nativeLibDir.getPath(), resolver);
+
+        assertEquals(new File(runtimeDir, "lib/libjli.so").getAbsolutePath(), libs.get(0));
+        assertEquals(new File(runtimeDir, "lib/server/libjvm.so").getAbsolutePath(), libs.get(1));
+        assertEquals(new File(nativeLibDir, "libopenal.so").getAbsolutePath(), libs.get(libs.size() - 1));
+        assertTrue(libs.contains(new File(runtimeDir, "lib/libzip.so").getAbsolutePath()));
+        for (String lib : libs) assertFalse(lib, NativeLoadPlan.DEFERRED_LIBS.contains(new File(lib).getName()));
+        assertEquals(libs.size(), libs.stream().distinct().count());
+    }
+
+    @Test
+    public void planIsReusedUntilRuntimeChanges() throws IOException {
+        List<String> first = NativeLoadPlan.get(runtimeDir.getPath(), runtimeDir + "/lib/server", nativeLibDir.getPath(), resolver);
+        lookups.set(0);
+        assertEquals(first, NativeLoadPlan.get(runtimeDir.getPath(), runtimeDir + "/lib/server", nativeLibDir.getPath(), resolver));
+        assertEquals(0, lookups.get());
+
+        // RuntimeInstaller rewrites its manifest after changing the runtime
+        touch(new File(runtimeDir, "lib/libnew.so"));
+        FileUtils.writeStringToFile(new File(runtimeDir, ".manifest.json"), "{}", "UTF-8");
+        List<String> updated = NativeLoadPlan.get(runtimeDir.getPath(), runtimeDir + "/lib/server", nativeLibDir.getPath(), resolver);
+        assertTrue(updated.contains(new File(runtimeDir, "lib/libnew.so").getAbsolutePath()));
+    }
+
+    @Test
+    public void missingLibraryRebuildsPlan() {
+        NativeLoadPlan.get(runtimeDir.getPath(), runtimeDir + "/lib/server", nativeLibDir.getPath(), resolver);
+        assertTrue(new File(runtimeDir, "lib/libzip.so").delete());
+        List<String> libs = NativeLoadPlan.get(runtimeDir.getPath(), runtimeDir + "/lib/server", nativeLibDir.getPath(), resolver);
+        assertFalse(libs.contains(new File(runtimeDir, "lib/libzip.so").getAbsolutePath()));
+    }
+
+    private static void touch(File file) throws IOException {
+        FileUtils.writeByteArrayToFile(file, new byte[1]);
+    }
+}
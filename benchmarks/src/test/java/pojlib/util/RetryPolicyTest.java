@@ -0,0 +1,125 @@
+package pojlib.util;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RetryPolicyTest {
+
+    private final List<Long> sleeps = new ArrayList<>();
+
+    @BeforeClass
+    public static void createHome() {
+        // Retries are logged
+        new File(Constants.USER_HOME).mkdirs();
+    }
+
+    private RetryPolicy policy(int attempts, int budget) {
+        return new RetryPolicy(attempts, 100, 2000, budget, sleeps::add, new Random(3));
+    }
+
+    @Test
+    public void classifiesFailures() {
+        assertTrue(RetryPolicy.isRetriable(new HttpStatusException("u", 503)));
+        assertTrue(RetryPolicy.isRetriable(new HttpStatusException("u", 429)));
+        assertTrue(RetryPolicy.isRetriable(new SocketTimeoutException()));
+        assertTrue(RetryPolicy.isRetriable(new HashMismatchException(new File("a"), "00")));
+        // Wrapped the way DownloadUtils does it
+        assertTrue(RetryPolicy.isRetriable(new IOException("Unable to download", new HttpStatusException("u", 500))));
+
+        assertFalse(RetryPolicy.isRetriable(new HttpStatusException("u", 404)));
+        assertFalse(RetryPolicy.isRetriable(new IOException("Unable to download", new HttpStatusException("u", 403))));
+        assertFalse(RetryPolicy.isRetriable(new FileNotFoundException("/nope")));
+    }
+
+    @Test
+    public void retriesUntilItWorks() throws IOException {
+        AtomicInteger calls = new AtomicInteger();
+        String result = policy(5, 10).run("thing", () -> {
+            if (calls.incrementAndGet() < 3) throw new HttpStatusException("u", 503);
+            return "done";
+        });
+        assertEquals("done", result);
+        assertEquals(3, calls.get());
+        assertEquals(2, sleeps.size());
+    }
+
+    @Test
+    public void fatalFailuresAreNotRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        try {
+            policy(5, 10).run("thing", () -> {
+                calls.incrementAndGet();
+                throw new HttpStatusException("u", 404);
+            });
+            fail();
+        } catch (IOException e) {
+            assertEquals(404, ((HttpStatusException) e).status);
+        }
+        assertEquals(1, calls.get());
+        assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        AtomicInteger calls = new AtomicInteger();
+        try {
+            policy(4, 10).run("thing", () -> {
+                calls.incrementAndGet();
+                throw new SocketTimeoutException();
+            });
+            fail();
+        } catch (IOException e) {
+            assertTrue(e instanceof SocketTimeoutException);
+        }
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    public void budgetIsSharedByTheStage() {
+        RetryPolicy policy = policy(5, 3);
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            try {
+                policy.run("file" + i, () -> {
+                    calls.incrementAndGet();
+                    throw new HttpStatusException("u", 500);
+                });
+                fail();
+            } catch (IOException expected) {}
+        }
+        // The first file used up all 3 retries, the others only got their first attempt
+        assertEquals(4 + 1 + 1, calls.get());
+        assertEquals(0, policy.getBudget());
+    }
+
+    @Test
+    public void delaysAreJitteredAndCapped() {
+        RetryPolicy policy = policy(5, 10);
+        long delay = 100;
+        for (int i = 0; i < 50; i++) {
+            long next = policy.nextDelay(delay);
+            assertTrue("Delay " + next, next >= 100 && next <= Math.min(2000, delay * 3));
+            delay = next;
+        }
+        // Downloads that failed together don't wait the same time
+        Set<Long> delays = new HashSet<>();
+        for (int i = 0; i < 10; i++) delays.add(policy.nextDelay(1000));
+        assertTrue(delays.size() > 1);
+    }
+}
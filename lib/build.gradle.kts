@@ -3,6 +3,43 @@ plugins {
     id("org.jetbrains.kotlin.android")
 }
 
+// Lists path, size and sha1 of every file in the bundled runtime, so the app can repair or upgrade it file by file
+val runtimeZip = file("src/main/assets/jre-17.zip")
+val runtimeManifestDir = layout.buildDirectory.dir("generated/runtime-manifest")
+
+fun sha1(input: java.io.InputStream): Pair<String, Long> {
+    val digest = java.security.MessageDigest.getInstance("SHA-1")
+    val buffer = ByteArray(256 * 1024)
+    var size = 0L
+    while (true) {
+        val len = input.read(buffer)
+        if (len < 0) break
+        digest.update(buffer, 0, len)
+        size += len
+    }
+    return Pair(digest.digest().joinToString("") { "%02x".format(it) }, size)
+}
+
+val generateRuntimeManifest by tasks.registering {
+    inputs.files(runtimeZip)
+    outputs.dir(runtimeManifestDir)
+    onlyIf { runtimeZip.exists() }
+    doLast {
+        val files = mutableListOf<Map<String, Any>>()
+        java.util.zip.ZipFile(runtimeZip).use { zip ->
+            for (entry in zip.entries()) {
+                if (entry.isDirectory) continue
+                val (hash, size) = zip.getInputStream(entry).use { sha1(it) }
+                files.add(mapOf("path" to entry.name, "size" to size, "sha1" to hash))
+            }
+        }
+        val id = runtimeZip.inputStream().use { sha1(it) }.first
+        val manifest = mapOf("id" to id, "files" to files)
+        runtimeManifestDir.get().file("jre-17.manifest.json").asFile.writeText(groovy.json.JsonOutput.toJson(manifest))
+    }
+}
+tasks.named("preBuild") { dependsOn(generateRuntimeManifest) }
+
 android {
     compileSdkVersion = "android-31"
     defaultConfig {
@@ -26,6 +63,8 @@ android {
 
     buildToolsVersion = "30.0.3"
     ndkVersion = "22.1.7171670"
+
+    sourceSets["main"].assets.srcDir(runtimeManifestDir)
 }
 
 dependencies {
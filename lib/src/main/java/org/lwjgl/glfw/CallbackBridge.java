@@ -14,17 +14,76 @@ public class CallbackBridge {
     public static volatile int windowWidth, windowHeight;
     public static volatile int physicalWidth, physicalHeight;
     public static float mouseX, mouseY;
-    public static StringBuilder DEBUG_STRING = new StringBuilder();
-    private static boolean threadAttached;
+    // Last input events for debugging, only recorded when enabled with setDebugTracing
+    public static final InputTrace TRACE = new InputTrace(1024);
+    // Keys held right now, written by whichever thread sends keys and read from any
+    public static final KeyState KEY_STATE = new KeyState();
     public volatile static boolean holdingAlt, holdingCapslock, holdingCtrl,
             holdingNumlock, holdingShift;
 
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    // Cursor moves and scrolls within this window reach the game as one batch
+    private static final long INPUT_BATCH_WINDOW_MS = 8;
+    // Everything sent to the game goes through the thread attached to it
+    private static final InputThread sInputThread = new InputThread(64, INPUT_BATCH_WINDOW_MS,
+            () -> nativeAttachThreadToOther(true, true), CallbackBridge::nativeSendInputBatch);
+    // Reused for the delayed release of clicks, more than this many clicks within the delay is not a thing
+    private static final MouseRelease[] sMouseReleases = new MouseRelease[8];
+    private static int sNextMouseRelease;
+
+    static {
+        for (int i = 0; i < sMouseReleases.length; i++) sMouseReleases[i] = new MouseRelease();
+    }
+
+    private static class MouseRelease implements Runnable {
+        int button;
+        float x, y;
+        boolean pending;
+
+        @Override
+        public void run() {
+            synchronized (sMouseReleases) {
+                if (!pending) return;
+                pending = false;
+            }
+            putMouseEventWithCoords(button, false, x, y);
+        }
+    }
+
+    public static void setDebugTracing(boolean enabled) {
+        TRACE.setEnabled(enabled);
+    }
+
+    /**
+     * @return The last input events, empty unless tracing was enabled
+     */
+    public static String getDebugString() {
+        return TRACE.dump();
+    }
+
+    /**
+     * Sends the pending cursor moves and scrolls right away instead of at the end of the batch window
+     */
+    public static void flushInput() {
+        sInputThread.flush();
+    }
 
     public static void putMouseEventWithCoords(int button, float x, float y) {
         putMouseEventWithCoords(button, true, x, y);
-        Handler handler = new Handler(Looper.getMainLooper());
-        handler.postDelayed(() -> putMouseEventWithCoords(button, false, x, y), 22);
-
+        MouseRelease release = sMouseReleases[sNextMouseRelease];
+        sNextMouseRelease = (sNextMouseRelease + 1) % sMouseReleases.length;
+        if (release.pending) {
+            // Still waiting from a click just as far back, release that button now instead
+            sMainHandler.removeCallbacks(release);
+            release.run();
+        }
+        synchronized (sMouseReleases) {
+            release.button = button;
+            release.x = x;
+            release.y = y;
+            release.pending = true;
+        }
+        sMainHandler.postDelayed(release, 22);
     }
     
     public static void putMouseEventWithCoords(int button, boolean isDown, float x, float y /* , int dz, long nanos */) {
@@ -34,23 +93,24 @@ public class CallbackBridge {
 
 
     public static void sendCursorPos(float x, float y) {
-        if (!threadAttached) {
-            threadAttached = CallbackBridge.nativeAttachThreadToOther(true, true);
-        }
-        
-        DEBUG_STRING.append("CursorPos=").append(x).append(", ").append(y).append("\n");
+        TRACE.record(InputTrace.CURSOR_POS, 0, 0, x, y);
         mouseX = x;
         mouseY = y;
-        nativeSendCursorPos(mouseX, mouseY);
+        sInputThread.cursorPos(x, y);
     }
     
     public static void sendPrepareGrabInitialPos() {
-        DEBUG_STRING.append("Prepare set grab initial posititon: ignored");
         //sendMouseKeycode(-1, CallbackBridge.getCurrentMods(), false);
     }
 
     public static void sendKeycode(int keycode, char keychar, int scancode, int modifiers, boolean isDown) {
-        DEBUG_STRING.append("KeyCode=").append(keycode).append(", Char=").append(keychar);
+        TRACE.record(InputTrace.KEY, keycode, keychar, isDown ? 1 : 0, 0);
+        setModifiers(keycode, isDown);
+        // Anything moved before the key press arrives before it
+        sInputThread.post(() -> sendKey(keycode, keychar, scancode, modifiers, isDown));
+    }
+
+    private static void sendKey(int keycode, char keychar, int scancode, int modifiers, boolean isDown) {
         // TODO CHECK: This may cause input issue, not receive input!
 /*
         if (!nativeSendCharMods((int) keychar, modifiers) || !nativeSendChar(keychar)) {
@@ -70,8 +130,10 @@ public class CallbackBridge {
     }
 
     public static void sendChar(char keychar, int modifiers){
-        nativeSendCharMods(keychar,modifiers);
-        nativeSendChar(keychar);
+        sInputThread.post(() -> {
+            nativeSendCharMods(keychar,modifiers);
+            nativeSendChar(keychar);
+        });
     }
 
     public static void sendKeyPress(int keyCode, int modifiers, boolean status) {
@@ -96,9 +158,8 @@ public class CallbackBridge {
     }
 
     public static void sendMouseKeycode(int button, int modifiers, boolean isDown) {
-        DEBUG_STRING.append("MouseKey=").append(button).append(", down=").append(isDown).append("\n");
-        // if (isGrabbing()) DEBUG_STRING.append("MouseGrabStrace: " + android.util.Log.getStackTraceString(new Throwable()) + "\n");
-        nativeSendMouseButton(button, isDown ? 1 : 0, modifiers);
+        TRACE.record(InputTrace.MOUSE_BUTTON, button, isDown ? 1 : 0, 0, 0);
+        sInputThread.post(() -> nativeSendMouseButton(button, isDown ? 1 : 0, modifiers));
     }
 
     public static void sendMouseKeycode(int keycode) {
@@ -107,12 +168,12 @@ public class CallbackBridge {
     }
     
     public static void sendScroll(double xoffset, double yoffset) {
-        DEBUG_STRING.append("ScrollX=").append(xoffset).append(",ScrollY=").append(yoffset);
-        nativeSendScroll(xoffset, yoffset);
+        TRACE.record(InputTrace.SCROLL, 0, 0, xoffset, yoffset);
+        sInputThread.scroll(xoffset, yoffset);
     }
 
     public static void sendUpdateWindowSize(int w, int h) {
-        nativeSendScreenSize(w, h);
+        sInputThread.post(() -> nativeSendScreenSize(w, h));
     }
 
     public static boolean isGrabbing() {
@@ -153,11 +214,17 @@ public class CallbackBridge {
 
 
     public static int getCurrentMods() {
-        return 0;
+        return KEY_STATE.getMods();
     }
 
     public static void setModifiers(int keyCode, boolean isDown){
-
+        KEY_STATE.set(keyCode, isDown);
+        int mods = KEY_STATE.getMods();
+        holdingShift = (mods & KeyState.MOD_SHIFT) != 0;
+        holdingCtrl = (mods & KeyState.MOD_CONTROL) != 0;
+        holdingAlt = (mods & KeyState.MOD_ALT) != 0;
+        holdingCapslock = (mods & KeyState.MOD_CAPS_LOCK) != 0;
+        holdingNumlock = (mods & KeyState.MOD_NUM_LOCK) != 0;
     }
 
     public static native boolean nativeAttachThreadToOther(boolean isAndroid, boolean isUsePushPoll);
@@ -170,6 +237,8 @@ public class CallbackBridge {
     private static native void nativeSendCursorPos(float x, float y);
     private static native void nativeSendMouseButton(int button, int action, int mods);
     private static native void nativeSendScroll(double xoffset, double yoffset);
+    // Cursor moves and scrolls as queued by InputQueue
+    private static native void nativeSendInputBatch(double[] events, int count);
     private static native void nativeSendScreenSize(int width, int height);
     public static native void nativeSetWindowAttrib(int attrib, int value);
 
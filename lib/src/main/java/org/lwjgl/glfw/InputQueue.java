@@ -0,0 +1,82 @@
+package org.lwjgl.glfw;
+
+/**
+ * Pending cursor and scroll events on their way to the game, handed over in batches.
+ * <p>
+ * Controllers move the cursor far more often than the game polls for input, so a cursor move replaces a cursor move
+ * right before it and scroll deltas right after each other are added up. The order of everything else is kept.
+ * The whole batch goes to the {@link Sink} in one call as a flat array of {@link #STRIDE} values per event:
+ * the type, then x and y.
+ */
+public class InputQueue {
+    // Same values as the event types of the native input bridge
+    public static final int EVENT_CURSOR_POS = 1003;
+    public static final int EVENT_SCROLL = 1007;
+    public static final int STRIDE = 3;
+
+    public interface Sink {
+        /** The array is reused, it is only valid during the call */
+        void sendBatch(double[] events, int count);
+    }
+
+    private final Sink sink;
+    private final double[] events;
+    private final int capacity;
+    private int count;
+
+    /**
+     * @param capacity Events held before the queue flushes by itself
+     */
+    public InputQueue(int capacity, Sink sink) {
+        this.capacity = capacity;
+        this.sink = sink;
+        this.events = new double[capacity * STRIDE];
+    }
+
+    /**
+     * @return Whether the queue was empty before, so a flush needs to be scheduled
+     */
+    public synchronized boolean cursorPos(float x, float y) {
+        if (count > 0 && events[(count - 1) * STRIDE] == EVENT_CURSOR_POS) {
+            events[(count - 1) * STRIDE + 1] = x;
+            events[(count - 1) * STRIDE + 2] = y;
+            return false;
+        }
+        return add(EVENT_CURSOR_POS, x, y);
+    }
+
+    /**
+     * @return Whether the queue was empty before, so a flush needs to be scheduled
+     */
+    public synchronized boolean scroll(double xoffset, double yoffset) {
+        if (count > 0 && events[(count - 1) * STRIDE] == EVENT_SCROLL) {
+            events[(count - 1) * STRIDE + 1] += xoffset;
+            events[(count - 1) * STRIDE + 2] += yoffset;
+            return false;
+        }
+        return add(EVENT_SCROLL, xoffset, yoffset);
+    }
+
+    /** Sends everything pending, if anything */
+    public synchronized void flush() {
+        if (count == 0) return;
+        int sent = count;
+        count = 0;
+        sink.sendBatch(events, sent);
+    }
+
+    public synchronized int getPendingCount() {
+        return count;
+    }
+
+    private boolean add(int type, double a, double b) {
+        if (count == capacity) flush();
+        boolean wasEmpty = count == 0;
+        int offset = count * STRIDE;
+        events[offset] = type;
+        events[offset + 1] = a;
+        events[offset + 2] = b;
+        count++;
+        return wasEmpty;
+    }
+}
@@ -0,0 +1,88 @@
+package org.lwjgl.glfw;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The one thread that hands input to the game.
+ * <p>
+ * The native bridge sends to the game through the thread that attached itself to the game's vm, so attaching and
+ * every send happen here, in the order they were posted from any thread. Cursor moves and scrolls wait in an
+ * {@link InputQueue} for up to the batch window, anything else sends them first.
+ */
+public class InputThread {
+
+    private final ScheduledExecutorService thread;
+    private final InputQueue queue;
+    private final long batchWindowMs;
+    private final BooleanSupplier attach;
+    // Only used on the thread
+    private boolean attached;
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * @param capacity Cursor moves and scrolls held before they are sent without waiting for the batch window
+     * @param attach Attaches the thread to the game, called on it until it returns true
+     */
+    public InputThread(int capacity, long batchWindowMs, BooleanSupplier attach, InputQueue.Sink sink) {
+        this.queue = new InputQueue(capacity, sink);
+        this.batchWindowMs = batchWindowMs;
+        this.attach = attach;
+        this.thread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pojlib-input");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void cursorPos(float x, float y) {
+        thread.execute(() -> {
+            attach();
+            if (queue.cursorPos(x, y)) scheduleFlush();
+        });
+    }
+
+    public void scroll(double xoffset, double yoffset) {
+        thread.execute(() -> {
+            attach();
+            if (queue.scroll(xoffset, yoffset)) scheduleFlush();
+        });
+    }
+
+    /**
+     * Runs a send on the thread, after the cursor moves and scrolls posted before it
+     */
+    public void post(Runnable send) {
+        thread.execute(() -> {
+            attach();
+            cancelFlush();
+            queue.flush();
+            send.run();
+        });
+    }
+
+    /**
+     * Sends the pending cursor moves and scrolls without waiting for the end of the batch window
+     */
+    public void flush() {
+        post(() -> {});
+    }
+
+    private void attach() {
+        if (!attached) attached = attach.getAsBoolean();
+    }
+
+    private void scheduleFlush() {
+        // One left from a batch that was sent early would cut this one short
+        cancelFlush();
+        scheduledFlush = thread.schedule(queue::flush, batchWindowMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelFlush() {
+        if (scheduledFlush != null) scheduledFlush.cancel(false);
+        scheduledFlush = null;
+    }
+}
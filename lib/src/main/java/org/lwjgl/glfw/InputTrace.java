@@ -0,0 +1,88 @@
+package org.lwjgl.glfw;
+
+/**
+ * Debug record of the last input events sent through {@link CallbackBridge}.
+ * <p>
+ * Events are kept as primitives in fixed arrays, so recording never allocates and old events are overwritten
+ * instead of piling up during play. Nothing is recorded unless tracing is enabled, text is only built by {@link #dump()}.
+ */
+public class InputTrace {
+    public static final int CURSOR_POS = 1;
+    public static final int KEY = 2;
+    public static final int MOUSE_BUTTON = 3;
+    public static final int SCROLL = 4;
+
+    private final int capacity;
+    private final int[] types;
+    private final int[] ints1;
+    private final int[] ints2;
+    private final double[] values1;
+    private final double[] values2;
+    private volatile boolean enabled;
+    private long count;
+
+    public InputTrace(int capacity) {
+        this.capacity = capacity;
+        types = new int[capacity];
+        ints1 = new int[capacity];
+        ints2 = new int[capacity];
+        values1 = new double[capacity];
+        values2 = new double[capacity];
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Records an event if tracing is on, the meaning of the values depends on the type
+     */
+    public void record(int type, int i1, int i2, double v1, double v2) {
+        if (!enabled) return;
+        synchronized (this) {
+            int slot = (int) (count++ % capacity);
+            types[slot] = type;
+            ints1[slot] = i1;
+            ints2[slot] = i2;
+            values1[slot] = v1;
+            values2[slot] = v2;
+        }
+    }
+
+    /** Forgets every recorded event */
+    public synchronized void clear() {
+        count = 0;
+    }
+
+    /**
+     * @return The recorded events, oldest first, one per line
+     */
+    public synchronized String dump() {
+        StringBuilder builder = new StringBuilder();
+        long first = Math.max(0, count - capacity);
+        for (long i = first; i < count; i++) {
+            int slot = (int) (i % capacity);
+            switch (types[slot]) {
+                case CURSOR_POS:
+                    builder.append("CursorPos=").append((float) values1[slot]).append(", ").append((float) values2[slot]);
+                    break;
+                case KEY:
+                    builder.append("KeyCode=").append(ints1[slot]).append(", Char=").append((char) ints2[slot])
+                            .append(", down=").append(values1[slot] != 0);
+                    break;
+                case MOUSE_BUTTON:
+                    builder.append("MouseKey=").append(ints1[slot]).append(", down=").append(ints2[slot] != 0);
+                    break;
+                case SCROLL:
+                    builder.append("ScrollX=").append(values1[slot]).append(", ScrollY=").append(values2[slot]);
+                    break;
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+}
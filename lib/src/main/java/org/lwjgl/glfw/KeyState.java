@@ -0,0 +1,92 @@
+package org.lwjgl.glfw;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Which GLFW keys are held down, and the modifier mask that follows from them.
+ * <p>
+ * Keys are one bit each in a few atomic words, updated with compare and set so any number of threads can send keys.
+ * All modifier keys are in the last word, together with the caps and num lock toggles in the bits past the last key,
+ * so {@link #getMods()} is a single read that can't see half an update.
+ */
+public class KeyState {
+    // From GLFW
+    public static final int KEY_CAPS_LOCK = 280;
+    public static final int KEY_NUM_LOCK = 282;
+    public static final int KEY_LEFT_SHIFT = 340;
+    public static final int KEY_LEFT_CONTROL = 341;
+    public static final int KEY_LEFT_ALT = 342;
+    public static final int KEY_LEFT_SUPER = 343;
+    public static final int KEY_RIGHT_SHIFT = 344;
+    public static final int KEY_RIGHT_CONTROL = 345;
+    public static final int KEY_RIGHT_ALT = 346;
+    public static final int KEY_RIGHT_SUPER = 347;
+    public static final int KEY_LAST = 348;
+
+    public static final int MOD_SHIFT = 0x1;
+    public static final int MOD_CONTROL = 0x2;
+    public static final int MOD_ALT = 0x4;
+    public static final int MOD_SUPER = 0x8;
+    public static final int MOD_CAPS_LOCK = 0x10;
+    public static final int MOD_NUM_LOCK = 0x20;
+
+    private static final int WORDS = (KEY_LAST >> 6) + 1;
+    private static final int MOD_WORD = KEY_LEFT_SHIFT >> 6;
+    // Free bits of the modifier word, after KEY_LAST
+    private static final long CAPS_LOCK_ON = 1L << 62;
+    private static final long NUM_LOCK_ON = 1L << 63;
+
+    private final AtomicLongArray words = new AtomicLongArray(WORDS);
+
+    /**
+     * Records a key press or release, keys outside of GLFW's range are ignored
+     */
+    public void set(int key, boolean isDown) {
+        if (key < 0 || key > KEY_LAST) return;
+        int word = key >> 6;
+        long bit = 1L << (key & 63);
+
+        long prev, next;
+        do {
+            prev = words.get(word);
+            next = isDown ? prev | bit : prev & ~bit;
+        } while (prev != next && !words.compareAndSet(word, prev, next));
+
+        // Locks flip on the press, not on every repeat of it
+        long toggle = key == KEY_CAPS_LOCK ? CAPS_LOCK_ON : key == KEY_NUM_LOCK ? NUM_LOCK_ON : 0;
+        if (toggle != 0 && isDown && (prev & bit) == 0) {
+            do {
+                prev = words.get(MOD_WORD);
+            } while (!words.compareAndSet(MOD_WORD, prev, prev ^ toggle));
+        }
+    }
+
+    public boolean isDown(int key) {
+        if (key < 0 || key > KEY_LAST) return false;
+        return (words.get(key >> 6) & (1L << (key & 63))) != 0;
+    }
+
+    /**
+     * @return The GLFW modifier mask for the keys held right now
+     */
+    public int getMods() {
+        long word = words.get(MOD_WORD);
+        int mods = 0;
+        if (held(word, KEY_LEFT_SHIFT) || held(word, KEY_RIGHT_SHIFT)) mods |= MOD_SHIFT;
+        if (held(word, KEY_LEFT_CONTROL) || held(word, KEY_RIGHT_CONTROL)) mods |= MOD_CONTROL;
+        if (held(word, KEY_LEFT_ALT) || held(word, KEY_RIGHT_ALT)) mods |= MOD_ALT;
+        if (held(word, KEY_LEFT_SUPER) || held(word, KEY_RIGHT_SUPER)) mods |= MOD_SUPER;
+        if ((word & CAPS_LOCK_ON) != 0) mods |= MOD_CAPS_LOCK;
+        if ((word & NUM_LOCK_ON) != 0) mods |= MOD_NUM_LOCK;
+        return mods;
+    }
+
+    /** Releases every key and turns the locks off, e.g. when the game loses focus */
+    public void clear() {
+        for (int i = 0; i < WORDS; i++) words.set(i, 0);
+    }
+
+    private static boolean held(long word, int key) {
+        return (word & (1L << (key & 63))) != 0;
+    }
+}
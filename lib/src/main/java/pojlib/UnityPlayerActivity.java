@@ -12,22 +12,15 @@ import com.unity3d.player.IUnityPlayerLifecycleEvents;
 import com.unity3d.player.MultiWindowSupport;
 import com.unity3d.player.UnityPlayer;
 
-import org.apache.commons.io.FileUtils;
 import org.json.JSONException;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 
 import pojlib.account.MinecraftAccount;
 import pojlib.api.API_V1;
+import pojlib.install.RuntimeInstaller;
 import pojlib.instance.MinecraftInstance;
 import pojlib.util.Constants;
-import pojlib.util.FileUtil;
 
 public class UnityPlayerActivity extends ActivityGroup implements IUnityPlayerLifecycleEvents
 {
@@ -59,61 +52,13 @@ public class UnityPlayerActivity extends ActivityGroup implements IUnityPlayerLi
         mUnityPlayer.requestFocus();
         // REMOVAL REASON: MEMORY LEAK
 //        MinecraftInstance.context = this;
-        File zip = new File(this.getFilesDir() + "/runtimes/jre-17.zip");
-        if(!zip.exists()) {
-            try {
-                FileUtils.writeByteArrayToFile(zip, FileUtil.loadFromAssetToByte(this, "jre-17.zip"));
-                byte[] buffer = new byte[1024];
-                ZipInputStream zis = new ZipInputStream(new FileInputStream(zip));
-                ZipEntry zipEntry = zis.getNextEntry();
-                while (zipEntry != null) {
-                    File newFile = newFile(new File(this.getFilesDir() + "/runtimes/jre-17"), zipEntry);
-                    if (zipEntry.isDirectory()) {
-                        if (!newFile.isDirectory() && !newFile.mkdirs()) {
-                            throw new IOException("Failed to create directory " + newFile);
-                        }
-                    } else {
-                        // fix for Windows-created archives
-                        File parent = newFile.getParentFile();
-                        if (!parent.isDirectory() && !parent.mkdirs()) {
-                            throw new IOException("Failed to create directory " + parent);
-                        }
-
-                        // write file content
-                        FileOutputStream fos = new FileOutputStream(newFile);
-                        int len;
-                        while ((len = zis.read(buffer)) > 0) {
-                            fos.write(buffer, 0, len);
-                        }
-                        fos.close();
-                    }
-                    zipEntry = zis.getNextEntry();
-                }
-
-                zis.closeEntry();
-                zis.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+        // Extracted in the background, launching waits for it
+        RuntimeInstaller.install(this);
         if(new File(Constants.MC_DIR + "/assets").exists()) {
             API_V1.finishedDownloading = true;
         }
     }
 
-    public static File newFile(File destinationDir, ZipEntry zipEntry) throws IOException {
-        File destFile = new File(destinationDir, zipEntry.getName());
-
-        String destDirPath = destinationDir.getCanonicalPath();
-        String destFilePath = destFile.getCanonicalPath();
-
-        if (!destFilePath.startsWith(destDirPath + File.separator)) {
-            throw new IOException("Entry is outside of the target dir: " + zipEntry.getName());
-        }
-
-        return destFile;
-    }
-
     @Override
     public boolean onKeyMultiple(int keyCode, int repeatCount, KeyEvent event) {
         return super.onKeyMultiple(keyCode, repeatCount, event);
@@ -1,6 +1,5 @@
 package pojlib.account;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
@@ -10,7 +9,6 @@ import pojlib.util.GsonUtils;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -52,7 +50,8 @@ public class MinecraftAccount {
     public static MinecraftAccount load(String path, String client_id) {
         MinecraftAccount acc = null;
         try {
-            acc = new Gson().fromJson(new FileReader(path + "/account.json"), MinecraftAccount.class);
+            acc = GsonUtils.jsonFileToObject(path + "/account.json", MinecraftAccount.class);
+            if (acc == null) return null;
                 URLConnection connection2 = new URL("https://login.microsoftonline.com/consumers/oauth2/v2.0/token").openConnection();
                 connection2.setDoOutput(true);
                 connection2.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
@@ -17,9 +17,12 @@ import pojlib.UnityPlayerActivity;
 import pojlib.account.MinecraftAccount;
 import pojlib.android.R;
 import pojlib.install.*;
+import pojlib.instance.InstancePack;
+import pojlib.instance.InstanceStorage;
 import pojlib.instance.MinecraftInstance;
 import pojlib.util.Constants;
 import pojlib.util.GsonUtils;
+import pojlib.util.LaunchProfile;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -35,6 +38,7 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This class is the only class used by the launcher to communicate and talk to pojlib. This keeps pojlib and launcher separate.
@@ -74,6 +78,21 @@ public class API_V1 {
         }
     }
 
+    /**
+     * @param activity The active android activity
+     * @return True once the java runtime is fully extracted and an instance can be launched
+     */
+    public static boolean isRuntimeInstalled(Activity activity) {
+        return RuntimeInstaller.isInstalled(activity);
+    }
+
+    /**
+     * @return Progress of the first start runtime extraction from 0 to 1
+     */
+    public static double getRuntimeInstallProgress() {
+        return RuntimeInstaller.getProgress();
+    }
+
     /**
      * Loads an instance from the filesystem.
      *
@@ -100,6 +119,77 @@ public class API_V1 {
         return MinecraftInstance.create(activity, instanceName, home, minecraftVersion, modLoader.index);
     }
 
+    /**
+     * Installs an instance from a pack made on another device, without any network. Sets {@link #finishedDownloading} when done.
+     *
+     * @param activity          The active android activity
+     * @param instanceName      The name of the new instance, or null to use the pack's
+     * @param home              The base directory where minecraft should be setup
+     * @param pack              A pack directory or zip file, see {@link InstancePack}
+     * @return                  Completed with the instance, or exceptionally if the pack is broken
+     */
+    public static CompletableFuture<MinecraftInstance> importInstance(Activity activity, String instanceName, String home, File pack) {
+        // Still set by whatever was installed before
+        finishedDownloading = false;
+        CompletableFuture<String> lwjgl = Installer.installLwjgl(activity);
+        return InstancePack.importPack(pack, instanceName, home, Constants.USER_HOME)
+                .thenCombine(lwjgl, (instance, ignored) -> {
+                    finishedDownloading = true;
+                    return instance;
+                });
+    }
+
+    /**
+     * Packs an installed instance into one zip, for backups or for {@link #importInstance} on other devices
+     *
+     * @param instanceName      The instance to export
+     * @param home              The base directory where minecraft is setup
+     * @param pack              The zip file to write
+     * @return                  Completed with the pack, or exceptionally if the instance isn't fully installed
+     */
+    public static CompletableFuture<File> exportInstance(String instanceName, String home, File pack) {
+        return InstancePack.exportPack(instanceName, home, pack);
+    }
+
+    /**
+     * Deletes an instance, with the libraries, assets and mods no other instance uses
+     *
+     * @param instanceName      The instance to delete
+     * @param home              The base directory where minecraft is setup
+     * @return                  True if everything was deleted
+     */
+    public static boolean deleteInstance(String instanceName, String home) {
+        return MinecraftInstance.delete(instanceName, home);
+    }
+
+    /**
+     * Space used by every instance, what deleting each would free, and the saves and logs they share.
+     * Cheap to call again, only directories that changed since the last call are listed.
+     *
+     * @param home              The base directory where minecraft is setup
+     */
+    public static InstanceStorage.GameDirUsage getStorageUsage(String home) {
+        return InstanceStorage.measure(home);
+    }
+
+    /**
+     * Changes the jvm settings of an instance, used from the next launch
+     *
+     * @param instanceName      The instance to change
+     * @param gameDir           .minecraft directory.
+     * @param profile           Heap, garbage collector and jit settings
+     * @param jvmArgs           Extra jvm arguments that override the profile, or null
+     * @return                  The updated instance, null if it doesn't exist
+     */
+    public static MinecraftInstance setLaunchProfile(String instanceName, String gameDir, LaunchProfile profile, String jvmArgs) {
+        MinecraftInstance instance = MinecraftInstance.load(instanceName, gameDir);
+        if (instance == null) return null;
+        instance.launchProfile = profile.name();
+        instance.jvmArgs = jvmArgs;
+        GsonUtils.objectToJsonFile(gameDir + "/instances/" + instanceName + "/instance.json", instance);
+        return instance;
+    }
+
     /**
      * Logs the user in and keeps them logged in unless they log out
      *
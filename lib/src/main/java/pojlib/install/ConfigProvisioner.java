@@ -0,0 +1,187 @@
+package pojlib.install;
+
+import android.content.Context;
+
+import com.google.gson.annotations.SerializedName;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import pojlib.util.Constants;
+import pojlib.util.FileUtil;
+import pojlib.util.GsonUtils;
+import pojlib.util.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copies the default game configs bundled in the assets into .minecraft, as listed in configs.json.
+ * <p>
+ * Every file has an overwrite policy and a version. The hash of every file written is remembered, so a config
+ * the user changed is never replaced by an if-unmodified file, and an unchanged one is only rewritten when its
+ * version in configs.json is bumped.
+ */
+public class ConfigProvisioner {
+
+    public static final String MANIFEST_ASSET = "configs.json";
+    private static final int THREADS = 4;
+
+    public enum Policy {
+        /** Replaced whenever it differs from the asset */
+        @SerializedName("always") ALWAYS,
+        /** Only written if there is no such file yet */
+        @SerializedName("if-missing") IF_MISSING,
+        /** Written if missing, updated to a new version only if the user hasn't changed it */
+        @SerializedName("if-unmodified") IF_UNMODIFIED
+    }
+
+    public static class Manifest {
+        @SerializedName("files")
+        public List<Entry> files = new ArrayList<>();
+    }
+
+    public static class Entry {
+        @SerializedName("asset")
+        public String asset;
+        // Relative to .minecraft
+        @SerializedName("destination")
+        public String destination;
+        @SerializedName("policy")
+        public Policy policy = Policy.IF_UNMODIFIED;
+        @SerializedName("version")
+        public int version;
+    }
+
+    private static class Provisioned {
+        @SerializedName("version")
+        int version;
+        @SerializedName("sha1")
+        String sha1;
+
+        Provisioned(int version, String sha1) {
+            this.version = version;
+            this.sha1 = sha1;
+        }
+    }
+
+    private static class ProvisionedFiles {
+        @SerializedName("files")
+        HashMap<String, Provisioned> files = new HashMap<>();
+    }
+
+    /**
+     * Applies configs.json in the background, writing only the files that need it
+     *
+     * @param ctx Used to read the assets
+     * @param mcDir The .minecraft directory
+     * @return {@link CompletableFuture CompletableFuture&lt;Integer&gt;} completed with the number of files written,
+     * or exceptionally with the first failure once every other file was handled
+     */
+    public static CompletableFuture<Integer> provision(Context ctx, String mcDir) {
+        Context appContext = ctx.getApplicationContext();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return provision(appContext, readManifest(appContext), new File(mcDir));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, Installer.executor());
+    }
+
+    private static int provision(Context ctx, Manifest manifest, File mcDir) throws IOException {
+        String stateFile = Constants.USER_HOME + "/provisioned-configs.json";
+        ProvisionedFiles saved = GsonUtils.jsonFileToObject(stateFile, ProvisionedFiles.class);
+        Map<String, Provisioned> state = new ConcurrentHashMap<>();
+        if (saved != null && saved.files != null) state.putAll(saved.files);
+
+        AtomicInteger written = new AtomicInteger();
+        Queue<RuntimeException> failures = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        // At most THREADS files at a time, on the installer's threads
+        for (int t = 0; t < THREADS; t++) {
+            int first = t;
+            tasks.add(CompletableFuture.runAsync(() -> {
+                for (int i = first; i < manifest.files.size(); i += THREADS) {
+                    Entry entry = manifest.files.get(i);
+                    try {
+                        if (apply(ctx, entry, new File(mcDir, entry.destination), state)) written.incrementAndGet();
+                    } catch (IOException e) {
+                        failures.add(new RuntimeException("Unable to provision " + entry.destination, e));
+                    }
+                }
+            }, Installer.executor()));
+        }
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+
+        ProvisionedFiles result = new ProvisionedFiles();
+        result.files.putAll(state);
+        GsonUtils.objectToJsonFile(stateFile, result);
+        RuntimeException failure = failures.poll();
+        if (failure != null) {
+            for (RuntimeException e : failures) failure.addSuppressed(e);
+            throw failure;
+        }
+
+        Logger.getInstance().appendToLog("Provisioned configs, " + written.get() + " files written");
+        return written.get();
+    }
+
+    private static boolean apply(Context ctx, Entry entry, File target, Map<String, Provisioned> state) throws IOException {
+        String key = entry.destination;
+        Provisioned provisioned = state.get(key);
+
+        switch (entry.policy) {
+            case IF_MISSING:
+                if (target.exists()) return false;
+                break;
+            case IF_UNMODIFIED:
+                if (!target.exists()) break;
+                if (provisioned == null || provisioned.version == entry.version) {
+                    // Already current, or it was there before we kept track and may have been edited
+                    return false;
+                }
+                if (!sha1(target).equals(provisioned.sha1)) {
+                    // The user changed it, keep their version and don't check again until the next bump
+                    state.put(key, new Provisioned(entry.version, provisioned.sha1));
+                    return false;
+                }
+                break;
+            case ALWAYS:
+                if (provisioned != null && provisioned.version == entry.version && target.isFile()
+                        && sha1(target).equals(provisioned.sha1)) return false;
+                break;
+        }
+
+        boolean copied = FileUtil.copyAsset(ctx, entry.asset, target);
+        state.put(key, new Provisioned(entry.version, sha1(target)));
+        return copied;
+    }
+
+    private static Manifest readManifest(Context ctx) throws IOException {
+        try (Reader reader = new InputStreamReader(ctx.getAssets().open(MANIFEST_ASSET), StandardCharsets.UTF_8)) {
+            Manifest manifest = GsonUtils.GLOBAL_GSON.fromJson(reader, Manifest.class);
+            if (manifest == null || manifest.files == null) throw new IOException(MANIFEST_ASSET + " is empty");
+            return manifest;
+        }
+    }
+
+    private static String sha1(File file) throws IOException {
+        try (InputStream is = Files.newInputStream(file.toPath())) {
+            return DigestUtils.sha1Hex(is);
+        }
+    }
+}
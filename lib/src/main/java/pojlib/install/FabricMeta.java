@@ -6,7 +6,7 @@ import pojlib.util.Constants;
 
 public class FabricMeta {
 
-    private static final APIHandler handler = new APIHandler(Constants.FABRIC_META_URL);
+    private static final APIHandler handler = new APIHandler(() -> Constants.FABRIC_META_URL);
 
     public static class FabricVersion {
         @SerializedName("version")
@@ -20,10 +20,10 @@ public class FabricMeta {
     }
 
     public static FabricVersion getLatestStableVersion() {
-        for (FabricVersion version : getVersions()) {
-            if (version.stable) return version;
-        }
-        return null;
+        FabricVersion version = new FabricVersion();
+        version.version = LoaderMeta.getLatestVersion(LoaderMeta.Loader.FABRIC);
+        version.stable = true;
+        return version;
     }
 
     public static VersionInfo getVersionInfo(FabricVersion fabricVersion, MinecraftMeta.MinecraftVersion minecraftVersion) {
@@ -2,17 +2,27 @@ package pojlib.install;
 
 import android.app.Activity;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
-import org.apache.commons.io.FileUtils;
-
 import pojlib.util.*;
 
+import org.apache.commons.codec.digest.DigestUtils;
+
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringJoiner;
 import java.util.concurrent.*;
 
@@ -23,32 +33,48 @@ import java.util.concurrent.*;
 public class Installer {
 
     private static final ExecutorService threadPool = Executors.newCachedThreadPool();
+    // Most of an asset index is lang files and short sounds of a few KB, these are fetched in pipelined batches
+    static final int SMALL_ASSET_SIZE = 64 * 1024;
+    static final int SMALL_ASSET_BATCH = 64;
+
+    /**
+     * @return The threads every install stage runs on, for work that belongs with them
+     */
+    public static Executor executor() {
+        return threadPool;
+    }
 
     /**
      * Will only download client if it is missing, however it will overwrite if sha1 does not match the downloaded client
      * 
      * @param minecraftVersionInfo The data from the version info json
      * @param gameDir Directory to download the client to
-     * @return {@link CompletableFuture CompletableFuture&lt;String&gt;} completed with either the path of the newly downloaded jar or a RuntimeException if it fails after 5 retries.
+     * @return {@link CompletableFuture CompletableFuture&lt;String&gt;} completed with either the path of the newly downloaded jar or the IOException it failed with, see {@link RetryPolicy}
      * @throws IOException See {@link DownloadUtils#downloadFile(String,File) downloadFile(String,File)}
      */
     public static CompletableFuture<String> installClient(VersionInfo minecraftVersionInfo, String gameDir) throws IOException {
+        return installClient(minecraftVersionInfo, gameDir, new CompletableFuture<>());
+    }
+
+    /**
+     * @param stop Stops the download once done, the returned future is cancelled once nothing runs anymore
+     */
+    public static CompletableFuture<String> installClient(VersionInfo minecraftVersionInfo, String gameDir, CompletableFuture<?> stop) {
         Logger.getInstance().appendToLog("Downloading Client");
         CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<Void> stopped = stopped(stop, future);
+        RetryPolicy retry = new RetryPolicy();
         threadPool.submit(() -> {
             File clientFile = new File(gameDir + "/versions/" + minecraftVersionInfo.id + "/" + minecraftVersionInfo.id + ".jar");
-            for (int i = 0; i < 5; i++) {
-                if (i == 4) {
-                    future.completeExceptionally(new RuntimeException("Client download failed after 5 retries"));
+            try {
+                retry.run("client " + minecraftVersionInfo.id, () -> {
+                    checkStopped(stopped, "Downloading the client");
+                    DownloadUtils.downloadVerified(minecraftVersionInfo.downloads.client.url, clientFile, minecraftVersionInfo.downloads.client.sha1);
                     return null;
-                }
-
-                if (!clientFile.exists())
-                    DownloadUtils.downloadFile(minecraftVersionInfo.downloads.client.url, clientFile);
-                if (DownloadUtils.compareSHA1(clientFile, minecraftVersionInfo.downloads.client.sha1)) {
-                    future.complete(clientFile.getAbsolutePath());
-                    break;
-                }
+                });
+                future.complete(clientFile.getAbsolutePath());
+            } catch (IOException e) {
+                fail(future, stopped, e);
             }
             return null;
         });
@@ -59,52 +85,38 @@ public class Installer {
      * Will only download library if it is missing, however it will overwrite if sha1 does not match the downloaded library
      * @param versionInfo The data from the version info json
      * @param gameDir Directory to download libs to
-     * @return {@link CompletableFuture CompletableFuture&lt;String&gt;} completed with either the classpath of the libs or a RuntimeException if it fails after 5 retries.
+     * @return {@link CompletableFuture CompletableFuture&lt;String&gt;} completed with either the classpath of the libs or the IOException it failed with, see {@link RetryPolicy}
      * @throws IOException See {@link DownloadUtils#downloadFile(String,File) downloadFile(String,File)}
      */
     public static CompletableFuture<String> installLibraries(VersionInfo versionInfo, String gameDir) throws IOException {
+        return installLibraries(versionInfo, gameDir, new CompletableFuture<>());
+    }
+
+    /**
+     * @param stop Stops the downloads once done, the returned future is cancelled once nothing runs anymore
+     */
+    public static CompletableFuture<String> installLibraries(VersionInfo versionInfo, String gameDir, CompletableFuture<?> stop) {
         Logger.getInstance().appendToLog("Downloading Libraries for: " + versionInfo.id);
 
         CompletableFuture<String> future = new CompletableFuture<String>();
+        CompletableFuture<Void> stopped = stopped(stop, future);
+        RetryPolicy retry = new RetryPolicy();
         threadPool.submit(() -> {
             StringJoiner classpath = new StringJoiner(File.pathSeparator);
-            for (VersionInfo.Library library : versionInfo.libraries) {
-                for (int i = 0; i < 5; i++) {
-                    if (i == 4) {
-                        future.completeExceptionally(new RuntimeException(String.format("Library download of %s failed after 5 retries", library.name)));
-                        return null;
-                    }
-
-                    File libraryFile;
-                    String sha1;
-
-                    //Null means mod lib, otherwise vanilla lib
-                    if (library.downloads == null) {
-                        String path = parseLibraryNameToPath(library.name);
-                        libraryFile = new File(gameDir + "/libraries/", path);
-                        sha1 = APIHandler.getRaw(library.url + path + ".sha1");
-                        if (!libraryFile.exists()) {
-                            Logger.getInstance().appendToLog("Downloading: " + library.name);
-                            DownloadUtils.downloadFile(library.url + path, libraryFile);
-                        }
-                    } else {
-                        VersionInfo.Library.Artifact artifact = library.downloads.artifact;
-                        libraryFile = new File(gameDir + "/libraries/", artifact.path);
-                        sha1 = artifact.sha1;
-                        if (!libraryFile.exists() && !artifact.path.contains("lwjgl")) {
-                            Logger.getInstance().appendToLog("Downloading: " + library.name);
-                            DownloadUtils.downloadFile(artifact.url, libraryFile);
-                        }
-                    }
-
-                    if (DownloadUtils.compareSHA1(libraryFile, sha1)) {
-                        // Add our GLFW
-                        classpath.add(Constants.USER_HOME + "/lwjgl3/lwjgl-glfw-classes.jar");
+            try {
+                for (VersionInfo.Library library : versionInfo.libraries) {
+                    File libraryFile = retry.run(library.name, () -> {
+                        checkStopped(stopped, "Downloading " + library.name);
+                        return installLibrary(library, gameDir);
+                    });
+                    // Add our GLFW
+                    classpath.add(Constants.USER_HOME + "/lwjgl3/lwjgl-glfw-classes.jar");
 
-                        classpath.add(libraryFile.getAbsolutePath());
-                        break;
-                    }
+                    classpath.add(libraryFile.getAbsolutePath());
                 }
+            } catch (IOException e) {
+                fail(future, stopped, e);
+                return null;
             }
             future.complete(classpath.toString());
             return null;
@@ -112,52 +124,120 @@ public class Installer {
         return future;
     }
 
+    private static File installLibrary(VersionInfo.Library library, String gameDir) throws IOException {
+        //Null means mod lib, otherwise vanilla lib
+        if (library.downloads == null) {
+            String path = parseLibraryNameToPath(library.name);
+            File libraryFile = new File(gameDir + "/libraries/", path);
+            // Some maven repos have no .sha1, the jar is taken as it is then
+            String sha1 = APIHandler.getRaw(library.url + path + ".sha1");
+            if (sha1 != null) sha1 = sha1.trim().split("\\s+")[0];
+            if (!libraryFile.exists()) Logger.getInstance().appendToLog("Downloading: " + library.name);
+            DownloadUtils.downloadVerified(library.url + path, libraryFile, sha1);
+            return libraryFile;
+        }
+
+        VersionInfo.Library.Artifact artifact = library.downloads.artifact;
+        File libraryFile = new File(gameDir + "/libraries/", artifact.path);
+        // We bring our own lwjgl
+        if (artifact.path.contains("lwjgl")) return libraryFile;
+        if (!libraryFile.exists()) Logger.getInstance().appendToLog("Downloading: " + library.name);
+        DownloadUtils.downloadVerified(artifact.url, libraryFile, artifact.sha1);
+        return libraryFile;
+    }
+
     //Only works on minecraft, not fabric, quilt, etc...
     //Will only download asset if it is missing
 
     /**
      * Only work on minecraft, not on any modloaders
-     * Will only download assets if missing
+     * Will only download assets if missing. The bundled configs are handled by {@link ConfigProvisioner}
      * @param minecraftVersionInfo The data from the version info json
      * @param gameDir Directory to download to
-     * @return {@link CompletableFuture CompletableFuture&lt;String&gt;} completed with the directory of the assets, or an IOException if something fails
+     * @return {@link CompletableFuture CompletableFuture&lt;String&gt;} completed with the directory of the assets, or the first IOException an asset failed with.
+     * It fails only once every download stopped, nothing writes to the assets after that
+     */
+    public static CompletableFuture<String> installAssets(VersionInfo minecraftVersionInfo, String gameDir) {
+        return installAssets(minecraftVersionInfo, gameDir, new CompletableFuture<>());
+    }
+
+    /**
+     * @param stop Stops the downloads once done, the returned future is cancelled once nothing runs anymore
      */
-    public static CompletableFuture<String> installAssets(Activity context, VersionInfo minecraftVersionInfo, String gameDir) {
+    public static CompletableFuture<String> installAssets(VersionInfo minecraftVersionInfo, String gameDir, CompletableFuture<?> stop) {
         Logger.getInstance().appendToLog("Downloading assets");
         CompletableFuture<String> future = new CompletableFuture<>();
+        // Also failed by the first asset that can't be downloaded, which stops the others
+        CompletableFuture<Void> stopped = stopped(stop, future);
+        RetryPolicy retry = new RetryPolicy();
         threadPool.submit(() -> {
-            JsonObject assets = APIHandler.getFullUrl(minecraftVersionInfo.assetIndex.url, JsonObject.class);
+            JsonObject assets;
+            try {
+                assets = retry.run("asset index", () -> {
+                    checkStopped(stopped, "Downloading the asset index");
+                    JsonObject index = APIHandler.getFullUrl(minecraftVersionInfo.assetIndex.url, JsonObject.class);
+                    if (index == null) throw new IOException("Couldn't get asset index " + minecraftVersionInfo.assetIndex.url);
+                    return index;
+                });
+            } catch (IOException e) {
+                fail(future, stopped, e);
+                return null;
+            }
 
-            // what is this monstrosity
-            ThreadPoolExecutor tp = new ThreadPoolExecutor(5, 5, 100, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+            // The controller decides how many of these threads are busy
+            ThreadPoolExecutor tp = new ThreadPoolExecutor(DownloadConcurrency.DEFAULT_MAX, DownloadConcurrency.DEFAULT_MAX, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            tp.allowCoreThreadTimeOut(true);
+            DownloadConcurrency concurrency = new DownloadConcurrency();
 
-            for (Map.Entry<String, JsonElement> entry : assets.getAsJsonObject("objects").entrySet()) {
-                DownloadTask thread = new DownloadTask(entry, minecraftVersionInfo, gameDir);
-                tp.execute(thread);
-            }
+            try {
+                List<Map.Entry<String, VersionInfo.Asset>> small = new ArrayList<>();
+                for (Map.Entry<String, JsonElement> entry : assets.getAsJsonObject("objects").entrySet()) {
+                    // An asset failed for good or the install was stopped, no point starting the rest
+                    if (stopped.isDone()) break;
+                    VersionInfo.Asset asset = GsonUtils.GLOBAL_GSON.fromJson(entry.getValue(), VersionInfo.Asset.class);
+                    if (asset.size > SMALL_ASSET_SIZE) {
+                        concurrency.acquire();
+                        tp.execute(new DownloadTask(entry, minecraftVersionInfo, gameDir, concurrency, retry, stopped));
+                        continue;
+                    }
+                    // Small ones are written in place, a file cut short by a crash has the wrong size
+                    if (new File(gameDir + "/assets/objects/" + asset.hash.substring(0, 2), asset.hash).length() == asset.size) continue;
+                    small.add(new AbstractMap.SimpleEntry<>(entry.getKey(), asset));
+                    if (small.size() == SMALL_ASSET_BATCH) {
+                        concurrency.acquire();
+                        tp.execute(new SmallAssetBatch(small, gameDir, concurrency, retry, stopped));
+                        small = new ArrayList<>();
+                    }
+                }
+                if (!small.isEmpty() && !stopped.isDone()) {
+                    concurrency.acquire();
+                    tp.execute(new SmallAssetBatch(small, gameDir, concurrency, retry, stopped));
+                }
+            } catch (InterruptedException ignored) {}
 
             tp.shutdown();
             try {
                 while (!tp.awaitTermination(100, TimeUnit.MILLISECONDS));
             } catch (InterruptedException ignored) {}
+            Logger.getInstance().appendToLog("Assets: " + concurrency.summary());
+            if (future.isDone()) return null;
+            if (stopped.isDone()) {
+                stopped.exceptionally(e -> {
+                    if (e instanceof CancellationException) future.cancel(false);
+                    else future.completeExceptionally(e);
+                    return null;
+                });
+                return null;
+            }
             try {
-                DownloadUtils.downloadFile(minecraftVersionInfo.assetIndex.url, new File(gameDir + "/assets/indexes/" + minecraftVersionInfo.assets + ".json"));
-
-                FileUtils.writeByteArrayToFile(new File(Constants.MC_DIR + "/config/sodium-extra.properties"), FileUtil.loadFromAssetToByte(context, "sodium-extra.properties"));
-                FileUtils.writeByteArrayToFile(new File(Constants.MC_DIR + "/config/sodium-mixins.properties"), FileUtil.loadFromAssetToByte(context, "sodium-mixins.properties"));
-                FileUtils.writeByteArrayToFile(new File(Constants.MC_DIR + "/config/sodium-options.json"), FileUtil.loadFromAssetToByte(context, "sodium-options.json"));
-                FileUtils.writeByteArrayToFile(new File(Constants.MC_DIR + "/config/vivecraft-config.properties"), FileUtil.loadFromAssetToByte(context, "vivecraft-config.properties"));
-                FileUtils.writeByteArrayToFile(new File(Constants.MC_DIR + "/config/tweakeroo.json"), FileUtil.loadFromAssetToByte(context, "tweakeroo.json"));
-                FileUtils.writeByteArrayToFile(new File(Constants.MC_DIR + "/config/smoothboot.json"), FileUtil.loadFromAssetToByte(context, "smoothboot.json"));
-                FileUtils.writeByteArrayToFile(new File(Constants.MC_DIR + "/config/malilib.json"), FileUtil.loadFromAssetToByte(context, "malilib.json"));
-                FileUtils.writeByteArrayToFile(new File(Constants.MC_DIR + "/config/immediatelyfast.json"), FileUtil.loadFromAssetToByte(context, "immediatelyfast.json"));
-                FileUtils.writeByteArrayToFile(new File(Constants.MC_DIR + "/config/c2me.toml"), FileUtil.loadFromAssetToByte(context, "c2me.toml"));
-                FileUtils.writeByteArrayToFile(new File(Constants.MC_DIR + "/config/moreculling.toml"), FileUtil.loadFromAssetToByte(context, "moreculling.toml"));
-                FileUtils.writeByteArrayToFile(new File(Constants.MC_DIR + "/options.txt"), FileUtil.loadFromAssetToByte(context, "options.txt"));
-                FileUtils.writeByteArrayToFile(new File(Constants.MC_DIR + "/servers.dat"), FileUtil.loadFromAssetToByte(context, "servers.dat"));
-                FileUtils.writeByteArrayToFile(new File(Constants.MC_DIR + "/optionsviveprofiles.txt"), FileUtil.loadFromAssetToByte(context, "optionsviveprofiles.txt"));
+                File index = new File(gameDir + "/assets/indexes/" + minecraftVersionInfo.assets + ".json");
+                retry.run("asset index", () -> {
+                    checkStopped(stopped, "Downloading the asset index");
+                    DownloadUtils.downloadFile(minecraftVersionInfo.assetIndex.url, index);
+                    return null;
+                });
             } catch (IOException e) {
-                future.completeExceptionally(e);
+                fail(future, stopped, e);
             }
             if (!future.isCompletedExceptionally())
                 future.complete(new File(gameDir + "/assets").getAbsolutePath());
@@ -166,6 +246,130 @@ public class Installer {
         return future;
     }
 
+    /**
+     * @return Cancelled once the caller's stop or the returned future is done, checked before every download
+     */
+    private static CompletableFuture<Void> stopped(CompletableFuture<?> stop, CompletableFuture<?> future) {
+        CompletableFuture<Void> stopped = new CompletableFuture<>();
+        stop.whenComplete((value, e) -> stopped.cancel(false));
+        future.whenComplete((value, e) -> stopped.cancel(false));
+        return stopped;
+    }
+
+    // Thrown into a retry, an InterruptedIOException of its own class isn't retried
+    private static void checkStopped(CompletableFuture<?> stopped, String what) throws InterruptedIOException {
+        if (stopped != null && stopped.isDone()) throw new InterruptedIOException(what + " was stopped");
+    }
+
+    private static void fail(CompletableFuture<?> future, CompletableFuture<?> stopped, IOException e) {
+        if (stopped.isDone()) future.cancel(false);
+        else future.completeExceptionally(e);
+    }
+
+    /**
+     * Downloads a batch of small assets over one pipelined connection, see {@link PipelinedFetcher}.
+     * <p>
+     * The objects are checked against their hash in memory and written straight to their place, without a temp file
+     * and rename each. Each object is synced as it is written and the directories once per batch after them, so an
+     * object that survives a crash has its data. Anything that fails goes through
+     * {@link DownloadUtils#downloadVerified(String, File, String)} one by one instead, with retries.
+     */
+    public static class SmallAssetBatch implements Runnable {
+        final List<Map.Entry<String, VersionInfo.Asset>> assets;
+        final String gameDir;
+        final DownloadConcurrency concurrency;
+        final RetryPolicy retry;
+        final CompletableFuture<?> stage;
+
+        /**
+         * @param stage Failed with the first asset that can't be downloaded, stops the batch once it is done
+         */
+        public SmallAssetBatch(List<Map.Entry<String, VersionInfo.Asset>> assets, String gameDir, DownloadConcurrency concurrency,
+                               RetryPolicy retry, CompletableFuture<?> stage) {
+            this.assets = assets;
+            this.gameDir = gameDir;
+            this.concurrency = concurrency;
+            this.retry = retry;
+            this.stage = stage;
+        }
+
+        public void run() {
+            // Another download failed or the install was stopped while this one waited
+            if (stage.isDone()) {
+                concurrency.skip();
+                return;
+            }
+            long start = System.nanoTime();
+            Map<String, VersionInfo.Asset> pending = new HashMap<>();
+            List<String> paths = new ArrayList<>(assets.size());
+            Set<File> dirs = new HashSet<>();
+            long[] bytes = {0};
+            boolean failed = false;
+
+            try {
+                URL base = new URL(Mirrors.best(Mirrors.Origin.MOJANG_RESOURCES));
+                for (Map.Entry<String, VersionInfo.Asset> entry : assets) {
+                    String path = base.getPath() + "/" + entry.getValue().hash.substring(0, 2) + "/" + entry.getValue().hash;
+                    // The index has the same object under several names
+                    if (pending.put(path, entry.getValue()) == null) paths.add(path);
+                }
+
+                try (PipelinedFetcher fetcher = new PipelinedFetcher(base, PipelinedFetcher.DEFAULT_DEPTH)) {
+                    // Another download failed or the stage was cancelled
+                    stage.whenComplete((result, e) -> fetcher.close());
+                    fetcher.fetch(paths, (path, status, body) -> {
+                        VersionInfo.Asset asset = pending.get(path);
+                        if (body == null || !DigestUtils.sha1Hex(body).equalsIgnoreCase(asset.hash)) return;
+                        File dir = new File(gameDir + "/assets/objects/", asset.hash.substring(0, 2));
+                        if (dirs.add(dir)) dir.mkdirs();
+                        try (FileOutputStream out = new FileOutputStream(new File(dir, asset.hash))) {
+                            out.write(body);
+                            out.getChannel().force(false);
+                        }
+                        bytes[0] += body.length;
+                        pending.remove(path);
+                    });
+                    // A round trip's worth, comparable with single requests to the other mirrors
+                    long rounds = (paths.size() + PipelinedFetcher.DEFAULT_DEPTH - 1) / PipelinedFetcher.DEFAULT_DEPTH;
+                    Mirrors.record(base.toString(), true, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) / Math.max(1, rounds));
+                } catch (IOException e) {
+                    if (stage.isDone()) return;
+                    Mirrors.record(base.toString(), false, 0);
+                    Logger.getInstance().appendToLog("Pipelined asset download failed, downloading the rest one by one: " + e);
+                }
+
+                for (File dir : dirs) syncDir(dir);
+
+                for (VersionInfo.Asset asset : pending.values()) {
+                    if (stage.isDone()) return;
+                    String path = asset.hash.substring(0, 2) + "/" + asset.hash;
+                    File assetFile = new File(gameDir + "/assets/objects/", path);
+                    retry.run("asset " + path, () -> {
+                        checkStopped(stage, "Downloading asset " + path);
+                        DownloadUtils.downloadVerified(Constants.MOJANG_RESOURCES_URL + "/" + path, assetFile, asset.hash);
+                        return null;
+                    });
+                    bytes[0] += assetFile.length();
+                }
+                Logger.getInstance().appendToLog("Downloaded " + assets.size() + " small assets");
+            } catch (IOException e) {
+                Logger.getInstance().appendToLog("Failed to download small assets: " + e);
+                stage.completeExceptionally(e);
+                failed = true;
+            } finally {
+                concurrency.releaseBatch(bytes[0], System.nanoTime() - start, failed);
+            }
+        }
+
+        private static void syncDir(File dir) {
+            try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException ignored) {
+                // Not every filesystem lets a directory be synced, the size check on the next install catches the rest
+            }
+        }
+    }
+
     /**
      * A task used to download assets from json
      */
@@ -173,26 +377,57 @@ public class Installer {
         Map.Entry<String, JsonElement> entry;
         VersionInfo versionInfo;
         String gameDir;
+        DownloadConcurrency concurrency;
+        RetryPolicy retry;
+        CompletableFuture<?> stage;
 
         public void run() {
-            VersionInfo.Asset asset = new Gson().fromJson(entry.getValue(), VersionInfo.Asset.class);
+            VersionInfo.Asset asset = GsonUtils.GLOBAL_GSON.fromJson(entry.getValue(), VersionInfo.Asset.class);
             String path = asset.hash.substring(0, 2) + "/" + asset.hash;
             File assetFile = new File(gameDir + "/assets/objects/", path);
 
-            if (!assetFile.exists()) {
-                    Logger.getInstance().appendToLog("Downloading: " + entry.getKey());
-                try {
-                    DownloadUtils.downloadFile(Constants.MOJANG_RESOURCES_URL + "/" + path, assetFile);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
+            // Stopped while it waited
+            if (assetFile.exists() || stage != null && stage.isDone()) {
+                if (concurrency != null) concurrency.skip();
+                return;
+            }
+
+            Logger.getInstance().appendToLog("Downloading: " + entry.getKey());
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                String url = Constants.MOJANG_RESOURCES_URL + "/" + path;
+                if (retry == null) DownloadUtils.downloadVerified(url, assetFile, asset.hash);
+                else retry.run("asset " + entry.getKey(), () -> {
+                    checkStopped(stage, "Downloading asset " + entry.getKey());
+                    DownloadUtils.downloadVerified(url, assetFile, asset.hash);
+                    return null;
+                });
+                failed = false;
+            } catch (IOException e) {
+                if (stage == null) throw new RuntimeException(e);
+                stage.completeExceptionally(e);
+            } finally {
+                if (concurrency != null) concurrency.release(failed ? 0 : assetFile.length(), System.nanoTime() - start, failed);
             }
         }
 
         public DownloadTask(Map.Entry<String, JsonElement> entry, VersionInfo versionInfo, String gameDir) {
+            this(entry, versionInfo, gameDir, null, null, null);
+        }
+
+        /**
+         * @param concurrency Told about the download once it's done, it has to be acquired before running the task
+         * @param stage Failed with the download's last error if it can't be done, the download doesn't start once it is done
+         */
+        public DownloadTask(Map.Entry<String, JsonElement> entry, VersionInfo versionInfo, String gameDir, DownloadConcurrency concurrency,
+                            RetryPolicy retry, CompletableFuture<?> stage) {
             this.entry = entry;
             this.versionInfo = versionInfo;
             this.gameDir = gameDir;
+            this.concurrency = concurrency;
+            this.retry = retry;
+            this.stage = stage;
         }
     }
 
@@ -205,15 +440,13 @@ public class Installer {
         CompletableFuture<String> future = new CompletableFuture<>();
         threadPool.submit(() -> {
             File lwjgl = new File(Constants.USER_HOME + "/lwjgl3/lwjgl-glfw-classes-3.2.3.jar");
-            if (!lwjgl.exists()) {
-                lwjgl.getParentFile().mkdirs();
-                try {
-                    FileUtil.write(lwjgl.getAbsolutePath(), FileUtil.loadFromAssetToByte(activity, "lwjgl/lwjgl-glfw-classes-3.2.3.jar"));
-                } catch (IOException e) {
-                    future.completeExceptionally(new RuntimeException(e));
-                }
+            try {
+                // Also replaces a jar left over from an older version of the app
+                FileUtil.copyAsset(activity, "lwjgl/lwjgl-glfw-classes-3.2.3.jar", lwjgl);
+                future.complete(lwjgl.getAbsolutePath());
+            } catch (IOException e) {
+                future.completeExceptionally(new RuntimeException(e));
             }
-            future.complete(lwjgl.getAbsolutePath());
             return null;
         });
         return future;
@@ -0,0 +1,164 @@
+package pojlib.install;
+
+import com.google.gson.annotations.SerializedName;
+
+import pojlib.util.APIHandler;
+import pojlib.util.Constants;
+import pojlib.util.GsonUtils;
+import pojlib.util.Logger;
+import pojlib.util.SingleFlight;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Resolves the latest mod loader versions for both the installer and the mod manager.
+ * Lookups are cached in memory and on disk for {@link #CACHE_TTL_MS}, concurrent lookups share one request
+ * and the known versions below are only used when the api can't be reached and nothing was cached before.
+ */
+public class LoaderMeta {
+
+    public static final long CACHE_TTL_MS = TimeUnit.HOURS.toMillis(6);
+    // Don't ask a dead api again on every call
+    private static final long FAILURE_RETRY_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final Map<Loader, CacheEntry> memoryCache = new ConcurrentHashMap<>();
+    private static final Map<Loader, Long> lastFailure = new ConcurrentHashMap<>();
+    private static final SingleFlight<Loader, String> lookups = new SingleFlight<>();
+    private static boolean diskCacheLoaded = false;
+
+    public enum Loader {
+        FABRIC(() -> Constants.FABRIC_META_URL, true, "0.14.7"),
+        QUILT(() -> Constants.QUILT_META_URL, false, "0.16.0-beta.15");
+
+        private final APIHandler handler;
+        private final boolean stableOnly;
+        public final String fallbackVersion; //Known latest as backup
+
+        Loader(Supplier<String> metaUrl, boolean stableOnly, String fallbackVersion) {
+            this.handler = new APIHandler(metaUrl);
+            this.stableOnly = stableOnly;
+            this.fallbackVersion = fallbackVersion;
+        }
+    }
+
+    public static class LoaderVersion {
+        @SerializedName("version")
+        public String version;
+        @SerializedName("stable")
+        public boolean stable;
+    }
+
+    private static class CacheEntry {
+        @SerializedName("version")
+        String version;
+        @SerializedName("fetchedAt")
+        long fetchedAt;
+
+        CacheEntry(String version, long fetchedAt) {
+            this.version = version;
+            this.fetchedAt = fetchedAt;
+        }
+
+        boolean isFresh(long now) {
+            return now - fetchedAt < CACHE_TTL_MS;
+        }
+    }
+
+    private static class CacheFile {
+        @SerializedName("loaders")
+        HashMap<Loader, CacheEntry> loaders = new HashMap<>();
+    }
+
+    /**
+     * @param loader The mod loader to look up
+     * @return The latest (stable, if the loader marks releases as such) version of the loader.
+     * Never null, falls back to a stale cached version and then to {@link Loader#fallbackVersion}.
+     */
+    public static String getLatestVersion(Loader loader) {
+        loadDiskCache();
+        CacheEntry cached = memoryCache.get(loader);
+        long now = System.currentTimeMillis();
+        if (cached != null && cached.isFresh(now)) return cached.version;
+
+        Long failedAt = lastFailure.get(loader);
+        if (failedAt != null && now - failedAt < FAILURE_RETRY_MS) return staleOrFallback(loader);
+
+        return lookups.run(loader, () -> {
+            // Someone else may have finished the same lookup while we were waiting to start ours
+            CacheEntry entry = memoryCache.get(loader);
+            if (entry != null && entry.isFresh(System.currentTimeMillis())) return entry.version;
+
+            String version = fetchLatestVersion(loader);
+            if (version == null) {
+                lastFailure.put(loader, System.currentTimeMillis());
+                return staleOrFallback(loader);
+            }
+
+            lastFailure.remove(loader);
+            memoryCache.put(loader, new CacheEntry(version, System.currentTimeMillis()));
+            saveDiskCache();
+            return version;
+        });
+    }
+
+    /**
+     * Drops the cached version of a loader so the next lookup asks the api again
+     * @param loader The mod loader to forget
+     */
+    public static void invalidate(Loader loader) {
+        memoryCache.remove(loader);
+        lastFailure.remove(loader);
+        saveDiskCache();
+    }
+
+    private static String fetchLatestVersion(Loader loader) {
+        LoaderVersion[] versions = loader.handler.get("versions/loader", LoaderVersion[].class);
+        if (versions == null) return null;
+
+        for (LoaderVersion version : versions) {
+            if (!loader.stableOnly || version.stable) return version.version;
+        }
+        return null;
+    }
+
+    private static String staleOrFallback(Loader loader) {
+        CacheEntry stale = memoryCache.get(loader);
+        if (stale != null) return stale.version;
+        Logger.getInstance().appendToLog("Unable to fetch " + loader + " loader version, using " + loader.fallbackVersion);
+        return loader.fallbackVersion;
+    }
+
+    private static String cacheFilePath() {
+        return Constants.USER_HOME + "/cache/loader-versions.json";
+    }
+
+    private static synchronized void loadDiskCache() {
+        if (diskCacheLoaded) return;
+        diskCacheLoaded = true;
+
+        CacheFile cacheFile = null;
+        try {
+            cacheFile = GsonUtils.jsonFileToObject(cacheFilePath(), CacheFile.class);
+        } catch (RuntimeException e) {
+            // Corrupt cache, it will be rewritten on the next successful lookup
+            e.printStackTrace();
+        }
+        if (cacheFile == null || cacheFile.loaders == null) return;
+
+        for (Map.Entry<Loader, CacheEntry> entry : cacheFile.loaders.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null && entry.getValue().version != null) {
+                memoryCache.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static synchronized void saveDiskCache() {
+        CacheFile cacheFile = new CacheFile();
+        cacheFile.loaders.putAll(memoryCache);
+        GsonUtils.objectToJsonFile(cacheFilePath(), cacheFile);
+    }
+}
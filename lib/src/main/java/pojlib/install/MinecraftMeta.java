@@ -6,7 +6,7 @@ import pojlib.util.Constants;
 
 public class MinecraftMeta {
 
-    private static final APIHandler handler = new APIHandler(Constants.MOJANG_META_URL);
+    private static final APIHandler handler = new APIHandler(() -> Constants.MOJANG_META_URL);
 
     public static class MinecraftVersions {
         @SerializedName("versions")
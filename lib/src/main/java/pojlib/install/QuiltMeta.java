@@ -6,7 +6,7 @@ import pojlib.util.Constants;
 
 public class QuiltMeta {
 
-    private static final APIHandler handler = new APIHandler(Constants.QUILT_META_URL);
+    private static final APIHandler handler = new APIHandler(() -> Constants.QUILT_META_URL);
 
     public static class QuiltVersion {
         @SerializedName("version")
@@ -18,9 +18,9 @@ public class QuiltMeta {
     }
 
     public static QuiltVersion getLatestVersion() {
-        QuiltVersion[] versions = getVersions();
-        if (versions != null) return versions[0];
-        return null;
+        QuiltVersion version = new QuiltVersion();
+        version.version = LoaderMeta.getLatestVersion(LoaderMeta.Loader.QUILT);
+        return version;
     }
 
     public static VersionInfo getVersionInfo(QuiltVersion quiltVersion, MinecraftMeta.MinecraftVersion minecraftVersion) {
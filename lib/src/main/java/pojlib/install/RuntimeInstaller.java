@@ -0,0 +1,389 @@
+package pojlib.install;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import pojlib.util.GsonUtils;
+import pojlib.util.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Installs the bundled java runtime (jre-17.zip in the apk assets) into the app's files dir, and keeps it intact.
+ * <p>
+ * The zip is decompressed straight from the asset stream on a background thread, while the entries are
+ * written to disk in parallel. Every file is written under a temporary name and renamed once complete.
+ * <p>
+ * jre-17.manifest.json, generated from the zip at build time, lists the path, size and sha1 of every runtime file.
+ * Once extracted, a copy of it with the modification time of every file is written next to the runtime. On every
+ * start the files are compared against it by size and modification time only, and just the missing, damaged or
+ * (after an app update) changed files are extracted again. Files that are no longer part of the runtime are deleted.
+ */
+public class RuntimeInstaller {
+
+    public static final String RUNTIME_ASSET = "jre-17.zip";
+    public static final String MANIFEST_ASSET = "jre-17.manifest.json";
+    public static final String RUNTIME_NAME = "jre-17";
+    public static final String INSTALLED_MANIFEST = ".manifest.json";
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    // Entries up to this size are read into memory and written by the pool, bigger ones are streamed to disk directly
+    private static final int MAX_BUFFERED_ENTRY = 4 * 1024 * 1024;
+    // Caps how much decompressed data can wait for a writer
+    private static final int MAX_PENDING_BYTES = 32 * 1024 * 1024;
+    private static final int WRITER_THREADS = 4;
+
+    private static CompletableFuture<File> installFuture;
+    private static volatile long bytesRead;
+    private static volatile long totalBytes;
+
+    private RuntimeInstaller() {}
+
+    public static File getRuntimeDir(Context ctx) {
+        return new File(ctx.getFilesDir(), "runtimes/" + RUNTIME_NAME);
+    }
+
+    /**
+     * @return True if the runtime was fully extracted at some point, it may still be checked and repaired by {@link #install(Context)}
+     */
+    public static boolean isInstalled(Context ctx) {
+        return new File(getRuntimeDir(ctx), INSTALLED_MANIFEST).exists();
+    }
+
+    /**
+     * @return Progress of the running extraction from 0 to 1, 1 when nothing is being extracted
+     */
+    public static double getProgress() {
+        long total = totalBytes;
+        if (total <= 0) return 1;
+        return Math.min(1, (double) bytesRead / total);
+    }
+
+    /**
+     * Checks the runtime and extracts whatever is missing or outdated. Safe to call more than once, later calls share
+     * the running or finished check.
+     *
+     * @param ctx Only used to get the files dir and the assets
+     * @return {@link CompletableFuture CompletableFuture&lt;File&gt;} completed with the runtime directory,
+     * or completed exceptionally if the extraction fails
+     */
+    public static synchronized CompletableFuture<File> install(Context ctx) {
+        if (installFuture != null && !installFuture.isCompletedExceptionally()) return installFuture;
+
+        File runtimeDir = getRuntimeDir(ctx);
+        installFuture = new CompletableFuture<>();
+        CompletableFuture<File> future = installFuture;
+        // Don't keep an activity alive for the whole extraction
+        Context appContext = ctx.getApplicationContext();
+        Thread thread = new Thread(() -> {
+            try {
+                long size = assetLength(appContext, RUNTIME_ASSET);
+                update(() -> appContext.getAssets().open(RUNTIME_ASSET), size, readShippedManifest(appContext), runtimeDir);
+                // The runtime used to be copied out of the apk before being extracted
+                new File(runtimeDir.getParentFile(), RUNTIME_ASSET).delete();
+                future.complete(runtimeDir);
+            } catch (Throwable e) {
+                Logger.getInstance().appendToLog("Unable to extract the java runtime: " + e);
+                future.completeExceptionally(e);
+            }
+        }, "Runtime Extraction");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        thread.start();
+        return future;
+    }
+
+    /**
+     * available() is only an estimate, an asset stored uncompressed has its real length in its descriptor
+     */
+    private static long assetLength(Context ctx, String asset) throws IOException {
+        try (AssetFileDescriptor fd = ctx.getAssets().openFd(asset)) {
+            if (fd.getLength() != AssetFileDescriptor.UNKNOWN_LENGTH) return fd.getLength();
+        } catch (FileNotFoundException e) {
+            // Compressed in the apk, there's no descriptor
+        }
+        long length = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = ctx.getAssets().open(asset, AssetManager.ACCESS_STREAMING)) {
+            for (int read; (read = in.read(buffer)) != -1; ) length += read;
+        }
+        return length;
+    }
+
+    /**
+     * Brings an extracted runtime in line with a manifest, only reading the zip if something has to be written.
+     *
+     * @param zip Opens the runtime zip, the stream is closed when done
+     * @param size Size of the zip in bytes, for progress reporting
+     * @param shipped The manifest generated at build time. If null the installed manifest is trusted as is,
+     *                and a different zip size means everything is extracted again.
+     * @param runtimeDir Directory of the extracted runtime
+     */
+    public static void update(Callable<InputStream> zip, long size, RuntimeManifest shipped, File runtimeDir) throws IOException {
+        File installedFile = new File(runtimeDir, INSTALLED_MANIFEST);
+        RuntimeManifest installed = readInstalledManifest(installedFile);
+        String id = shipped != null ? shipped.id : "size:" + size;
+        RuntimeManifest reference = shipped;
+        if (reference == null && installed != null && id.equals(installed.id)) reference = installed;
+
+        Set<String> changed = reference == null ? null : findChangedFiles(reference, installed, runtimeDir);
+        boolean upToDate = installed != null && id.equals(installed.id);
+        if (upToDate && changed.isEmpty()) return;
+
+        if (changed == null) Logger.getInstance().appendToLog("Extracting java runtime");
+        else Logger.getInstance().appendToLog((upToDate ? "Repairing " : "Updating ") + changed.size() + " java runtime files");
+
+        // Until the new manifest is written, the next start doesn't trust modification times
+        installedFile.delete();
+        Map<String, RuntimeManifest.Entry> written;
+        try {
+            written = extract(zip.call(), size, runtimeDir, changed);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Unable to open the runtime zip", e);
+        }
+
+        RuntimeManifest result = new RuntimeManifest();
+        result.id = id;
+        if (reference == null) {
+            result.files.addAll(written.values());
+        } else {
+            for (RuntimeManifest.Entry entry : reference.files) {
+                RuntimeManifest.Entry extracted = written.get(entry.path);
+                if (extracted != null && entry.sha1 != null && !entry.sha1.equalsIgnoreCase(extracted.sha1)) {
+                    throw new IOException("Runtime zip doesn't match its manifest: " + entry.path);
+                }
+                RuntimeManifest.Entry copy = new RuntimeManifest.Entry(entry.path, entry.size, entry.sha1);
+                copy.lastModified = new File(runtimeDir, entry.path).lastModified();
+                result.files.add(copy);
+            }
+        }
+
+        if (installed != null) {
+            Set<String> kept = result.byPath().keySet();
+            for (RuntimeManifest.Entry entry : installed.files) {
+                if (!kept.contains(entry.path)) new File(runtimeDir, entry.path).delete();
+            }
+        }
+
+        if (!GsonUtils.objectToJsonFile(installedFile.getAbsolutePath(), result)) {
+            throw new IOException("Unable to write " + installedFile);
+        }
+    }
+
+    private static Set<String> findChangedFiles(RuntimeManifest reference, RuntimeManifest installed, File runtimeDir) throws IOException {
+        Map<String, RuntimeManifest.Entry> installedFiles = installed == null ? null : installed.byPath();
+        Set<String> changed = new HashSet<>();
+        for (RuntimeManifest.Entry entry : reference.files) {
+            File file = new File(runtimeDir, entry.path);
+            RuntimeManifest.Entry known = installedFiles == null ? null : installedFiles.get(entry.path);
+
+            boolean intact;
+            if (known != null && known.lastModified != 0 && Objects.equals(known.sha1, entry.sha1)) {
+                // Cheap check, a file we wrote hasn't been touched since
+                intact = file.length() == entry.size && file.lastModified() == known.lastModified;
+            } else {
+                // Left behind by an interrupted or older extraction, only a hash can tell
+                intact = file.isFile() && file.length() == entry.size && entry.sha1 != null && entry.sha1.equalsIgnoreCase(sha1(file));
+            }
+            if (!intact) changed.add(entry.path);
+        }
+        return changed;
+    }
+
+    /**
+     * Extracts a zip into a directory
+     *
+     * @param zip The zip stream, closed when done
+     * @param size Size of the zip stream in bytes for progress reporting, 0 if unknown
+     * @param destination Directory to extract to
+     * @param only Paths of the files to extract, null for all of them
+     * @return The extracted files by path, with their size and sha1
+     */
+    public static Map<String, RuntimeManifest.Entry> extract(InputStream zip, long size, File destination, Set<String> only) throws IOException {
+        if (!destination.isDirectory() && !destination.mkdirs()) {
+            throw new IOException("Failed to create directory " + destination);
+        }
+        String destinationPath = destination.getCanonicalPath() + File.separator;
+
+        bytesRead = 0;
+        totalBytes = size;
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = r -> new Thread(r, "Runtime Writer " + threadCount.incrementAndGet());
+        ExecutorService writers = Executors.newFixedThreadPool(WRITER_THREADS, threadFactory);
+        Semaphore pendingBytes = new Semaphore(MAX_PENDING_BYTES);
+        List<Future<?>> writes = new ArrayList<>();
+        Map<String, RuntimeManifest.Entry> written = new ConcurrentHashMap<>();
+
+        try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(new ProgressInputStream(zip), BUFFER_SIZE))) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                File file = new File(destination, entry.getName());
+                if (!file.getCanonicalPath().startsWith(destinationPath)) {
+                    throw new IOException("Entry is outside of the target dir: " + entry.getName());
+                }
+
+                if (entry.isDirectory()) {
+                    if (!file.isDirectory() && !file.mkdirs()) {
+                        throw new IOException("Failed to create directory " + file);
+                    }
+                    continue;
+                }
+                String path = entry.getName();
+                if (only != null && !only.contains(path)) continue;
+
+                File parent = file.getParentFile();
+                if (!parent.isDirectory() && !parent.mkdirs()) {
+                    throw new IOException("Failed to create directory " + parent);
+                }
+
+                long entrySize = entry.getSize();
+                if (entrySize < 0 || entrySize > MAX_BUFFERED_ENTRY) {
+                    MessageDigest digest = DigestUtils.getSha1Digest();
+                    long[] length = new long[1];
+                    writeAtomically(file, out -> {
+                        int len;
+                        while ((len = zis.read(buffer)) > 0) {
+                            out.write(buffer, 0, len);
+                            digest.update(buffer, 0, len);
+                            length[0] += len;
+                        }
+                    });
+                    written.put(path, new RuntimeManifest.Entry(path, length[0], Hex.encodeHexString(digest.digest())));
+                    continue;
+                }
+
+                byte[] content = new byte[(int) entrySize];
+                int offset = 0;
+                int len;
+                while (offset < content.length && (len = zis.read(content, offset, content.length - offset)) > 0) {
+                    offset += len;
+                }
+                if (offset != content.length) throw new IOException("Truncated entry " + path);
+
+                pendingBytes.acquireUninterruptibly(Math.max(1, content.length));
+                writes.add(writers.submit(() -> {
+                    try {
+                        writeAtomically(file, out -> out.write(content));
+                        written.put(path, new RuntimeManifest.Entry(path, content.length, DigestUtils.sha1Hex(content)));
+                    } finally {
+                        pendingBytes.release(Math.max(1, content.length));
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> write : writes) {
+                try {
+                    write.get();
+                } catch (Exception e) {
+                    throw new IOException("Failed to write runtime file", e.getCause() != null ? e.getCause() : e);
+                }
+            }
+        } finally {
+            writers.shutdownNow();
+            totalBytes = 0;
+        }
+
+        if (only != null && !written.keySet().containsAll(only)) {
+            Set<String> missing = new HashSet<>(only);
+            missing.removeAll(written.keySet());
+            throw new IOException("Runtime zip is missing " + missing);
+        }
+        return written;
+    }
+    private static RuntimeManifest readShippedManifest(Context ctx) throws IOException {
+        try (Reader reader = new InputStreamReader(ctx.getAssets().open(MANIFEST_ASSET), StandardCharsets.UTF_8)) {
+            return GsonUtils.GLOBAL_GSON.fromJson(reader, RuntimeManifest.class);
+        } catch (FileNotFoundException e) {
+            Logger.getInstance().appendToLog("No " + MANIFEST_ASSET + " in the assets, the runtime can't be checked for updates");
+            return null;
+        }
+    }
+
+    private static RuntimeManifest readInstalledManifest(File file) {
+        try {
+            RuntimeManifest manifest = GsonUtils.jsonFileToObject(file.getAbsolutePath(), RuntimeManifest.class);
+            if (manifest != null && manifest.id != null && manifest.files != null) return manifest;
+        } catch (RuntimeException e) {
+            // Corrupt, treated like an interrupted extraction
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private static String sha1(File file) throws IOException {
+        try (InputStream is = Files.newInputStream(file.toPath())) {
+            return DigestUtils.sha1Hex(is);
+        }
+    }
+
+    private interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private static void writeAtomically(File file, Writer writer) throws IOException {
+        File part = new File(file.getParentFile(), file.getName() + ".part");
+        try (OutputStream out = Files.newOutputStream(part.toPath())) {
+            writer.write(out);
+        } catch (IOException e) {
+            part.delete();
+            throw e;
+        }
+        Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static class ProgressInputStream extends FilterInputStream {
+        ProgressInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) bytesRead++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) bytesRead += read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package pojlib.install;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * List of every file in the java runtime. One is generated from jre-17.zip at build time and shipped in the assets,
+ * a copy with the modification times of the extracted files is kept next to the extracted runtime.
+ */
+public class RuntimeManifest {
+    @SerializedName("id")
+    public String id;
+    @SerializedName("files")
+    public List<Entry> files = new ArrayList<>();
+
+    public static class Entry {
+        @SerializedName("path")
+        public String path;
+        @SerializedName("size")
+        public long size;
+        @SerializedName("sha1")
+        public String sha1;
+        // Only set in the installed copy
+        @SerializedName("lastModified")
+        public long lastModified;
+
+        public Entry() {}
+
+        public Entry(String path, long size, String sha1) {
+            this.path = path;
+            this.size = size;
+            this.sha1 = sha1;
+        }
+    }
+
+    public Map<String, Entry> byPath() {
+        Map<String, Entry> entries = new HashMap<>();
+        for (Entry entry : files) entries.put(entry.path, entry);
+        return entries;
+    }
+}
@@ -1,9 +1,18 @@
 package pojlib.install;
 
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
+import static pojlib.util.GsonUtils.nextStringOrNull;
+
 public class VersionInfo {
     @SerializedName("id")
     public String id;
@@ -22,6 +31,81 @@ public class VersionInfo {
     @SerializedName("assets")
     public String assets;
 
+    /**
+     * Hand written adapter, version jsons are parsed on every install and reflection is slow on android.
+     * Nested types that are rarely touched still go through the gson instance.
+     */
+    public static class Adapter extends TypeAdapter<VersionInfo> {
+        private final TypeAdapter<AssetIndex> assetIndexAdapter;
+        private final TypeAdapter<Downloads> downloadsAdapter;
+        private final TypeAdapter<Library> libraryAdapter;
+        private final TypeAdapter<Arguments> argumentsAdapter;
+
+        public Adapter(Gson gson) {
+            assetIndexAdapter = gson.getAdapter(AssetIndex.class);
+            downloadsAdapter = gson.getAdapter(Downloads.class);
+            libraryAdapter = gson.getAdapter(Library.class);
+            argumentsAdapter = gson.getAdapter(Arguments.class);
+        }
+
+        @Override
+        public void write(JsonWriter out, VersionInfo value) throws IOException {
+            out.beginObject();
+            out.name("id").value(value.id);
+            out.name("type").value(value.type);
+            out.name("assetIndex");
+            assetIndexAdapter.write(out, value.assetIndex);
+            out.name("downloads");
+            downloadsAdapter.write(out, value.downloads);
+            out.name("libraries");
+            if (value.libraries == null) {
+                out.nullValue();
+            } else {
+                out.beginArray();
+                for (Library library : value.libraries) libraryAdapter.write(out, library);
+                out.endArray();
+            }
+            out.name("mainClass").value(value.mainClass);
+            out.name("arguments");
+            argumentsAdapter.write(out, value.arguments);
+            out.name("assets").value(value.assets);
+            out.endObject();
+        }
+
+        @Override
+        public VersionInfo read(JsonReader in) throws IOException {
+            VersionInfo info = new VersionInfo();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": info.id = nextStringOrNull(in); break;
+                    case "type": info.type = nextStringOrNull(in); break;
+                    case "assetIndex": info.assetIndex = assetIndexAdapter.read(in); break;
+                    case "downloads": info.downloads = downloadsAdapter.read(in); break;
+                    case "libraries": info.libraries = readLibraries(in); break;
+                    case "mainClass": info.mainClass = nextStringOrNull(in); break;
+                    case "arguments": info.arguments = argumentsAdapter.read(in); break;
+                    case "assets": info.assets = nextStringOrNull(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return info;
+        }
+
+        private Library[] readLibraries(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            List<Library> libraries = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) libraries.add(libraryAdapter.read(in));
+            in.endArray();
+            return libraries.toArray(new Library[0]);
+        }
+    }
+
     public static class AssetIndex {
         @SerializedName("id")
         public String id;
@@ -96,6 +180,79 @@ public class VersionInfo {
             @SerializedName("url")
             public String url;
         }
+
+        public static class Adapter extends TypeAdapter<Library> {
+            @Override
+            public void write(JsonWriter out, Library value) throws IOException {
+                out.beginObject();
+                if (value.downloads != null) {
+                    out.name("downloads").beginObject();
+                    Artifact artifact = value.downloads.artifact;
+                    if (artifact != null) {
+                        out.name("artifact").beginObject();
+                        out.name("path").value(artifact.path);
+                        out.name("sha1").value(artifact.sha1);
+                        out.name("size").value(artifact.size);
+                        out.name("url").value(artifact.url);
+                        out.endObject();
+                    }
+                    out.endObject();
+                }
+                out.name("name").value(value.name);
+                out.name("url").value(value.url);
+                out.endObject();
+            }
+
+            @Override
+            public Library read(JsonReader in) throws IOException {
+                Library library = new Library();
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "downloads": library.downloads = readDownloads(in); break;
+                        case "name": library.name = nextStringOrNull(in); break;
+                        case "url": library.url = nextStringOrNull(in); break;
+                        default: in.skipValue();
+                    }
+                }
+                in.endObject();
+                return library;
+            }
+
+            private static Downloads readDownloads(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                Downloads downloads = new Downloads();
+                in.beginObject();
+                while (in.hasNext()) {
+                    if (in.nextName().equals("artifact") && in.peek() != JsonToken.NULL) {
+                        downloads.artifact = readArtifact(in);
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+                return downloads;
+            }
+
+            private static Artifact readArtifact(JsonReader in) throws IOException {
+                Artifact artifact = new Artifact();
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "path": artifact.path = nextStringOrNull(in); break;
+                        case "sha1": artifact.sha1 = nextStringOrNull(in); break;
+                        case "size": artifact.size = in.nextInt(); break;
+                        case "url": artifact.url = nextStringOrNull(in); break;
+                        default: in.skipValue();
+                    }
+                }
+                in.endObject();
+                return artifact;
+            }
+        }
     }
 
     public static class Asset {
@@ -103,5 +260,30 @@ public class VersionInfo {
         public String hash;
         @SerializedName("size")
         public int size;
+
+        public static class Adapter extends TypeAdapter<Asset> {
+            @Override
+            public void write(JsonWriter out, Asset value) throws IOException {
+                out.beginObject();
+                out.name("hash").value(value.hash);
+                out.name("size").value(value.size);
+                out.endObject();
+            }
+
+            @Override
+            public Asset read(JsonReader in) throws IOException {
+                Asset asset = new Asset();
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "hash": asset.hash = nextStringOrNull(in); break;
+                        case "size": asset.size = in.nextInt(); break;
+                        default: in.skipValue();
+                    }
+                }
+                in.endObject();
+                return asset;
+            }
+        }
     }
 }
@@ -0,0 +1,339 @@
+package pojlib.instance;
+
+import android.app.Activity;
+
+import pojlib.api.API_V1;
+import pojlib.install.ConfigProvisioner;
+import pojlib.install.FabricMeta;
+import pojlib.install.Installer;
+import pojlib.install.MinecraftMeta;
+import pojlib.install.QuiltMeta;
+import pojlib.install.VersionInfo;
+import pojlib.util.Constants;
+import pojlib.util.GsonUtils;
+import pojlib.util.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Creates an instance as a graph of stages, run on the installer's threads.
+ * <p>
+ * META fetches the version jsons, then CLIENT, LIBRARIES, LOADER_LIBRARIES and ASSETS run side by side with LWJGL
+ * and CONFIGS, which don't need them. CLASSPATH waits for the jars, PERSIST for everything and writes the instance
+ * json, so an instance that can be loaded can also be launched. The first stage that fails fails the whole creation
+ * and stops the others, as does {@link #cancel()}, the result fails once the downloads and the meta stopped. Until the
+ * result is done the instance has no json, {@link #creatingIn(File)} tells {@link InstanceStorage} about it.
+ */
+public class InstanceCreation {
+
+    // Instance directories of the creations that aren't done
+    private static final Set<File> creating = ConcurrentHashMap.newKeySet();
+
+    public enum Stage {
+        META, CLIENT, LIBRARIES, LOADER_LIBRARIES, ASSETS, LWJGL, CONFIGS, CLASSPATH, PERSIST
+    }
+
+    private final String instanceName;
+    private final String gameDir;
+    private final MinecraftInstance instance = new MinecraftInstance();
+    private final CompletableFuture<MinecraftInstance> result = new CompletableFuture<>();
+    private final Map<Stage, CompletableFuture<?>> stages = new EnumMap<>(Stage.class);
+    private final Map<Stage, Long> timings = new EnumMap<>(Stage.class);
+    // Work that has to stop before the result fails
+    private final List<CompletableFuture<?>> running = new ArrayList<>();
+    private Throwable failure;
+    private boolean saved;
+    private CompletableFuture<VersionInfo[]> meta;
+
+    private InstanceCreation(String instanceName, String gameDir) {
+        this.instanceName = instanceName;
+        this.gameDir = new File(gameDir).getAbsolutePath();
+    }
+
+    /**
+     * Starts creating an instance, the returned creation tracks it
+     * @param modLoader 0 for vanilla, 1 for fabric, 2 for quilt
+     */
+    public static InstanceCreation start(Activity activity, String instanceName, String gameDir, MinecraftMeta.MinecraftVersion minecraftVersion, int modLoader) {
+        // Neither needs to know the version
+        return start(instanceName, gameDir, minecraftVersion, modLoader, Installer.installLwjgl(activity), ConfigProvisioner.provision(activity, Constants.MC_DIR));
+    }
+
+    /**
+     * @param lwjgl Completed with the path of the lwjgl jar
+     * @param configs Completed once the configs are in place
+     */
+    static InstanceCreation start(String instanceName, String gameDir, MinecraftMeta.MinecraftVersion minecraftVersion, int modLoader,
+                                  CompletableFuture<String> lwjgl, CompletableFuture<Integer> configs) {
+        InstanceCreation creation = new InstanceCreation(instanceName, gameDir);
+        creation.run(minecraftVersion, modLoader, lwjgl, configs);
+        return creation;
+    }
+
+    private void run(MinecraftMeta.MinecraftVersion minecraftVersion, int modLoader, CompletableFuture<String> startedLwjgl, CompletableFuture<Integer> startedConfigs) {
+        Logger.getInstance().appendToLog("Creating new instance: " + instanceName);
+        long start = System.nanoTime();
+        File instanceDir = new File(gameDir, "instances/" + instanceName);
+        creating.add(instanceDir);
+        result.whenComplete((created, e) -> creating.remove(instanceDir));
+        API_V1.finishedDownloading = false;
+        instance.versionName = minecraftVersion.id;
+        instance.gameDir = gameDir;
+
+        CompletableFuture<String> lwjgl = stage(Stage.LWJGL, startedLwjgl);
+        CompletableFuture<Integer> configs = stage(Stage.CONFIGS, startedConfigs);
+
+        meta = stage(Stage.META, track(CompletableFuture.supplyAsync(() -> fetchMeta(minecraftVersion, modLoader), Installer.executor())));
+        CompletableFuture<String> client = after(Stage.CLIENT, meta, (infos, stop) -> Installer.installClient(infos[0], gameDir, stop));
+        CompletableFuture<String> libraries = after(Stage.LIBRARIES, meta, (infos, stop) -> Installer.installLibraries(infos[0], gameDir, stop));
+        CompletableFuture<String> loaderLibraries = after(Stage.LOADER_LIBRARIES, meta,
+                (infos, stop) -> infos[1] == null ? CompletableFuture.completedFuture("") : Installer.installLibraries(infos[1], gameDir, stop));
+        CompletableFuture<String> assets = after(Stage.ASSETS, meta, (infos, stop) -> Installer.installAssets(infos[0], gameDir, stop));
+
+        CompletableFuture<String> classpath = once(Stage.CLASSPATH, CompletableFuture.allOf(client, libraries, loaderLibraries, lwjgl), () -> {
+            StringJoiner joiner = new StringJoiner(File.pathSeparator);
+            for (CompletableFuture<String> part : Arrays.asList(client, libraries, loaderLibraries, lwjgl)) {
+                if (!part.join().isEmpty()) joiner.add(part.join());
+            }
+            return joiner.toString();
+        });
+
+        CompletableFuture<MinecraftInstance> persist = once(Stage.PERSIST, CompletableFuture.allOf(classpath, assets, configs), () -> {
+            instance.classpath = classpath.join();
+            instance.assetsDir = assets.join();
+            // Either a failure comes first and nothing is saved, or the instance is saved and can't fail anymore
+            synchronized (this) {
+                if (failure != null) throw new CancellationException();
+                if (!GsonUtils.objectToJsonFile(gameDir + "/instances/" + instanceName + "/instance.json", instance)) {
+                    throw new CompletionException(new IOException("Couldn't save " + instanceName));
+                }
+                saved = true;
+            }
+            return instance;
+        });
+
+        persist.whenComplete((created, e) -> {
+            if (e != null) {
+                fail(e);
+                return;
+            }
+            Logger.getInstance().appendToLog("Created " + instanceName + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms " + getTimings());
+            API_V1.finishedDownloading = true;
+            result.complete(created);
+        });
+    }
+
+    /**
+     * @return The name of an instance being created in the game directory, null if there is none
+     */
+    static String creatingIn(File gameDir) {
+        for (File instanceDir : creating) {
+            if (instanceDir.getParentFile().getParentFile().equals(gameDir.getAbsoluteFile())) return instanceDir.getName();
+        }
+        return null;
+    }
+
+    static boolean isCreating(File gameDir, String instanceName) {
+        return creating.contains(new File(gameDir.getAbsoluteFile(), "instances/" + instanceName));
+    }
+
+    /**
+     * @return The game version's info and the mod loader's, null for vanilla
+     */
+    private VersionInfo[] fetchMeta(MinecraftMeta.MinecraftVersion minecraftVersion, int modLoader) {
+        VersionInfo minecraftVersionInfo = MinecraftMeta.getVersionInfo(minecraftVersion);
+        if (minecraftVersionInfo == null) throw new IllegalStateException("Error fetching version info of " + minecraftVersion.id);
+
+        VersionInfo modLoaderVersionInfo = null;
+        if (modLoader == 1) {
+            FabricMeta.FabricVersion fabricVersion = FabricMeta.getLatestStableVersion();
+            if (fabricVersion != null) modLoaderVersionInfo = FabricMeta.getVersionInfo(fabricVersion, minecraftVersion);
+            if (modLoaderVersionInfo == null) throw new IllegalStateException("Error fetching mod loader data");
+        } else if (modLoader == 2) {
+            QuiltMeta.QuiltVersion quiltVersion = QuiltMeta.getLatestVersion();
+            if (quiltVersion != null) modLoaderVersionInfo = QuiltMeta.getVersionInfo(quiltVersion, minecraftVersion);
+            if (modLoaderVersionInfo == null) throw new IllegalStateException("Error fetching mod loader data");
+        } else if (modLoader != 0) {
+            throw new UnsupportedOperationException("Forge not yet implemented");
+        }
+
+        instance.versionType = minecraftVersionInfo.type;
+        instance.assetIndex = minecraftVersionInfo.assetIndex.id;
+        instance.mainClass = modLoaderVersionInfo != null ? modLoaderVersionInfo.mainClass : minecraftVersionInfo.mainClass;
+        return new VersionInfo[]{minecraftVersionInfo, modLoaderVersionInfo};
+    }
+
+    private interface Starter<T> {
+        /**
+         * @param stop Done once the stage is, the returned future completes once the work stopped
+         */
+        CompletableFuture<T> start(VersionInfo[] infos, CompletableFuture<?> stop) throws IOException;
+    }
+
+    /**
+     * A stage that starts once the meta is there
+     */
+    private <T> CompletableFuture<T> after(Stage stage, CompletableFuture<VersionInfo[]> meta, Starter<T> starter) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        register(stage, future);
+        meta.whenComplete((infos, e) -> {
+            if (e != null) {
+                future.completeExceptionally(e);
+                return;
+            }
+            long start = System.nanoTime();
+            CompletableFuture<T> started;
+            try {
+                synchronized (this) {
+                    // The stage was cancelled along with the others
+                    if (failure != null) return;
+                    // Cancelling the stage stops the installer at the next file
+                    started = track(starter.start(infos, future));
+                }
+            } catch (IOException | RuntimeException failure) {
+                future.completeExceptionally(failure);
+                return;
+            }
+            started.whenComplete((value, failure) -> {
+                time(stage, start);
+                if (failure != null) future.completeExceptionally(failure);
+                else future.complete(value);
+            });
+        });
+        return future;
+    }
+
+    /**
+     * A stage that runs once its inputs are done, timed from then on
+     */
+    private <T> CompletableFuture<T> once(Stage stage, CompletableFuture<Void> inputs, Supplier<T> work) {
+        CompletableFuture<T> future = track(inputs.thenApplyAsync(ignored -> {
+            long start = System.nanoTime();
+            try {
+                return work.get();
+            } finally {
+                time(stage, start);
+            }
+        }, Installer.executor()));
+        return mirror(stage, future);
+    }
+
+    /**
+     * A stage that already started
+     * @return Completes once the stage is timed
+     */
+    private <T> CompletableFuture<T> stage(Stage stage, CompletableFuture<T> started) {
+        long start = System.nanoTime();
+        return mirror(stage, started.whenComplete((value, e) -> time(stage, start)));
+    }
+
+    /**
+     * A stage that completes along with its work, cancelling it leaves the work running
+     */
+    private <T> CompletableFuture<T> mirror(Stage stage, CompletableFuture<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        work.whenComplete((value, e) -> {
+            if (e != null) future.completeExceptionally(e);
+            else future.complete(value);
+        });
+        register(stage, future);
+        return future;
+    }
+
+    private synchronized <T> CompletableFuture<T> track(CompletableFuture<T> work) {
+        running.add(work);
+        return work;
+    }
+
+    private synchronized void register(Stage stage, CompletableFuture<?> future) {
+        stages.put(stage, future);
+        // Fail fast, the other stages have nothing left to wait for
+        future.whenComplete((value, e) -> {
+            if (e != null) fail(e);
+        });
+    }
+
+    private synchronized void time(Stage stage, long start) {
+        timings.put(stage, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void fail(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        List<CompletableFuture<?>> cancelled;
+        List<CompletableFuture<?>> stopping;
+        synchronized (this) {
+            if (failure != null || saved) return;
+            failure = cause;
+            cancelled = new ArrayList<>(stages.values());
+            stopping = new ArrayList<>(running);
+        }
+        if (!(cause instanceof CancellationException)) {
+            Logger.getInstance().appendToLog("Failed to create " + instanceName + ": " + cause);
+        }
+        for (CompletableFuture<?> stage : cancelled) stage.cancel(false);
+        // Nothing downloads or writes for the instance once the result is done
+        CompletableFuture.allOf(stopping.toArray(new CompletableFuture[0]))
+                .whenComplete((value, ignored) -> result.completeExceptionally(cause));
+    }
+
+    /**
+     * Stops creating the instance at the next file of every download, nothing is saved. The result fails once they
+     * stopped.
+     */
+    public void cancel() {
+        fail(new CancellationException("Creating " + instanceName + " was cancelled"));
+    }
+
+    /**
+     * @return Completed with the saved instance, or exceptionally with the first stage's failure or a
+     * {@link CancellationException}
+     */
+    public CompletableFuture<MinecraftInstance> getResult() {
+        return result;
+    }
+
+    /**
+     * Waits for the meta stage, after which the instance knows its version, main class and asset index.
+     * The classpath and assets dir are filled in once the rest is done.
+     */
+    public MinecraftInstance awaitMeta() throws IOException {
+        try {
+            meta.join();
+            return instance;
+        } catch (CompletionException | CancellationException e) {
+            throw new IOException("Failed to create " + instanceName, e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    /**
+     * @return How long each finished stage took in ms. Stages started together take their time in parallel.
+     */
+    public synchronized Map<Stage, Long> getTimings() {
+        return new EnumMap<>(timings);
+    }
+
+    /**
+     * @return Stages that aren't done yet
+     */
+    public synchronized List<Stage> getPending() {
+        List<Stage> pending = new ArrayList<>();
+        for (Map.Entry<Stage, CompletableFuture<?>> stage : stages.entrySet()) {
+            if (!stage.getValue().isDone()) pending.add(stage.getKey());
+        }
+        return pending;
+    }
+}
@@ -0,0 +1,675 @@
+package pojlib.instance;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.annotations.SerializedName;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import pojlib.util.Constants;
+import pojlib.util.GsonUtils;
+import pojlib.util.HashMismatchException;
+import pojlib.util.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A ready to run instance in one directory or zip file, for setting up devices without any network.
+ * <p>
+ * A pack holds pack.json, listing every file of the instance relative to its game directory with the file's sha1,
+ * and the contents under objects/, named by their sha1 the same way as assets. A file used in several places is
+ * only in the pack once. Importing verifies every file, hard links the classpath jars and asset objects into place
+ * from a pack directory (so the pack has to be left as it is afterwards) or extracts them from a zip, and writes the
+ * instance json with its paths moved to the new game directory. Mods, configs and options are always copied, the game
+ * writes to them. {@link #exportPack(String, String, File)} makes such a zip from an installed instance.
+ */
+public class InstancePack {
+
+    public static final String MANIFEST = "pack.json";
+    public static final String OBJECTS = "objects";
+    public static final int FORMAT_VERSION = 1;
+    private static final int THREADS = 4;
+    // Files compressed ahead of the one being written, each holds at most SPILL_SIZE in memory
+    private static final int WINDOW = THREADS * 2;
+    private static final int SPILL_SIZE = 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public static class Manifest {
+        @SerializedName("formatVersion")
+        public int formatVersion = FORMAT_VERSION;
+        @SerializedName("name")
+        public String name;
+        // Where the instance was exported from, replaced in the instance's paths
+        @SerializedName("gameDir")
+        public String gameDir;
+        @SerializedName("userHome")
+        public String userHome;
+        @SerializedName("instance")
+        public MinecraftInstance instance;
+        @SerializedName("files")
+        public List<Entry> files = new ArrayList<>();
+    }
+
+    public static class Entry {
+        // Relative to the game directory, with forward slashes
+        @SerializedName("path")
+        public String path;
+        @SerializedName("sha1")
+        public String sha1;
+        @SerializedName("size")
+        public long size;
+
+        public Entry() {}
+
+        public Entry(String path, String sha1, long size) {
+            this.path = path;
+            this.sha1 = sha1;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Installs an instance from a pack, without touching the network
+     *
+     * @param pack A pack directory or zip file
+     * @param instanceName Name of the new instance, the pack's name if null
+     * @param gameDir .minecraft directory to install into
+     * @param userHome Replaces the pack's user home in the instance's paths
+     * @return {@link CompletableFuture CompletableFuture&lt;MinecraftInstance&gt;} completed with the saved instance,
+     * or exceptionally with the first failure once every other file was handled
+     */
+    public static CompletableFuture<MinecraftInstance> importPack(File pack, String instanceName, String gameDir, String userHome) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Source source = pack.isDirectory() ? new DirSource(pack) : new ZipSource(pack)) {
+                return importPack(source, instanceName, new File(gameDir).getAbsoluteFile(), userHome);
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to import " + pack, e);
+            }
+        });
+    }
+
+    private static MinecraftInstance importPack(Source source, String instanceName, File gameDir, String userHome) throws IOException {
+        long start = System.nanoTime();
+        Manifest manifest;
+        try (Reader reader = new InputStreamReader(source.open(MANIFEST), StandardCharsets.UTF_8)) {
+            manifest = GsonUtils.GLOBAL_GSON.fromJson(reader, Manifest.class);
+        }
+        if (manifest == null || manifest.files == null || manifest.instance == null) throw new IOException(MANIFEST + " is empty");
+        if (manifest.formatVersion != FORMAT_VERSION) throw new IOException("Unsupported pack format " + manifest.formatVersion);
+        String name = instanceName != null ? instanceName : manifest.name;
+        if (name == null || !isSafe(name) || name.contains("/")) throw new IOException("Bad instance name " + name);
+
+        // Every object is read and checked once, however many places it goes to
+        Map<String, List<File>> targets = new LinkedHashMap<>();
+        Set<String> classpath = classpathFiles(manifest);
+        Set<File> linkable = new HashSet<>();
+        for (Entry entry : manifest.files) {
+            if (entry.path == null || !isSafe(entry.path)) throw new IOException("Bad path in " + MANIFEST + ": " + entry.path);
+            if (entry.sha1 == null || !entry.sha1.matches("[0-9a-fA-F]{40}")) throw new IOException("Bad sha1 for " + entry.path);
+            File target = new File(gameDir, entry.path);
+            targets.computeIfAbsent(entry.sha1.toLowerCase(), k -> new ArrayList<>()).add(target);
+            if (entry.path.startsWith("assets/objects/") || classpath.contains(entry.path)) linkable.add(target);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger written = new AtomicInteger();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        try {
+            for (Map.Entry<String, List<File>> object : targets.entrySet()) {
+                tasks.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        written.addAndGet(place(source, object.getKey(), object.getValue(), linkable));
+                    } catch (IOException e) {
+                        throw new RuntimeException("Unable to import " + object.getValue().get(0), e);
+                    }
+                }, executor));
+            }
+
+            RuntimeException failure = null;
+            for (CompletableFuture<Void> task : tasks) {
+                try {
+                    task.join();
+                } catch (RuntimeException e) {
+                    if (failure == null) failure = e;
+                    else failure.addSuppressed(e);
+                }
+            }
+            if (failure != null) throw failure;
+        } finally {
+            executor.shutdown();
+        }
+
+        MinecraftInstance instance = manifest.instance;
+        instance.gameDir = gameDir.getAbsolutePath();
+        instance.classpath = relocate(instance.classpath, manifest, gameDir, userHome);
+        instance.assetsDir = relocate(instance.assetsDir, manifest, gameDir, userHome);
+        String json = gameDir + "/instances/" + name + "/instance.json";
+        if (!GsonUtils.objectToJsonFile(json, instance)) throw new IOException("Couldn't write " + json);
+
+        Logger.getInstance().appendToLog("Imported " + name + ", " + written.get() + " of " + manifest.files.size() + " files written in "
+                + (System.nanoTime() - start) / 1_000_000 + "ms");
+        return instance;
+    }
+
+    /**
+     * Pack paths of the jars on the instance's classpath, the game only ever reads those
+     */
+    private static Set<String> classpathFiles(Manifest manifest) {
+        Set<String> paths = new HashSet<>();
+        if (manifest.gameDir == null || manifest.instance.classpath == null) return paths;
+        Path from = new File(manifest.gameDir).toPath().normalize();
+        for (String path : manifest.instance.classpath.split(File.pathSeparator)) {
+            Path file = new File(path).toPath().normalize();
+            if (!path.isEmpty() && file.startsWith(from)) paths.add(from.relativize(file).toString().replace(File.separatorChar, '/'));
+        }
+        return paths;
+    }
+
+    /**
+     * Puts one object in all of its places
+     * @param linkable Files that may share the pack's copy, nothing writes to them
+     * @return How many files had to be written
+     */
+    private static int place(Source source, String sha1, List<File> targets, Set<File> linkable) throws IOException {
+        File first = null;
+        int written = 0;
+        for (File target : targets) {
+            // Left over from an earlier import of the same pack
+            if (target.isFile() && sha1Hex(target).equals(sha1)) {
+                if (first == null) first = target;
+                continue;
+            }
+            target.getParentFile().mkdirs();
+            if (first == null) {
+                source.place(sha1, target, linkable.contains(target));
+                first = target;
+            } else {
+                copy(first, target, linkable.contains(first) && linkable.contains(target));
+            }
+            written++;
+        }
+        return written;
+    }
+
+    /**
+     * Copies a file, or hard links it if asked to and the filesystem can (it can't across storage volumes)
+     */
+    static void copy(File from, File to, boolean link) throws IOException {
+        File temp = File.createTempFile(to.getName(), ".part", to.getParentFile());
+        try {
+            temp.delete();
+            boolean linked = false;
+            if (link) {
+                try {
+                    Files.createLink(temp.toPath(), from.toPath());
+                    linked = true;
+                } catch (IOException | UnsupportedOperationException ignored) {}
+            }
+            if (!linked) Files.copy(from.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private static String relocate(String paths, Manifest manifest, File gameDir, String userHome) {
+        if (paths == null) return null;
+        StringJoiner relocated = new StringJoiner(File.pathSeparator);
+        for (String path : paths.split(File.pathSeparator, -1)) {
+            // The game directory is usually inside the user home, so it goes first
+            if (manifest.gameDir != null && path.startsWith(manifest.gameDir)) {
+                path = gameDir.getAbsolutePath() + path.substring(manifest.gameDir.length());
+            } else if (manifest.userHome != null && userHome != null && path.startsWith(manifest.userHome)) {
+                path = userHome + path.substring(manifest.userHome.length());
+            }
+            relocated.add(path);
+        }
+        return relocated.toString();
+    }
+
+    /**
+     * Writes an instance into a pack zip for {@link #importPack(File, String, String, String)}.
+     * <p>
+     * The pack gets everything on the instance's classpath inside the game directory, the asset index with its
+     * objects, the instance's mods and the configs. Files are hashed and deflated on several threads and written
+     * through one channel as they are done, only a few of them are held at a time, so memory use doesn't grow with
+     * the instance. Files that hardly compress, like jars, are stored as they are.
+     *
+     * @param instanceName The instance to export
+     * @param gameDir .minecraft directory the instance is in
+     * @param out The zip file, replaced once the pack is complete
+     * @return {@link CompletableFuture CompletableFuture&lt;File&gt;} completed with the pack, or exceptionally if
+     * a file of the instance is missing or can't be read
+     */
+    public static CompletableFuture<File> exportPack(String instanceName, String gameDir, File out) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                exportPack(instanceName, new File(gameDir).getAbsoluteFile(), out.getAbsoluteFile());
+                return out;
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to export " + instanceName, e);
+            }
+        });
+    }
+
+    private static void exportPack(String name, File gameDir, File out) throws IOException {
+        long start = System.nanoTime();
+        MinecraftInstance instance = MinecraftInstance.load(name, gameDir.getPath());
+        if (instance == null) throw new IOException("No instance " + name + " in " + gameDir);
+        Manifest manifest = new Manifest();
+        manifest.name = name;
+        manifest.gameDir = gameDir.getPath();
+        manifest.userHome = Constants.USER_HOME;
+        manifest.instance = instance;
+
+        List<Packable> files = collect(instance, gameDir);
+        File dir = out.getParentFile();
+        dir.mkdirs();
+        File temp = File.createTempFile(out.getName(), ".part", dir);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        // Content whose body is in the pack, the first path in file order carries it
+        Set<String> packed = new HashSet<>();
+        // Asset objects are known by their hash up front, a repeat isn't even read
+        Set<String> known = new HashSet<>();
+        ArrayDeque<Future<Compressed>> window = new ArrayDeque<>();
+        long bytes = 0;
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            PackWriter writer = new PackWriter(channel);
+            int next = 0;
+            while (next < files.size() || !window.isEmpty()) {
+                while (next < files.size() && window.size() < WINDOW) {
+                    Packable file = files.get(next++);
+                    boolean repeat = file.sha1 != null && !known.add(file.sha1);
+                    window.add(executor.submit(() -> compress(file, repeat, dir)));
+                }
+                // Written in order, so the same instance always gives the same pack
+                Compressed compressed = await(window.poll());
+                try {
+                    manifest.files.add(new Entry(compressed.path, compressed.sha1, compressed.size));
+                    if (compressed.body != null && packed.add(compressed.sha1)) {
+                        writer.add(objectPath(compressed.sha1), compressed.method, compressed.crc, compressed.compressedSize, compressed.size, compressed.body);
+                        bytes += compressed.compressedSize;
+                    }
+                } finally {
+                    compressed.discard();
+                }
+            }
+
+            byte[] json = GsonUtils.GLOBAL_GSON.toJson(manifest).getBytes(StandardCharsets.UTF_8);
+            Compressed compressed = compress(MANIFEST, new ByteArrayInputStream(json), null, dir);
+            try {
+                writer.add(MANIFEST, compressed.method, compressed.crc, compressed.compressedSize, compressed.size, compressed.body);
+            } finally {
+                compressed.discard();
+            }
+            writer.finish();
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            // Whatever is still being compressed may have spilled to disk
+            for (Future<Compressed> future : window) {
+                try {
+                    future.get().discard();
+                } catch (Exception ignored) {}
+            }
+            temp.delete();
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+        Files.move(temp.toPath(), out.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Logger.getInstance().appendToLog("Exported " + name + ", " + files.size() + " files as " + packed.size() + " objects, "
+                + bytes / 1024 + "KB in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+    }
+
+    private static class Packable {
+        final String path;
+        final File file;
+        // Known up front for asset objects
+        final String sha1;
+
+        Packable(String path, File file, String sha1) {
+            this.path = path;
+            this.file = file;
+            this.sha1 = sha1;
+        }
+    }
+
+    private static List<Packable> collect(MinecraftInstance instance, File gameDir) throws IOException {
+        Map<String, Packable> files = new LinkedHashMap<>();
+        if (instance.classpath != null) {
+            for (String path : instance.classpath.split(File.pathSeparator)) {
+                // The lwjgl jar is outside and comes with the app
+                if (!path.isEmpty() && inside(gameDir, new File(path))) add(files, gameDir, new File(path), null);
+            }
+        }
+
+        File index = new File(gameDir, "assets/indexes/" + instance.assetIndex + ".json");
+        if (instance.assetIndex != null && index.isFile()) {
+            add(files, gameDir, index, null);
+            JsonObject json = GsonUtils.jsonFileToObject(index.getPath(), JsonObject.class);
+            if (json == null || !json.has("objects")) throw new IOException(index + " can't be read");
+            for (Map.Entry<String, JsonElement> object : json.getAsJsonObject("objects").entrySet()) {
+                String hash = object.getValue().getAsJsonObject().get("hash").getAsString().toLowerCase();
+                add(files, gameDir, new File(gameDir, "assets/objects/" + hash.substring(0, 2) + "/" + hash), hash);
+            }
+        }
+
+        addTree(files, gameDir, new File(gameDir, "mods/" + instance.versionName));
+        addTree(files, gameDir, new File(gameDir, "config"));
+        File options = new File(gameDir, "options.txt");
+        if (options.isFile()) add(files, gameDir, options, null);
+        return new ArrayList<>(files.values());
+    }
+
+    private static void addTree(Map<String, Packable> files, File gameDir, File dir) throws IOException {
+        if (!dir.isDirectory()) return;
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile).sorted()::iterator) add(files, gameDir, path.toFile(), null);
+        }
+    }
+
+    private static void add(Map<String, Packable> files, File gameDir, File file, String sha1) throws IOException {
+        // A pack that silently lacks a library or an asset only fails once it's launched
+        if (!file.isFile()) throw new IOException(file + " is missing, the instance isn't fully installed");
+        String path = gameDir.toPath().relativize(file.getAbsoluteFile().toPath().normalize()).toString().replace(File.separatorChar, '/');
+        files.putIfAbsent(path, new Packable(path, file, sha1));
+    }
+
+    private static boolean inside(File dir, File file) {
+        return file.getAbsoluteFile().toPath().normalize().startsWith(dir.toPath());
+    }
+
+    /**
+     * Hashes and deflates one file. Whether its content is already in the pack is decided when it's written.
+     * @param repeat An earlier file has the same known hash, only its size is needed
+     */
+    private static Compressed compress(Packable file, boolean repeat, File spillDir) throws IOException {
+        if (repeat) return new Compressed(file.path, file.sha1, file.file.length());
+        try (InputStream in = Files.newInputStream(file.file.toPath())) {
+            return compress(file.path, in, file.file, spillDir);
+        }
+    }
+
+    /**
+     * @param source The file being read, stored instead of deflated if that hardly saves anything. Null to always deflate.
+     */
+    private static Compressed compress(String path, InputStream in, File source, File spillDir) throws IOException {
+        MessageDigest sha1 = DigestUtils.getSha1Digest();
+        CRC32 crc = new CRC32();
+        Spill spill = new Spill(spillDir);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        long size = 0;
+        try (OutputStream out = new DeflaterOutputStream(spill, deflater, BUFFER_SIZE)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                sha1.update(buffer, 0, read);
+                crc.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+                size += read;
+            }
+        } catch (IOException e) {
+            spill.discard();
+            throw e;
+        } finally {
+            deflater.end();
+        }
+
+        String hash = Hex.encodeHexString(sha1.digest());
+        if (source != null && spill.size() >= size - size / 32) {
+            // Jars, sounds and textures are compressed already
+            spill.discard();
+            long length = size;
+            return new Compressed(path, hash, size, PackWriter.STORED, crc.getValue(), size, channel -> transfer(source, length, channel), null);
+        }
+        return new Compressed(path, hash, size, PackWriter.DEFLATED, crc.getValue(), spill.size(), spill::writeTo, spill);
+    }
+
+    private static void transfer(File file, long length, FileChannel out) throws IOException {
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (long position = 0; position < length; ) {
+                long count = in.transferTo(position, length - position, out);
+                if (count <= 0) throw new IOException(file + " changed while it was packed");
+                position += count;
+            }
+        }
+    }
+
+    private static Compressed await(Future<Compressed> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while packing");
+        }
+    }
+
+    private static class Compressed {
+        final String path;
+        final String sha1;
+        final long size;
+        final int method;
+        final long crc;
+        final long compressedSize;
+        // Null for a repeat of a known hash, its content is in the pack already
+        final PackWriter.Body body;
+        final Spill spill;
+
+        Compressed(String path, String sha1, long size) {
+            this(path, sha1, size, 0, 0, 0, null, null);
+        }
+
+        Compressed(String path, String sha1, long size, int method, long crc, long compressedSize, PackWriter.Body body, Spill spill) {
+            this.path = path;
+            this.sha1 = sha1;
+            this.size = size;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.body = body;
+            this.spill = spill;
+        }
+
+        void discard() {
+            if (spill != null) spill.discard();
+        }
+    }
+
+    /**
+     * Keeps deflated output in memory, moving it to a temp file once it gets big
+     */
+    private static class Spill extends OutputStream {
+        private final File dir;
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private File file;
+        private OutputStream fileOut;
+        private long size;
+
+        Spill(File dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (fileOut == null && memory.size() + len > SPILL_SIZE) {
+                file = File.createTempFile("pack", ".spill", dir);
+                fileOut = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+                memory.writeTo(fileOut);
+                memory = null;
+            }
+            if (fileOut != null) fileOut.write(b, off, len);
+            else memory.write(b, off, len);
+            size += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileOut != null) fileOut.close();
+        }
+
+        long size() {
+            return size;
+        }
+
+        void writeTo(FileChannel channel) throws IOException {
+            if (file != null) {
+                transfer(file, size, channel);
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(memory.toByteArray());
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+
+        void discard() {
+            memory = null;
+            if (file == null) return;
+            try {
+                fileOut.close();
+            } catch (IOException ignored) {}
+            file.delete();
+        }
+    }
+
+    /**
+     * A relative path that stays inside the directory it's resolved against
+     */
+    static boolean isSafe(String path) {
+        if (path.isEmpty() || path.startsWith("/") || path.contains("\\") || path.contains(":")) return false;
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) return false;
+        }
+        return true;
+    }
+
+    static String objectPath(String sha1) {
+        return OBJECTS + "/" + sha1.substring(0, 2) + "/" + sha1;
+    }
+
+    private static String sha1Hex(File file) throws IOException {
+        try (InputStream is = Files.newInputStream(file.toPath())) {
+            return DigestUtils.sha1Hex(is);
+        }
+    }
+
+    private interface Source extends Closeable {
+        InputStream open(String path) throws IOException;
+
+        /**
+         * Writes an object to its first place, checking its hash on the way
+         * @param link Whether the target may share the pack's file
+         */
+        void place(String sha1, File target, boolean link) throws IOException;
+    }
+
+    private static class DirSource implements Source {
+        private final File dir;
+
+        DirSource(File dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        public InputStream open(String path) throws IOException {
+            return Files.newInputStream(new File(dir, path).toPath());
+        }
+
+        @Override
+        public void place(String sha1, File target, boolean link) throws IOException {
+            File object = new File(dir, objectPath(sha1));
+            // Linking skips the copy, but the pack's file still has to be what it says it is
+            if (!sha1Hex(object).equals(sha1)) throw new HashMismatchException(object, sha1);
+            copy(object, target, link);
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    private static class ZipSource implements Source {
+        private final ZipFile zip;
+
+        ZipSource(File file) throws IOException {
+            this.zip = new ZipFile(file);
+        }
+
+        @Override
+        public InputStream open(String path) throws IOException {
+            ZipEntry entry = zip.getEntry(path);
+            if (entry == null) throw new IOException(path + " is missing from " + zip.getName());
+            return zip.getInputStream(entry);
+        }
+
+        @Override
+        public void place(String sha1, File target, boolean link) throws IOException {
+            File temp = File.createTempFile(target.getName(), ".part", target.getParentFile());
+            try {
+                MessageDigest digest = DigestUtils.getSha1Digest();
+                try (InputStream in = new DigestInputStream(open(objectPath(sha1)), digest);
+                     OutputStream out = new FileOutputStream(temp)) {
+                    byte[] buffer = new byte[64 * 1024];
+                    for (int read; (read = in.read(buffer)) != -1; ) out.write(buffer, 0, read);
+                }
+                if (!Hex.encodeHexString(digest.digest()).equals(sha1)) {
+                    throw new HashMismatchException(target, sha1);
+                }
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                temp.delete();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package pojlib.instance;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import pojlib.util.DiskUsage;
+import pojlib.util.GsonUtils;
+import pojlib.util.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Disk usage of instances, and deleting them along with whatever only they use.
+ * <p>
+ * Instances in one game directory share it: libraries, asset objects and the mods of a version are downloaded once
+ * and used by every instance that needs them, saves and logs belong to the game directory. A file counts as private
+ * to an instance when no other instance uses it, and those are the files deleted with it. Directory sizes come from
+ * {@link DiskUsage}, asset sizes from the asset index, so measuring again is cheap once nothing changed.
+ */
+public class InstanceStorage {
+
+    private static final Map<String, AssetIndex> indexes = new ConcurrentHashMap<>();
+
+    public static class Usage {
+        public String name;
+        // instances/<name>, always private
+        public long instanceBytes;
+        // The client and libraries on its classpath
+        public long librariesBytes;
+        public long assetsBytes;
+        public long modsBytes;
+        // Freed by deleting the instance
+        public long privateBytes;
+        public long sharedBytes;
+    }
+
+    public static class GameDirUsage {
+        public List<Usage> instances = new ArrayList<>();
+        public long savesBytes;
+        public long logsBytes;
+        public long totalBytes;
+    }
+
+    private static class AssetIndex {
+        final long mtime;
+        final Map<String, Long> objects;
+
+        AssetIndex(long mtime, Map<String, Long> objects) {
+            this.mtime = mtime;
+            this.objects = objects;
+        }
+    }
+
+    /**
+     * What one instance uses, as far as it is inside the game directory
+     */
+    private static class Parts {
+        final String name;
+        final Set<File> libraries = new LinkedHashSet<>();
+        File assetIndex;
+        File mods;
+        // No instance json to read, could be using anything
+        boolean unknown;
+
+        Parts(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * @return Usage of every instance, and of the saves and logs they share
+     */
+    public static GameDirUsage measure(String gameDir) {
+        File dir = new File(gameDir).getAbsoluteFile();
+        List<Parts> all = parts(dir);
+        GameDirUsage usage = new GameDirUsage();
+        for (Parts parts : all) usage.instances.add(measure(parts, all, dir));
+        usage.savesBytes = DiskUsage.of(new File(dir, "saves")).bytes;
+        usage.logsBytes = DiskUsage.of(new File(dir, "logs")).bytes + DiskUsage.of(new File(dir, "crash-reports")).bytes;
+        usage.totalBytes = DiskUsage.of(dir).bytes;
+        return usage;
+    }
+
+    /**
+     * @return Usage of one instance, null if there is no such instance
+     */
+    public static Usage measure(String instanceName, String gameDir) {
+        File dir = new File(gameDir).getAbsoluteFile();
+        List<Parts> all = parts(dir);
+        Parts parts = find(all, instanceName);
+        return parts == null ? null : measure(parts, all, dir);
+    }
+
+    /**
+     * Deletes an instance and every file no other instance uses. While another instance can't be read, for example
+     * because it is still being created, only the instance's own directory goes.
+     * @return True if everything is gone, false if the instance doesn't exist, is still being created or something
+     * couldn't be deleted
+     */
+    public static boolean delete(String instanceName, String gameDir) {
+        // "" or ".." would be the instances or game directory itself
+        if (instanceName == null || !InstancePack.isSafe(instanceName) || instanceName.contains("/")) return false;
+        File dir = new File(gameDir).getAbsoluteFile();
+        if (InstanceCreation.isCreating(dir, instanceName)) {
+            Logger.getInstance().appendToLog("Not deleting " + instanceName + ", it is still being created");
+            return false;
+        }
+        File instanceDir = new File(dir, "instances/" + instanceName);
+        if (!instanceDir.isDirectory()) return false;
+
+        List<Parts> all = parts(dir);
+        Parts parts = find(all, instanceName);
+
+        boolean deleted = true;
+        // An instance still being created, or with a broken json, may need any of the shared files
+        Parts unknown = find(all, p -> p != parts && p.unknown);
+        String unreadable = unknown != null ? unknown.name : InstanceCreation.creatingIn(dir);
+        if (unreadable != null) {
+            Logger.getInstance().appendToLog("Keeping the files of " + instanceName + ", can't tell what " + unreadable + " uses");
+        } else if (parts != null) {
+            Set<File> privateFiles = new HashSet<>();
+            for (File library : parts.libraries) {
+                if (users(all, p -> p.libraries.contains(library)) == 1) privateFiles.add(library);
+            }
+            if (parts.assetIndex != null && users(all, p -> parts.assetIndex.equals(p.assetIndex)) == 1) {
+                privateFiles.add(parts.assetIndex);
+                for (String hash : privateObjects(parts, all)) privateFiles.add(assetObject(dir, hash));
+            }
+            try {
+                DiskUsage.deleteAll(privateFiles);
+                if (parts.mods != null && users(all, p -> parts.mods.equals(p.mods)) == 1) DiskUsage.delete(parts.mods);
+            } catch (IOException e) {
+                Logger.getInstance().appendToLog("Failed to delete files of " + instanceName + ": " + e);
+                deleted = false;
+            }
+        }
+
+        // Last, so a delete that failed half way can be tried again
+        try {
+            DiskUsage.delete(instanceDir);
+        } catch (IOException e) {
+            Logger.getInstance().appendToLog("Failed to delete " + instanceDir + ": " + e);
+            deleted = false;
+        }
+        return deleted;
+    }
+
+    private static Usage measure(Parts parts, List<Parts> all, File dir) {
+        Usage usage = new Usage();
+        usage.name = parts.name;
+        usage.instanceBytes = DiskUsage.of(new File(dir, "instances/" + parts.name)).bytes;
+        usage.privateBytes = usage.instanceBytes;
+
+        for (File library : parts.libraries) {
+            long bytes = library.length();
+            usage.librariesBytes += bytes;
+            if (users(all, p -> p.libraries.contains(library)) == 1) usage.privateBytes += bytes;
+            else usage.sharedBytes += bytes;
+        }
+
+        if (parts.assetIndex != null) {
+            AssetIndex index = index(parts.assetIndex);
+            boolean privateIndex = users(all, p -> parts.assetIndex.equals(p.assetIndex)) == 1;
+            Set<String> privateObjects = privateIndex ? privateObjects(parts, all) : new HashSet<>();
+            usage.assetsBytes = parts.assetIndex.length();
+            if (privateIndex) usage.privateBytes += parts.assetIndex.length();
+            else usage.sharedBytes += parts.assetIndex.length();
+            for (Map.Entry<String, Long> object : index.objects.entrySet()) {
+                usage.assetsBytes += object.getValue();
+                if (privateObjects.contains(object.getKey())) usage.privateBytes += object.getValue();
+                else usage.sharedBytes += object.getValue();
+            }
+        }
+
+        if (parts.mods != null) {
+            usage.modsBytes = DiskUsage.of(parts.mods).bytes;
+            if (users(all, p -> parts.mods.equals(p.mods)) == 1) usage.privateBytes += usage.modsBytes;
+            else usage.sharedBytes += usage.modsBytes;
+        }
+        return usage;
+    }
+
+    private static Parts find(List<Parts> all, String name) {
+        return find(all, parts -> parts.name.equals(name));
+    }
+
+    private static Parts find(List<Parts> all, Predicate<Parts> matches) {
+        for (Parts parts : all) {
+            if (matches.test(parts)) return parts;
+        }
+        return null;
+    }
+
+    private static int users(List<Parts> all, Predicate<Parts> uses) {
+        int users = 0;
+        for (Parts parts : all) {
+            if (uses.test(parts)) users++;
+        }
+        return users;
+    }
+
+    /**
+     * Objects of the instance's asset index that no other instance's index has
+     */
+    private static Set<String> privateObjects(Parts parts, List<Parts> all) {
+        Set<String> objects = new HashSet<>(index(parts.assetIndex).objects.keySet());
+        Set<File> seen = new HashSet<>();
+        for (Parts other : all) {
+            if (other == parts || other.assetIndex == null || other.assetIndex.equals(parts.assetIndex) || !seen.add(other.assetIndex)) continue;
+            objects.removeAll(index(other.assetIndex).objects.keySet());
+        }
+        return objects;
+    }
+
+    private static List<Parts> parts(File dir) {
+        List<Parts> all = new ArrayList<>();
+        File[] instances = new File(dir, "instances").listFiles(File::isDirectory);
+        if (instances == null) return all;
+        for (File instanceDir : instances) {
+            Parts parts = new Parts(instanceDir.getName());
+            all.add(parts);
+            MinecraftInstance instance = MinecraftInstance.load(parts.name, dir.getPath());
+            if (instance == null) {
+                parts.unknown = true;
+                continue;
+            }
+
+            if (instance.classpath != null) {
+                for (String path : instance.classpath.split(File.pathSeparator)) {
+                    File library = new File(path).getAbsoluteFile();
+                    // The lwjgl jar comes with the app
+                    if (!path.isEmpty() && library.toPath().normalize().startsWith(dir.toPath()) && library.isFile()) parts.libraries.add(library);
+                }
+            }
+            File index = new File(dir, "assets/indexes/" + instance.assetIndex + ".json");
+            if (instance.assetIndex != null && index.isFile()) parts.assetIndex = index;
+            File mods = new File(dir, "mods/" + instance.versionName);
+            if (instance.versionName != null && mods.isDirectory()) parts.mods = mods;
+        }
+        return all;
+    }
+
+    /**
+     * Object hashes and sizes of an asset index, read again only when it changed
+     */
+    private static AssetIndex index(File file) {
+        long mtime = file.lastModified();
+        AssetIndex cached = indexes.get(file.getPath());
+        if (cached != null && cached.mtime == mtime) return cached;
+
+        Map<String, Long> objects = new HashMap<>();
+        JsonObject json = GsonUtils.jsonFileToObject(file.getPath(), JsonObject.class);
+        if (json != null && json.has("objects")) {
+            for (Map.Entry<String, JsonElement> object : json.getAsJsonObject("objects").entrySet()) {
+                JsonObject asset = object.getValue().getAsJsonObject();
+                objects.put(asset.get("hash").getAsString().toLowerCase(), asset.get("size").getAsLong());
+            }
+        }
+        AssetIndex index = new AssetIndex(mtime, objects);
+        indexes.put(file.getPath(), index);
+        return index;
+    }
+
+    private static File assetObject(File dir, String hash) {
+        return new File(dir, "assets/objects/" + hash.substring(0, 2) + "/" + hash);
+    }
+}
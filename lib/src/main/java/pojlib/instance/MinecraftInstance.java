@@ -7,14 +7,14 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 import pojlib.account.MinecraftAccount;
-import pojlib.api.API_V1;
 import pojlib.install.*;
 import pojlib.util.Constants;
 import pojlib.util.DownloadUtils;
 import pojlib.util.FileUtil;
 import pojlib.util.GsonUtils;
 import pojlib.util.JREUtils;
-import pojlib.util.Logger;
+import pojlib.util.LaunchProfile;
+import pojlib.util.RetryPolicy;
 import pojlib.util.VLoader;
 
 import java.io.File;
@@ -25,8 +25,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
 
 public class MinecraftInstance {
 
@@ -40,95 +38,22 @@ public class MinecraftInstance {
     public String assetIndex;
     public String assetsDir;
     public String mainClass;
+    // Name of a LaunchProfile, balanced if not set
+    public String launchProfile;
+    // Extra jvm arguments, override the launch profile
+    public String jvmArgs;
 
-    //WIP!!!!!!
     //creates a new instance of a minecraft version, install game + mod loader, stores non login related launch info to json
+    //Returns once the version is known, the classpath and assets dir are filled in when API_V1.finishedDownloading is set
     public static MinecraftInstance create(Activity activity, String instanceName, String gameDir, MinecraftMeta.MinecraftVersion minecraftVersion, int modLoader) throws IOException {
-        Logger.getInstance().appendToLog("Creating new instance: " + instanceName);
-
-        MinecraftInstance instance = new MinecraftInstance();
-        instance.versionName = minecraftVersion.id;
-        instance.gameDir = new File(gameDir).getAbsolutePath();
-
-        VersionInfo minecraftVersionInfo = MinecraftMeta.getVersionInfo(minecraftVersion);
-        instance.versionType = minecraftVersionInfo.type;
-        FabricMeta.FabricVersion fabricVersion = FabricMeta.getLatestStableVersion();
-        VersionInfo modLoaderVersionInfo =  FabricMeta.getVersionInfo(fabricVersion, minecraftVersion);
-        instance.mainClass = modLoaderVersionInfo.mainClass;
-
-        // Get mod loader info
-        if (modLoader == 0) {
-            instance.mainClass = minecraftVersionInfo.mainClass;
-        } else if (modLoader == 1) {
-            if (fabricVersion != null) {
-                modLoaderVersionInfo = FabricMeta.getVersionInfo(fabricVersion, minecraftVersion);
-                instance.mainClass = modLoaderVersionInfo.mainClass;
-            }
-        } else if (modLoader == 2) {
-            QuiltMeta.QuiltVersion quiltVersion = QuiltMeta.getLatestVersion();
-            if (quiltVersion != null) {
-                modLoaderVersionInfo = QuiltMeta.getVersionInfo(quiltVersion, minecraftVersion);
-                instance.mainClass = modLoaderVersionInfo.mainClass;
-            }
-        } else if (modLoader == 3) {
-            throw new RuntimeException("Forge not yet implemented\nExiting...");
-        }
-
-        if (modLoaderVersionInfo == null) throw new RuntimeException("Error fetching mod loader data");
-
-        // Install minecraft
-        VersionInfo finalModLoaderVersionInfo = modLoaderVersionInfo;
-        try {
-            System.out.println("------------ STARTING INSTALLATION PROCESS ------------");
-            System.out.println("If you see no \"Finished installing...\" logs, this is a bug!");
-            CompletableFuture<String> clientClasspath = Installer.installClient(minecraftVersionInfo, gameDir);
-            CompletableFuture<String> minecraftClasspath = Installer.installLibraries(minecraftVersionInfo, gameDir);
-            CompletableFuture<String> modLoaderClasspath = Installer.installLibraries(finalModLoaderVersionInfo, gameDir);
-            CompletableFuture<String> lwjgl = Installer.installLwjgl(activity);
-            CompletableFuture<String> assetsDir = Installer.installAssets(activity, minecraftVersionInfo, gameDir);
-
-            CompletableFuture.allOf(clientClasspath, minecraftClasspath, modLoaderClasspath, lwjgl).whenComplete((ignored, exception) -> {
-                if (exception != null) throw new RuntimeException(exception);
-                try {
-                    instance.classpath = clientClasspath.get() + File.pathSeparator + minecraftClasspath.get() + File.pathSeparator + modLoaderClasspath.get() + File.pathSeparator + lwjgl.get();
-                } catch (ExecutionException | InterruptedException e) {
-                    throw new RuntimeException(e);
-                }
-            });
-            assetsDir.whenComplete((s, e) -> {
-                if (e == null) instance.assetsDir = s;
-                else throw new RuntimeException(e);
-            });
-
-            //when complete
-            Thread waitForCompletion = new Thread(() -> {
-                clientClasspath.join();
-                System.out.println("Finished installing the client.");
-                minecraftClasspath.join();
-                System.out.println("Finished installing minecraft libraries.");
-                modLoaderClasspath.join();
-                System.out.println("Finished installing modloader libraries.");
-                lwjgl.join();
-                System.out.println("Finished installing LWJGL.");
-                assetsDir.join();
-                System.out.println("Finished installing assets.");
-                System.out.println("Installation process complete!");
-                API_V1.finishedDownloading = true;
-            }, "Completion Thread");
-            waitForCompletion.start();
-
-//            CompletableFuture.allOf(clientClasspath, minecraftClasspath, modLoaderClasspath, lwjgl, assetsDir).whenComplete((ignored, exception) -> {
-//                API_V1.finishedDownloading = true;
-//            });
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        instance.assetIndex = minecraftVersionInfo.assetIndex.id;
-
-        // Write instance to json file
-        GsonUtils.objectToJsonFile(gameDir + "/instances/" + instanceName + "/instance.json", instance);
+        return createAsync(activity, instanceName, gameDir, minecraftVersion, modLoader).awaitMeta();
+    }
 
-        return instance;
+    /**
+     * Starts creating an instance, see {@link InstanceCreation}. The instance json is written once it's complete.
+     */
+    public static InstanceCreation createAsync(Activity activity, String instanceName, String gameDir, MinecraftMeta.MinecraftVersion minecraftVersion, int modLoader) {
+        return InstanceCreation.start(activity, instanceName, gameDir, minecraftVersion, modLoader);
     }
 
     // Load an instance from json
@@ -136,9 +61,9 @@ public class MinecraftInstance {
         return GsonUtils.jsonFileToObject(gameDir + "/instances/" + instanceName + "/instance.json", MinecraftInstance.class);
     }
 
-    // Return true if instance was deleted
+    // Return true if instance was deleted, along with the files no other instance uses, see InstanceStorage
     public static boolean delete(String instanceName, String gameDir) {
-        return new File(gameDir + "/instances/" + instanceName).delete();
+        return InstanceStorage.delete(instanceName, gameDir);
     }
 
     public List<String> generateLaunchArgs(MinecraftAccount account) {
@@ -156,7 +81,8 @@ public class MinecraftInstance {
         try {
             File mods = new File(Constants.USER_HOME + "/mods-new.json");
             File modsOld = new File(Constants.USER_HOME + "/mods.json");
-            DownloadUtils.downloadFile(MODS, mods);
+            RetryPolicy retry = new RetryPolicy();
+            DownloadUtils.downloadFile(MODS, mods, retry);
             JsonObject obj = GsonUtils.jsonFileToObject(mods.getAbsolutePath(), JsonObject.class);
             JsonObject objOld = GsonUtils.jsonFileToObject(modsOld.getAbsolutePath(), JsonObject.class);
 
@@ -183,7 +109,7 @@ public class MinecraftInstance {
                 boolean downloadAll = !(new File(Constants.MC_DIR + "/mods/" + this.versionName).exists());
                 for (String download : downloads) {
                     if(!Objects.equals(versions.get(i), ((JsonObject) objOld.getAsJsonArray(versionName).get(i)).getAsJsonPrimitive("version").getAsString()) || downloadAll) {
-                        DownloadUtils.downloadFile(download, new File(Constants.MC_DIR + "/mods/" + this.versionName + "/" + name.get(i) + ".jar"));
+                        DownloadUtils.downloadFile(download, new File(Constants.MC_DIR + "/mods/" + this.versionName + "/" + name.get(i) + ".jar"), retry);
                     }
                     i++;
                 }
@@ -197,7 +123,7 @@ public class MinecraftInstance {
                 FileUtil.write(modsOld.getAbsolutePath(), buffer);
                 int i = 0;
                 for (String download : downloads) {
-                    DownloadUtils.downloadFile(download, new File(Constants.MC_DIR + "/mods/" + this.versionName + "/" + name.get(i) + ".jar"));
+                    DownloadUtils.downloadFile(download, new File(Constants.MC_DIR + "/mods/" + this.versionName + "/" + name.get(i) + ".jar"), retry);
                     i++;
                 }
                 mods.delete();
@@ -210,10 +136,12 @@ public class MinecraftInstance {
     public void launchInstance(Activity activity, MinecraftAccount account) {
         try {
             updateOrDownloadsMods();
+            // Usually long done, unless this is the first start
+            RuntimeInstaller.install(activity).join();
             JREUtils.redirectAndPrintJRELog();
             VLoader.setAndroidInitInfo(activity);
             VLoader.setEGLGlobal(JREUtils.getEGLContextPtr(), JREUtils.getEGLDisplayPtr(), JREUtils.getEGLConfigPtr());
-            JREUtils.launchJavaVM(activity, generateLaunchArgs(account), versionName);
+            JREUtils.launchJavaVM(activity, generateLaunchArgs(account), versionName, LaunchProfile.fromName(launchProfile), jvmArgs);
         } catch (Throwable e) {
             e.printStackTrace();
         }
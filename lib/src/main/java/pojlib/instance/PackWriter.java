@@ -0,0 +1,170 @@
+package pojlib.instance;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a zip file straight to a channel from entries that are already compressed.
+ * <p>
+ * {@link java.util.zip.ZipOutputStream} deflates every entry itself, one after another. Here the entries are
+ * deflated elsewhere, in parallel, and only their bytes end up here, with their sizes and crc known up front so no
+ * data descriptors are needed. Archives and offsets over 4GB use zip64, single entries have to stay below that.
+ * Timestamps are fixed, the same files always give the same archive.
+ */
+class PackWriter {
+
+    static final int STORED = 0;
+    static final int DEFLATED = 8;
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END = 0x06054b50;
+    private static final int ZIP64_END = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int ZIP64_VERSION = 45;
+    private static final int UTF8_FLAG = 0x0800;
+    private static final long MAX_32 = 0xFFFFFFFFL;
+    // 1980-01-01 00:00, the earliest a zip can say
+    private static final int DOS_DATE = (1 << 5) | 1;
+
+    interface Body {
+        void writeTo(FileChannel channel) throws IOException;
+    }
+
+    private static class Written {
+        final byte[] name;
+        final int method;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        final long offset;
+
+        Written(byte[] name, int method, long crc, long compressedSize, long size, long offset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+    }
+
+    private final FileChannel channel;
+    private final List<Written> entries = new ArrayList<>();
+
+    PackWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * @param body Writes exactly compressedSize bytes
+     */
+    void add(String name, int method, long crc, long compressedSize, long size, Body body) throws IOException {
+        if (compressedSize >= MAX_32 || size >= MAX_32) throw new IOException(name + " is too big for a pack");
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        long offset = channel.position();
+
+        ByteBuffer header = buffer(30 + nameBytes.length);
+        header.putInt(LOCAL_HEADER);
+        header.putShort((short) 20);
+        header.putShort((short) UTF8_FLAG);
+        header.putShort((short) method);
+        header.putShort((short) 0);
+        header.putShort((short) DOS_DATE);
+        header.putInt((int) crc);
+        header.putInt((int) compressedSize);
+        header.putInt((int) size);
+        header.putShort((short) nameBytes.length);
+        header.putShort((short) 0);
+        header.put(nameBytes);
+        write(header);
+
+        body.writeTo(channel);
+        if (channel.position() != offset + 30 + nameBytes.length + compressedSize) {
+            throw new IOException(name + " changed while it was packed");
+        }
+        entries.add(new Written(nameBytes, method, crc, compressedSize, size, offset));
+    }
+
+    /**
+     * Writes the central directory, the channel is left open
+     */
+    void finish() throws IOException {
+        long directoryOffset = channel.position();
+        for (Written entry : entries) {
+            boolean zip64 = entry.offset >= MAX_32;
+            ByteBuffer header = buffer(46 + entry.name.length + (zip64 ? 12 : 0));
+            header.putInt(CENTRAL_HEADER);
+            header.putShort((short) ZIP64_VERSION);
+            header.putShort((short) (zip64 ? ZIP64_VERSION : 20));
+            header.putShort((short) UTF8_FLAG);
+            header.putShort((short) entry.method);
+            header.putShort((short) 0);
+            header.putShort((short) DOS_DATE);
+            header.putInt((int) entry.crc);
+            header.putInt((int) entry.compressedSize);
+            header.putInt((int) entry.size);
+            header.putShort((short) entry.name.length);
+            header.putShort((short) (zip64 ? 12 : 0));
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putInt(0);
+            header.putInt((int) (zip64 ? MAX_32 : entry.offset));
+            header.put(entry.name);
+            if (zip64) {
+                header.putShort((short) 1);
+                header.putShort((short) 8);
+                header.putLong(entry.offset);
+            }
+            write(header);
+        }
+        long directorySize = channel.position() - directoryOffset;
+
+        boolean zip64 = entries.size() >= 0xFFFF || directoryOffset >= MAX_32 || directorySize >= MAX_32;
+        if (zip64) {
+            long zip64End = channel.position();
+            ByteBuffer end = buffer(56 + 20);
+            end.putInt(ZIP64_END);
+            end.putLong(44);
+            end.putShort((short) ZIP64_VERSION);
+            end.putShort((short) ZIP64_VERSION);
+            end.putInt(0);
+            end.putInt(0);
+            end.putLong(entries.size());
+            end.putLong(entries.size());
+            end.putLong(directorySize);
+            end.putLong(directoryOffset);
+            end.putInt(ZIP64_LOCATOR);
+            end.putInt(0);
+            end.putLong(zip64End);
+            end.putInt(1);
+            write(end);
+        }
+
+        ByteBuffer end = buffer(22);
+        end.putInt(END);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) (zip64 ? 0xFFFF : entries.size()));
+        end.putShort((short) (zip64 ? 0xFFFF : entries.size()));
+        end.putInt((int) (zip64 ? MAX_32 : directorySize));
+        end.putInt((int) (zip64 ? MAX_32 : directoryOffset));
+        end.putShort((short) 0);
+        write(end);
+    }
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+}
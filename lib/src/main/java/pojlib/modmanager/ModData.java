@@ -1,6 +1,14 @@
 package pojlib.modmanager;
 
+import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import static pojlib.util.GsonUtils.nextStringOrNull;
 
 public class ModData {
     @SerializedName("title")
@@ -26,4 +34,64 @@ public class ModData {
         public String url;
         public String filename;
     }
+
+    public static class Adapter extends TypeAdapter<ModData> {
+        @Override
+        public void write(JsonWriter out, ModData value) throws IOException {
+            out.beginObject();
+            out.name("title").value(value.title);
+            out.name("slug").value(value.slug);
+            out.name("icon_url").value(value.iconUrl);
+            out.name("platform").value(value.platform);
+            out.name("repo").value(value.repo);
+            out.name("isActive").value(value.isActive);
+            if (value.fileData != null) {
+                out.name("fileData").beginObject();
+                out.name("id").value(value.fileData.id);
+                out.name("url").value(value.fileData.url);
+                out.name("filename").value(value.fileData.filename);
+                out.endObject();
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ModData read(JsonReader in) throws IOException {
+            ModData modData = new ModData();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "title": modData.title = nextStringOrNull(in); break;
+                    case "slug": modData.slug = nextStringOrNull(in); break;
+                    case "icon_url": modData.iconUrl = nextStringOrNull(in); break;
+                    case "platform": modData.platform = nextStringOrNull(in); break;
+                    case "repo": modData.repo = nextStringOrNull(in); break;
+                    case "isActive": modData.isActive = in.nextBoolean(); break;
+                    case "fileData": modData.fileData = readFileData(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return modData;
+        }
+
+        private static FileData readFileData(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            FileData fileData = new FileData();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": fileData.id = nextStringOrNull(in); break;
+                    case "url": fileData.url = nextStringOrNull(in); break;
+                    case "filename": fileData.filename = nextStringOrNull(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return fileData;
+        }
+    }
 }
@@ -10,6 +10,7 @@ import pojlib.modmanager.api.*;
 import pojlib.util.DownloadUtils;
 import pojlib.util.FileUtil;
 import pojlib.util.GsonUtils;
+import pojlib.util.RetryPolicy;
 
 import java.io.File;
 import java.io.IOException;
@@ -219,7 +220,7 @@ public class ModManager {
                         instance.addMod(modData);
                     }
 
-                    DownloadUtils.downloadFile(modData.fileData.url, new File(path.getPath() + "/" + modData.fileData.filename));
+                    DownloadUtils.downloadFile(modData.fileData.url, new File(path.getPath() + "/" + modData.fileData.filename), new RetryPolicy());
                     currentDownloadSlugs.remove(slug);
 
                     FileUtil.write(workDir + "/mods.json", GsonUtils.GLOBAL_GSON.toJson(state).getBytes());
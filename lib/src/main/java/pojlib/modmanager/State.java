@@ -1,11 +1,19 @@
 package pojlib.modmanager;
 
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+import static pojlib.util.GsonUtils.nextStringOrNull;
 
 public class State {
     @SerializedName("fabric-loader-version")
@@ -93,5 +101,109 @@ public class State {
             return null;
         }
     }
-}
 
+    /**
+     * Hand written adapter for mods.json, it is read and rewritten every time a mod is added or removed
+     */
+    public static class Adapter extends TypeAdapter<State> {
+        private final TypeAdapter<ModData> modAdapter;
+
+        public Adapter(Gson gson) {
+            modAdapter = gson.getAdapter(ModData.class);
+        }
+
+        @Override
+        public void write(JsonWriter out, State value) throws IOException {
+            out.beginObject();
+            out.name("fabric-loader-version").value(value.fabricLoaderVersion);
+            out.name("instances").beginArray();
+            for (Instance instance : value.instances) {
+                out.beginObject();
+                out.name("name").value(instance.name);
+                out.name("gameVersion").value(instance.gameVersion);
+                out.name("LoaderVersion").value(instance.LoaderVersion);
+                writeMods(out.name("mods"), instance.mods);
+                out.endObject();
+            }
+            out.endArray();
+            out.name("core_mods").beginObject();
+            for (Map.Entry<String, List<ModData>> entry : value.coreMods.entrySet()) {
+                writeMods(out.name(entry.getKey()), entry.getValue());
+            }
+            out.endObject();
+            out.endObject();
+        }
+
+        @Override
+        public State read(JsonReader in) throws IOException {
+            State state = new State();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "fabric-loader-version":
+                        state.fabricLoaderVersion = nextStringOrNull(in);
+                        break;
+                    case "instances":
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                            break;
+                        }
+                        in.beginArray();
+                        while (in.hasNext()) state.instances.add(readInstance(in));
+                        in.endArray();
+                        break;
+                    case "core_mods":
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                            break;
+                        }
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            String version = in.nextName();
+                            List<ModData> mods = new ArrayList<>();
+                            readMods(in, mods);
+                            state.coreMods.put(version, mods);
+                        }
+                        in.endObject();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return state;
+        }
+
+        private Instance readInstance(JsonReader in) throws IOException {
+            Instance instance = new Instance();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name": instance.name = nextStringOrNull(in); break;
+                    case "gameVersion": instance.gameVersion = nextStringOrNull(in); break;
+                    case "LoaderVersion": instance.LoaderVersion = nextStringOrNull(in); break;
+                    case "mods": readMods(in, instance.mods); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return instance;
+        }
+
+        private void readMods(JsonReader in, List<ModData> mods) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return;
+            }
+            in.beginArray();
+            while (in.hasNext()) mods.add(modAdapter.read(in));
+            in.endArray();
+        }
+
+        private void writeMods(JsonWriter out, List<ModData> mods) throws IOException {
+            out.beginArray();
+            for (ModData mod : mods) modAdapter.write(out, mod);
+            out.endArray();
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.google.gson.annotations.SerializedName;
 import pojlib.modmanager.ModData;
 import pojlib.modmanager.ModManager;
 import pojlib.util.APIHandler;
+import pojlib.util.Constants;
 import pojlib.util.DownloadUtils;
 
 import java.io.IOException;
@@ -15,7 +16,7 @@ import java.util.List;
 
 public class Curseforge {
 
-    private static final APIHandler handler = new APIHandler("https://qcxr-modmanager-curseforge-api.herokuapp.com");
+    private static final APIHandler handler = new APIHandler(() -> Constants.CURSEFORGE_API_URL);
 
     public static class Project {
         @SerializedName("name")
@@ -74,7 +75,7 @@ public class Curseforge {
                 modData.fileData.id = String.valueOf(file.fileId);
                 modData.fileData.filename = file.filename;
                 //Work around for curse restricting mods outside CurseForge platform
-                modData.fileData.url = APIHandler.getCurseforgeJsonURL("https://qcxr-modmanager-curseforge-api.herokuapp.com" + "/getModDownloadURL/" + project.id + "/" + file.fileId);
+                modData.fileData.url = APIHandler.getCurseforgeJsonURL(handler.getBaseUrl() + "/getModDownloadURL/" + project.id + "/" + file.fileId);
                 return modData;
             }
         }
@@ -2,6 +2,7 @@ package pojlib.modmanager.api;
 
 import com.google.gson.annotations.SerializedName;
 
+import pojlib.install.LoaderMeta;
 import pojlib.util.APIHandler;
 import pojlib.util.Constants;
 import pojlib.util.FileUtil;
@@ -11,8 +12,7 @@ import java.io.IOException;
 
 public class Fabric {
 
-    private static final APIHandler handler = new APIHandler("https://meta.fabricmc.net/v2");
-    private static String fabricLoaderVersion; //Store so we don't need to ask the api every time
+    private static final APIHandler handler = new APIHandler(() -> Constants.FABRIC_META_URL);
 
     public static class Version {
         @SerializedName("version")
@@ -21,21 +21,9 @@ public class Fabric {
         public boolean stable;
     }
 
-    //Will only ask api first time called, return fabricLoadVersion var every next time - save on unneeded api calls
+    //Cached by LoaderMeta - save on unneeded api calls
     public static String getLatestLoaderVersion()  {
-        if (fabricLoaderVersion != null) return fabricLoaderVersion;
-
-        Version[] versions = handler.get("versions/loader", Version[].class);
-        if (versions != null) {
-            for (Version version : versions) {
-                if (version.stable) {
-                    fabricLoaderVersion = version.version;
-                    return version.version;
-                }
-            }
-        }
-        fabricLoaderVersion = "0.14.7"; //Known latest as backup
-        return fabricLoaderVersion;
+        return LoaderMeta.getLatestVersion(LoaderMeta.Loader.FABRIC);
     }
 
     //Won't do anything if version is already installed
@@ -45,7 +33,7 @@ public class Fabric {
         if (new File(path.getPath() + "/" + profileName + ".json").exists()) return;
 
         try {
-            String json = APIHandler.getRaw(String.format(handler + "/versions/loader/%s/%s/profile/json", gameVersion, loaderVersion));
+            String json = APIHandler.getRaw(String.format(handler.getBaseUrl() + "/versions/loader/%s/%s/profile/json", gameVersion, loaderVersion));
             if (json != null) {
                 if (!path.exists()) path.mkdirs();
                 FileUtil.write(path.getPath() + "/" + profileName + ".json", json.getBytes());
@@ -6,6 +6,7 @@ import com.google.gson.annotations.SerializedName;
 import pojlib.modmanager.ModData;
 import pojlib.modmanager.ModManager;
 import pojlib.util.APIHandler;
+import pojlib.util.Constants;
 import pojlib.util.DownloadUtils;
 
 import java.io.IOException;
@@ -15,7 +16,7 @@ import java.util.List;
 
 public class Modrinth {
 
-    private static final APIHandler handler = new APIHandler("https://api.modrinth.com/v2");
+    private static final APIHandler handler = new APIHandler(() -> Constants.MODRINTH_API_URL);
 
     public static class Project {
         @SerializedName("title")
@@ -1,6 +1,7 @@
 package pojlib.modmanager.api;
 
 import com.google.gson.annotations.SerializedName;
+import pojlib.install.LoaderMeta;
 import pojlib.util.APIHandler;
 import pojlib.util.Constants;
 import pojlib.util.FileUtil;
@@ -10,22 +11,16 @@ import java.io.IOException;
 
 public class Quilt {
 
-    private static final APIHandler handler = new APIHandler("https://meta.quiltmc.org/v3");
-    private static String quiltLoaderVersion; //Store so we don't need to ask the api every time
+    private static final APIHandler handler = new APIHandler(() -> Constants.QUILT_META_URL);
 
     public static class Version {
         @SerializedName("version")
         public String version;
     }
 
-    //Will only ask api first time called, return quiltLoadVersion var every next time - save on unneeded api calls
+    //Cached by LoaderMeta - save on unneeded api calls
     public static String getLatestLoaderVersion()  {
-        if (quiltLoaderVersion != null) return quiltLoaderVersion;
-
-        Version[] versions = handler.get("versions/loader", Version[].class);
-        if (versions != null && versions.length > 0) return versions[0].version;
-        quiltLoaderVersion = "0.16.0-beta.15"; //Known latest as backup
-        return quiltLoaderVersion;
+        return LoaderMeta.getLatestVersion(LoaderMeta.Loader.QUILT);
     }
 
     //Won't do anything if version is already installed
@@ -35,7 +30,7 @@ public class Quilt {
         if (new File(path.getPath() + "/" + profileName + ".json").exists()) return;
 
         try {
-            String json = APIHandler.getRaw(String.format(handler + "/versions/loader/%s/%s/profile/json", gameVersion, loaderVersion));
+            String json = APIHandler.getRaw(String.format(handler.getBaseUrl() + "/versions/loader/%s/%s/profile/json", gameVersion, loaderVersion));
             if (json != null) {
                 if (!path.exists()) path.mkdirs();
                 FileUtil.write(path.getPath() + "/" + profileName + ".json", json.getBytes());
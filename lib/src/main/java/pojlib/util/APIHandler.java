@@ -1,7 +1,6 @@
 package pojlib.util;
 
 import android.os.Build;
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
 import java.io.*;
@@ -9,46 +8,70 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class APIHandler {
-    private final String baseUrl;
+    private static final int RESPONSE_CACHE_SIZE = 64;
+    private static final long RESPONSE_CACHE_TTL_MS = 30 * 1000;
+    private static final LruCache<String, Object> responseCache = new LruCache<>(RESPONSE_CACHE_SIZE, RESPONSE_CACHE_TTL_MS);
+    private static final SingleFlight<String, Object> inFlightGets = new SingleFlight<>();
+
+    private final Supplier<String> baseUrl;
 
     public APIHandler(String url) {
+        baseUrl = () -> url;
+    }
+
+    /**
+     * @param url Resolved on every request, so a base url in {@link Constants} can be changed (e.g. to point at a test server) after the handler is created
+     */
+    public APIHandler(Supplier<String> url) {
         baseUrl = url;
     }
 
+    public String getBaseUrl() {
+        return baseUrl.get();
+    }
+
     public <T> T get(String endpoint, Class<T> tClass) {
-        return getFullUrl(baseUrl + "/" + endpoint, tClass);
+        return getFullUrl(getBaseUrl() + "/" + endpoint, tClass);
     }
 
     public <T> T get(String endpoint, HashMap<String, Object> query, Class<T> tClass) {
-        return getFullUrl(baseUrl + "/" + endpoint, query, tClass);
+        return getFullUrl(getBaseUrl() + "/" + endpoint, query, tClass);
     }
 
     public <T> T post(String endpoint, T body, Class<T> tClass) {
-        return postFullUrl(baseUrl + "/" + endpoint, body, tClass);
+        return postFullUrl(getBaseUrl() + "/" + endpoint, body, tClass);
     }
 
     public <T> T post(String endpoint, HashMap<String, Object> query, T body, Class<T> tClass) {
-        return postFullUrl(baseUrl + "/" + endpoint, query, body, tClass);
+        return postFullUrl(getBaseUrl() + "/" + endpoint, query, body, tClass);
     }
 
     //Make a get request and return the response as a raw string;
+    //Responses are small, so a slow mirror gets raced by the next one
     public static String getRaw(String url) {
         try {
-            HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
-            InputStream inputStream = conn.getInputStream();
-            String data = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).lines().collect(Collectors.joining("\n"));
-            inputStream.close();
-            conn.disconnect();
-            return data;
+            return Mirrors.fetchHedged(url, APIHandler::fetchRaw);
         } catch (IOException e) {
             e.printStackTrace();
         }
         return null;
     }
 
+    private static String fetchRaw(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(10000);
+        conn.setReadTimeout(30000);
+        try (InputStream inputStream = conn.getInputStream()) {
+            return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).lines().collect(Collectors.joining("\n"));
+        } finally {
+            conn.disconnect();
+        }
+    }
+
     public static String postRaw(String url, String body) {
         try {
             HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
@@ -83,8 +106,25 @@ public class APIHandler {
         return params.substring(0, params.length() - 1);
     }
 
+    /**
+     * Concurrent identical requests share one connection and the parsed response is kept for a short time.
+     * The returned object may be shared with other callers, so don't modify it.
+     */
     public static <T> T getFullUrl(String url, Class<T> tClass) {
-        return new Gson().fromJson(getRaw(url), tClass);
+        String key = tClass.getName() + " " + url;
+        Object cached = responseCache.get(key);
+        if (cached != null) return tClass.cast(cached);
+
+        return tClass.cast(inFlightGets.run(key, () -> {
+            Object response = GsonUtils.GLOBAL_GSON.fromJson(getRaw(url), tClass);
+            //Failures aren't cached so the next caller can try again
+            if (response != null) responseCache.put(key, response);
+            return response;
+        }));
+    }
+
+    public static void clearResponseCache() {
+        responseCache.clear();
     }
 
     public static <T> T getFullUrl(String url, HashMap<String, Object> query, Class<T> tClass) {
@@ -92,11 +132,11 @@ public class APIHandler {
     }
 
     public static <T> T postFullUrl(String url, T body, Class<T> tClass) {
-        return new Gson().fromJson(postRaw(url, body.toString()), tClass);
+        return GsonUtils.GLOBAL_GSON.fromJson(postRaw(url, body.toString()), tClass);
     }
 
     public static <T> T postFullUrl(String url, HashMap<String, Object> query, T body, Class<T> tClass) {
-        return new Gson().fromJson(postRaw(url + parseQueries(query), body.toString()), tClass);
+        return GsonUtils.GLOBAL_GSON.fromJson(postRaw(url + parseQueries(query), body.toString()), tClass);
     }
 
     public static String getCurseforgeJsonURL(String raw) {
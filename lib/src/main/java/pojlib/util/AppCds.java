@@ -0,0 +1,90 @@
+package pojlib.util;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dynamic AppCDS archives, so classes don't have to be loaded and verified from the jars on every launch.
+ * <p>
+ * The first launch of a classpath dumps the loaded classes into an archive when the game exits normally, later launches
+ * map it. Archives are keyed by a hash of the classpath, the mods and the runtime, so any change there starts a new one.
+ * A damaged or mismatched archive is only a warning to the jvm, the game then starts without it.
+ */
+public class AppCds {
+    private AppCds() {}
+
+    // Archives of classpaths that weren't launched for this long are deleted
+    private static final long UNUSED_ARCHIVE_MS = TimeUnit.DAYS.toMillis(30);
+
+    public static File getArchiveDir() {
+        return new File(Constants.USER_HOME, "cds");
+    }
+
+    /**
+     * @param runtimeDir The java runtime, dynamic archives need its base archive
+     * @param classpath The classpath the game is launched with
+     * @param modsDir Directory of the mods loaded on top of the classpath, may not exist
+     * @return The jvm arguments to either use or create the archive, empty if the runtime can't do either
+     */
+    public static List<String> jvmArgs(File runtimeDir, String classpath, File modsDir) {
+        if (classpath == null || !new File(runtimeDir, "lib/server/classes.jsa").isFile()) return Collections.emptyList();
+
+        File archiveDir = getArchiveDir();
+        archiveDir.mkdirs();
+        deleteUnusedArchives(archiveDir);
+
+        File archive = new File(archiveDir, key(runtimeDir, classpath, modsDir) + ".jsa");
+        List<String> args = new ArrayList<>();
+        if (archive.length() > 0) {
+            archive.setLastModified(System.currentTimeMillis());
+            args.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+        } else {
+            Logger.getInstance().appendToLog("No class data archive for this classpath yet, one is created when the game exits");
+            args.add("-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath());
+        }
+        return args;
+    }
+
+    /**
+     * Hash of everything the archived classes depend on
+     */
+    static String key(File runtimeDir, String classpath, File modsDir) {
+        MessageDigest digest = DigestUtils.getSha1Digest();
+        digest.update(classpath.getBytes(StandardCharsets.UTF_8));
+        for (String entry : classpath.split(File.pathSeparator)) update(digest, new File(entry));
+
+        File[] mods = modsDir.listFiles((dir, name) -> name.endsWith(".jar"));
+        if (mods != null) {
+            Arrays.sort(mods);
+            for (File mod : mods) update(digest, mod);
+        }
+
+        // A new runtime can't use an archive dumped by the old one
+        update(digest, new File(runtimeDir, "lib/modules"));
+        update(digest, new File(runtimeDir, "lib/server/libjvm.so"));
+        return Hex.encodeHexString(digest.digest()).substring(0, 16);
+    }
+
+    private static void update(MessageDigest digest, File file) {
+        String stamp = file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified() + "\n";
+        digest.update(stamp.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void deleteUnusedArchives(File archiveDir) {
+        File[] archives = archiveDir.listFiles((dir, name) -> name.endsWith(".jsa"));
+        if (archives == null) return;
+        long now = System.currentTimeMillis();
+        for (File archive : archives) {
+            if (now - archive.lastModified() > UNUSED_ARCHIVE_MS) archive.delete();
+        }
+    }
+}
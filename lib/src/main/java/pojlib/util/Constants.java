@@ -8,9 +8,14 @@ public class Constants {
 
     public static String MOJANG_META_URL = "https://piston-meta.mojang.com";
     public static String MOJANG_RESOURCES_URL = "https://resources.download.minecraft.net";
+    //Come from the version jsons, only here so Mirrors can route them
+    public static String MOJANG_DATA_URL = "https://piston-data.mojang.com";
+    public static String MOJANG_LIBRARIES_URL = "https://libraries.minecraft.net";
     
     public static String FABRIC_META_URL = "https://meta.fabricmc.net/v2";
     public static String QUILT_META_URL = "https://meta.quiltmc.org/v3";
+    public static String FABRIC_MAVEN_URL = "https://maven.fabricmc.net";
+    public static String QUILT_MAVEN_URL = "https://maven.quiltmc.org/repository/release";
 
     public static String OAUTH_TOKEN_URL = "https://login.live.com/oauth20_token.srf";
     public static String XBL_AUTH_URL = "https://user.auth.xboxlive.com/user/authenticate";
@@ -21,6 +26,16 @@ public class Constants {
 
     public static String CRAFATAR_URL = "https://crafatar.com";
 
-    public static String MC_DIR = new File(Environment.getExternalStorageDirectory(),"Android/data/com.qcxr.qcxr/files/.minecraft").getAbsolutePath();
-    public static String USER_HOME = new File(Environment.getExternalStorageDirectory(),"Android/data/com.qcxr.qcxr/files").getAbsolutePath();
+    public static String MODRINTH_API_URL = "https://api.modrinth.com/v2";
+    public static String CURSEFORGE_API_URL = "https://qcxr-modmanager-curseforge-api.herokuapp.com";
+
+    public static String MC_DIR = new File(storageDir(),"Android/data/com.qcxr.qcxr/files/.minecraft").getAbsolutePath();
+    public static String USER_HOME = new File(storageDir(),"Android/data/com.qcxr.qcxr/files").getAbsolutePath();
+
+    //Lets tests and benchmarks running on a plain JVM use a temp dir instead of android's external storage
+    private static File storageDir() {
+        String override = System.getProperty("pojlib.storageDir");
+        if (override != null) return new File(override);
+        return Environment.getExternalStorageDirectory();
+    }
 }
\ No newline at end of file
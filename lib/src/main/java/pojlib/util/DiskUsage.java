@@ -0,0 +1,213 @@
+package pojlib.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Sizes and deletes directory trees on several threads.
+ * <p>
+ * What a directory directly holds is cached and reused as long as the directory's mtime stays the same, so walking a
+ * tree again only lists the directories where something was added, removed or renamed. A file that grows in place,
+ * like a log, is picked up once something else in its directory changes. Symlinks are neither followed nor counted.
+ */
+public class DiskUsage {
+
+    private static final ForkJoinPool pool = new ForkJoinPool(4);
+    private static final Map<Path, Node> cache = new ConcurrentHashMap<>();
+
+    public static class Size {
+        public final long bytes;
+        public final long files;
+
+        public Size(long bytes, long files) {
+            this.bytes = bytes;
+            this.files = files;
+        }
+
+        Size plus(Size other) {
+            return new Size(bytes + other.bytes, files + other.files);
+        }
+    }
+
+    /**
+     * The files directly in one directory
+     */
+    private static class Node {
+        final long mtime;
+        final long bytes;
+        final long files;
+        final List<Path> dirs;
+
+        Node(long mtime, long bytes, long files, List<Path> dirs) {
+            this.mtime = mtime;
+            this.bytes = bytes;
+            this.files = files;
+            this.dirs = dirs;
+        }
+    }
+
+    /**
+     * @return Bytes and number of files in a directory tree, or of a single file. Nothing if it doesn't exist.
+     */
+    public static Size of(File file) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        BasicFileAttributes attributes = attributes(path);
+        if (attributes == null) return new Size(0, 0);
+        if (!attributes.isDirectory()) return attributes.isRegularFile() ? new Size(attributes.size(), 1) : new Size(0, 0);
+        return pool.invoke(new SizeTask(path));
+    }
+
+    /**
+     * Deletes a file or directory tree, without following symlinks
+     * @throws IOException Listing everything that couldn't be deleted, the rest is gone
+     */
+    public static void delete(File file) throws IOException {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        Queue<IOException> failures = new ConcurrentLinkedQueue<>();
+        BasicFileAttributes attributes = attributes(path);
+        if (attributes == null) return;
+        if (attributes.isDirectory()) pool.invoke(new DeleteTask(path, failures));
+        else deleteOne(path, failures);
+        invalidate(file);
+        if (!failures.isEmpty()) {
+            IOException e = new IOException("Couldn't delete " + failures.size() + " files under " + path);
+            for (IOException failure : failures) e.addSuppressed(failure);
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes files on several threads
+     * @throws IOException Listing everything that couldn't be deleted, the rest is gone
+     */
+    public static void deleteAll(Collection<File> files) throws IOException {
+        Queue<IOException> failures = new ConcurrentLinkedQueue<>();
+        pool.submit(() -> files.parallelStream().forEach(file -> deleteOne(file.toPath(), failures))).join();
+        if (!failures.isEmpty()) {
+            IOException e = new IOException("Couldn't delete " + failures.size() + " files");
+            for (IOException failure : failures) e.addSuppressed(failure);
+            throw e;
+        }
+    }
+
+    /**
+     * Forgets what is cached for a tree
+     */
+    public static void invalidate(File dir) {
+        Path path = dir.toPath().toAbsolutePath().normalize();
+        cache.keySet().removeIf(cached -> cached.startsWith(path));
+    }
+
+    private static BasicFileAttributes attributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static class SizeTask extends RecursiveTask<Size> {
+        private final Path dir;
+
+        SizeTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected Size compute() {
+            Node node = node(dir);
+            if (node == null) return new Size(0, 0);
+            List<SizeTask> tasks = new ArrayList<>(node.dirs.size());
+            for (Path child : node.dirs) tasks.add(new SizeTask(child));
+            invokeAll(tasks);
+            Size size = new Size(node.bytes, node.files);
+            for (SizeTask task : tasks) size = size.plus(task.join());
+            return size;
+        }
+
+        private static Node node(Path dir) {
+            BasicFileAttributes attributes = attributes(dir);
+            if (attributes == null || !attributes.isDirectory()) {
+                cache.remove(dir);
+                return null;
+            }
+            long mtime = attributes.lastModifiedTime().toMillis();
+            Node cached = cache.get(dir);
+            if (cached != null && cached.mtime == mtime) return cached;
+
+            long bytes = 0;
+            long files = 0;
+            List<Path> dirs = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+                for (Path child : children) {
+                    BasicFileAttributes childAttributes = attributes(child);
+                    if (childAttributes == null) continue;
+                    if (childAttributes.isDirectory()) {
+                        dirs.add(child);
+                    } else if (childAttributes.isRegularFile()) {
+                        bytes += childAttributes.size();
+                        files++;
+                    }
+                }
+            } catch (IOException e) {
+                Logger.getInstance().appendToLog("Couldn't list " + dir + ": " + e);
+                return null;
+            }
+            Node node = new Node(mtime, bytes, files, dirs);
+            cache.put(dir, node);
+            return node;
+        }
+    }
+
+    private static class DeleteTask extends RecursiveAction {
+        private final Path dir;
+        private final Queue<IOException> failures;
+
+        DeleteTask(Path dir, Queue<IOException> failures) {
+            this.dir = dir;
+            this.failures = failures;
+        }
+
+        @Override
+        protected void compute() {
+            List<DeleteTask> tasks = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+                for (Path child : children) {
+                    BasicFileAttributes attributes = attributes(child);
+                    if (attributes != null && attributes.isDirectory()) tasks.add(new DeleteTask(child, failures));
+                    else deleteOne(child, failures);
+                }
+            } catch (IOException e) {
+                failures.add(e);
+                return;
+            }
+            invokeAll(tasks);
+            deleteOne(dir, failures);
+        }
+    }
+
+    private static void deleteOne(Path path, Queue<IOException> failures) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException e) {
+            failures.add(e);
+        }
+    }
+}
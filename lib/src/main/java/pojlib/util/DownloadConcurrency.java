@@ -0,0 +1,181 @@
+package pojlib.util;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides how many downloads run at once, from how the downloads so far went.
+ * <p>
+ * Works like TCP's AIMD: after every window of finished downloads the limit goes up by one while throughput keeps
+ * improving and latency stays near the best seen, is held when more downloads stop paying off, and is halved when
+ * downloads fail or latency blows up. A fast link ends up with many small objects in flight, weak Wi-Fi with few.
+ * <p>
+ * Callers {@link #acquire()} before a download and {@link #release(long, long, boolean)} after it, or
+ * {@link #releaseBatch(long, long, boolean)} after a batch of objects fetched in one go. A batch takes many round trips,
+ * so its latency is only compared with other batches.
+ */
+public class DownloadConcurrency {
+
+    public static final int DEFAULT_MIN = 2;
+    public static final int DEFAULT_MAX = 32;
+    public static final int DEFAULT_INITIAL = 6;
+
+    // A window's fastest download taking this many times the fastest ever means the link is queueing
+    private static final double LATENCY_LIMIT = 2.0;
+    // Throughput has to improve by this much for another download to be worth it
+    private static final double GAIN_THRESHOLD = 1.05;
+    private static final double ERROR_LIMIT = 0.05;
+    private static final int SINGLE = 0;
+    private static final int BATCH = 1;
+
+    private final LongSupplier clock;
+    private final int min;
+    private final int max;
+    private int limit;
+    private int inFlight;
+
+    /* Current window */
+    private int windowDone;
+    private int windowFailed;
+    private long windowBytes;
+    // Per single downloads and batches
+    private final long[] windowMinLatencyNanos = {Long.MAX_VALUE, Long.MAX_VALUE};
+    private long windowStart;
+
+    private final long[] minLatencyNanos = {Long.MAX_VALUE, Long.MAX_VALUE};
+    private double lastThroughput;
+
+    /* Whole run */
+    private final long runStart;
+    private int peakLimit;
+    private int requests;
+    private int failures;
+    private long bytes;
+    private int increases;
+    private int decreases;
+
+    public DownloadConcurrency() {
+        this(DEFAULT_MIN, DEFAULT_MAX, DEFAULT_INITIAL);
+    }
+
+    public DownloadConcurrency(int min, int max, int initial) {
+        this(min, max, initial, System::nanoTime);
+    }
+
+    DownloadConcurrency(int min, int max, int initial, LongSupplier clock) {
+        if (min < 1 || max < min) throw new IllegalArgumentException("Invalid limits " + min + ".." + max);
+        this.clock = clock;
+        this.runStart = clock.getAsLong();
+        this.min = min;
+        this.max = max;
+        this.limit = Math.max(min, Math.min(max, initial));
+        this.peakLimit = limit;
+        this.windowStart = runStart;
+    }
+
+    /**
+     * Waits until another download may start
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= limit) wait();
+        inFlight++;
+    }
+
+    /**
+     * Reports a finished download and frees its slot
+     * @param bytes Bytes downloaded
+     * @param latencyNanos How long the download took
+     * @param failed Whether it failed, its bytes and latency aren't counted then
+     */
+    public synchronized void release(long bytes, long latencyNanos, boolean failed) {
+        release(SINGLE, bytes, latencyNanos, failed);
+    }
+
+    /**
+     * Reports a finished batch of downloads and frees its slot
+     * @param bytes Bytes downloaded
+     * @param latencyNanos How long the whole batch took
+     * @param failed Whether it failed, its bytes and latency aren't counted then
+     */
+    public synchronized void releaseBatch(long bytes, long latencyNanos, boolean failed) {
+        release(BATCH, bytes, latencyNanos, failed);
+    }
+
+    private void release(int kind, long bytes, long latencyNanos, boolean failed) {
+        inFlight--;
+        requests++;
+        windowDone++;
+        if (failed) {
+            failures++;
+            windowFailed++;
+        } else {
+            this.bytes += bytes;
+            windowBytes += bytes;
+            windowMinLatencyNanos[kind] = Math.min(windowMinLatencyNanos[kind], latencyNanos);
+        }
+        // A window is one round of the current limit, so every download in it ran with the same limit
+        if (windowDone >= limit) adjust();
+        notifyAll();
+    }
+
+    /**
+     * Frees a slot that didn't download anything, e.g. because the file was already there
+     */
+    public synchronized void skip() {
+        inFlight--;
+        notifyAll();
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    private void adjust() {
+        long now = clock.getAsLong();
+        long elapsed = Math.max(1, now - windowStart);
+        double errorRate = (double) windowFailed / windowDone;
+        double throughput = windowBytes * 1e9 / elapsed;
+        // The fastest download of the window, a big object now and then doesn't say anything about the link
+        boolean queueing = false;
+        for (int kind = SINGLE; kind <= BATCH; kind++) {
+            long latency = windowMinLatencyNanos[kind];
+            if (latency == Long.MAX_VALUE) continue;
+            if (latency < minLatencyNanos[kind]) minLatencyNanos[kind] = latency;
+            if (latency > minLatencyNanos[kind] * LATENCY_LIMIT) queueing = true;
+            windowMinLatencyNanos[kind] = Long.MAX_VALUE;
+        }
+
+        int next = limit;
+        if (errorRate > ERROR_LIMIT || queueing) {
+            next = Math.max(min, limit / 2);
+        } else if (lastThroughput == 0 || throughput > lastThroughput * GAIN_THRESHOLD) {
+            next = Math.min(max, limit + 1);
+        }
+
+        if (next > limit) increases++;
+        else if (next < limit) decreases++;
+        limit = next;
+        peakLimit = Math.max(peakLimit, limit);
+        lastThroughput = throughput;
+
+        windowDone = 0;
+        windowFailed = 0;
+        windowBytes = 0;
+        windowStart = now;
+    }
+
+    /**
+     * @return One line with the stats of the whole run, for the log
+     */
+    public synchronized String summary() {
+        long elapsedMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(clock.getAsLong() - runStart));
+        return String.format(Locale.ROOT, "%d downloads, %d failed, %.1f MB in %.1fs (%.2f MB/s), concurrency %d at the end, %d at most, %d up %d down, best latency %dms, %dms per batch",
+                requests, failures, bytes / 1e6, elapsedMs / 1e3, bytes / 1e3 / elapsedMs, limit, peakLimit, increases, decreases,
+                millis(minLatencyNanos[SINGLE]), millis(minLatencyNanos[BATCH]));
+    }
+
+    private static long millis(long nanos) {
+        return nanos == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
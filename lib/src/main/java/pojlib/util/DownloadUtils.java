@@ -30,10 +30,12 @@ public class DownloadUtils {
             // System.out.println("Connecting: " + url.toString());
             HttpURLConnection conn = (HttpURLConnection) url.openConnection();
             conn.setConnectTimeout(10000);
+            // A stalled download fails instead of hanging the install, RetryPolicy tries it again
+            conn.setReadTimeout(30000);
             conn.setDoInput(true);
             conn.connect();
             if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
-                is = conn.getInputStream();
+                throw new HttpStatusException(url.toString(), conn.getResponseCode());
             }
 
             String[] segments = url.getPath().split("/");
@@ -67,7 +69,17 @@ public class DownloadUtils {
         }
     }
 
+    /**
+     * Downloads from the best mirror of the url, see {@link Mirrors}, and falls back to the others
+     */
     public static void downloadFile(String url, File out) throws IOException {
+        Mirrors.fetch(url, route -> {
+            downloadFrom(route, out);
+            return null;
+        });
+    }
+
+    private static void downloadFrom(String url, File out) throws IOException {
         out.getParentFile().mkdirs();
         File tempOut = File.createTempFile(out.getName(), ".part", out.getParentFile());
         BufferedOutputStream bos = null;
@@ -88,18 +100,42 @@ public class DownloadUtils {
             throw th3;
         }
     }
+    /**
+     * {@link #downloadFile(String, File)} with retries as the policy sees fit
+     */
+    public static void downloadFile(String url, File out, RetryPolicy retry) throws IOException {
+        retry.run(out.getName(), () -> {
+            downloadFile(url, out);
+            return null;
+        });
+    }
+
+    /**
+     * Downloads a file unless it is already there with the right hash
+     * @param sha1 Expected hash, null to accept whatever is downloaded
+     * @throws HashMismatchException The download doesn't match, the file is deleted again
+     */
+    public static void downloadVerified(String url, File out, String sha1) throws IOException {
+        if (out.exists() && compareSHA1(out, sha1)) return;
+        downloadFile(url, out);
+        if (!compareSHA1(out, sha1)) {
+            out.delete();
+            throw new HashMismatchException(out, sha1);
+        }
+    }
+
     public static boolean compareSHA1(File f, String sourceSHA) {
+        if (sourceSHA == null) return true; // fake match
         try {
             String sha1_dst;
             try (InputStream is = Files.newInputStream(f.toPath())) {
                 sha1_dst = new String(Hex.encodeHex(DigestUtils.sha1(is)));
             }
-            if (sourceSHA != null) return sha1_dst.equalsIgnoreCase(sourceSHA);
-            else return true; // fake match
-
-        }catch (IOException e) {
-            System.out.println("Fake-matching a hash due to a read error: " + e);
-            return true;
+            return sha1_dst.equalsIgnoreCase(sourceSHA);
+        } catch (IOException e) {
+            // An unreadable file is as good as a wrong one
+            Logger.getInstance().appendToLog("Couldn't hash " + f + ": " + e);
+            return false;
         }
     }
 
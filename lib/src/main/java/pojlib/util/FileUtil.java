@@ -1,30 +1,94 @@
 package pojlib.util;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import org.apache.commons.io.IOUtils;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
 public class FileUtil {
 
     public static String DIR_GAME_NEW;
 
-    public static byte[] loadFromAssetToByte(Context ctx, String inFile) {
-        byte[] buffer = null;
-
-        try {
-            InputStream stream = ctx.getAssets().open(inFile);
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
 
-            int size = stream.available();
-            buffer = new byte[size];
-            stream.read(buffer);
-            stream.close();
+    /**
+     * Prefer {@link #copyAsset(Context, String, File)} when the asset ends up in a file anyway
+     */
+    public static byte[] loadFromAssetToByte(Context ctx, String inFile) {
+        // available() isn't the full size for compressed assets
+        try (InputStream stream = ctx.getAssets().open(inFile)) {
+            return IOUtils.toByteArray(stream);
         } catch (IOException e) {
             // Handle exceptions here
             e.printStackTrace();
         }
-        return buffer;
+        return null;
+    }
+
+    /**
+     * Copies an asset to a file without loading it into memory, unless the file already has the same content.
+     * Assets stored uncompressed in the apk are copied by the kernel, compressed ones are streamed.
+     *
+     * @return True if the file was written, false if it was already up to date
+     */
+    public static boolean copyAsset(Context ctx, String asset, File target) throws IOException {
+        return copyAsset(ctx.getAssets(), asset, target, new byte[COPY_BUFFER_SIZE]);
+    }
+
+    private static boolean copyAsset(AssetManager assetManager, String asset, File target, byte[] buffer) throws IOException {
+        AssetFileDescriptor fd = null;
+        try {
+            fd = assetManager.openFd(asset);
+        } catch (FileNotFoundException e) {
+            // Compressed in the apk, there's no descriptor to copy from
+        }
+
+        try {
+            long length = fd != null ? fd.getLength() : AssetFileDescriptor.UNKNOWN_LENGTH;
+            if (target.isFile() && (length == AssetFileDescriptor.UNKNOWN_LENGTH || target.length() == length)) {
+                try (InputStream existing = new BufferedInputStream(new FileInputStream(target), COPY_BUFFER_SIZE);
+                     InputStream source = assetManager.open(asset, AssetManager.ACCESS_STREAMING)) {
+                    if (IOUtils.contentEquals(new BufferedInputStream(source, COPY_BUFFER_SIZE), existing)) return false;
+                }
+            }
+
+            File parent = target.getAbsoluteFile().getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) throw new IOException("Failed to create directory " + parent);
+            File part = new File(parent, target.getName() + ".part");
+            try (FileOutputStream out = new FileOutputStream(part)) {
+                if (fd != null && length != AssetFileDescriptor.UNKNOWN_LENGTH) {
+                    // Closing it closes the descriptor too
+                    try (FileInputStream in = fd.createInputStream()) {
+                        FileChannel source = in.getChannel();
+                        FileChannel destination = out.getChannel();
+                        long start = fd.getStartOffset();
+                        for (long position = 0; position < length; ) {
+                            long transferred = source.transferTo(start + position, length - position, destination);
+                            if (transferred <= 0) throw new EOFException("Asset " + asset + " ended early");
+                            position += transferred;
+                        }
+                    }
+                } else {
+                    try (InputStream in = assetManager.open(asset, AssetManager.ACCESS_STREAMING)) {
+                        IOUtils.copyLarge(in, out, buffer);
+                    }
+                }
+            } catch (IOException e) {
+                part.delete();
+                throw new IOException("Unable to copy asset " + asset, e);
+            }
+            Files.move(part.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } finally {
+            if (fd != null) fd.close();
+        }
     }
 
     public static String read(String path) throws IOException {
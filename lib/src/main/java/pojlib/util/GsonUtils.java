@@ -2,20 +2,41 @@ package pojlib.util;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import pojlib.install.VersionInfo;
+import pojlib.modmanager.ModData;
+import pojlib.modmanager.State;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.function.Function;
 
 public class GsonUtils {
 
-    public static final Gson GLOBAL_GSON = new GsonBuilder().setPrettyPrinting().create();
+    /**
+     * Shared, compact Gson instance. Gson is thread safe and caches its type adapters,
+     * so always use this instead of building a new one per call.
+     * The hot types are parsed by hand written adapters instead of reflection.
+     */
+    public static final Gson GLOBAL_GSON = new GsonBuilder()
+            .registerTypeAdapterFactory(factory(VersionInfo.class, VersionInfo.Adapter::new))
+            .registerTypeAdapterFactory(factory(VersionInfo.Library.class, gson -> new VersionInfo.Library.Adapter()))
+            .registerTypeAdapterFactory(factory(VersionInfo.Asset.class, gson -> new VersionInfo.Asset.Adapter()))
+            .registerTypeAdapterFactory(factory(ModData.class, gson -> new ModData.Adapter()))
+            .registerTypeAdapterFactory(factory(State.class, State.Adapter::new))
+            .create();
 
     public static <T> T jsonFileToObject(String path, Class<T> tClass) {
-        try {
-            return new Gson().fromJson(new FileReader(path), tClass);
-        } catch (FileNotFoundException e) {
+        try (Reader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            return GLOBAL_GSON.fromJson(reader, tClass);
+        } catch (IOException e) {
             return null;
         }
     }
@@ -25,11 +46,30 @@ public class GsonUtils {
         if (dir != null) dir.mkdirs();
 
         try (Writer writer = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            gson.toJson(object, writer);
+            GLOBAL_GSON.toJson(object, writer);
             return true;
         } catch (IOException e) {
             return false;
         }
     }
+
+    /** Reads a string, or null if the json value is null */
+    public static String nextStringOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static <T> TypeAdapterFactory factory(Class<T> type, Function<Gson, TypeAdapter<T>> constructor) {
+        return new TypeAdapterFactory() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <R> TypeAdapter<R> create(Gson gson, TypeToken<R> typeToken) {
+                if (typeToken.getRawType() != type) return null;
+                return (TypeAdapter<R>) constructor.apply(gson).nullSafe();
+            }
+        };
+    }
 }
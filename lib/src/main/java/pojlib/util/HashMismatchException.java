@@ -0,0 +1,13 @@
+package pojlib.util;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A downloaded file that doesn't match its expected sha1, it has been deleted by the time this is thrown
+ */
+public class HashMismatchException extends IOException {
+    public HashMismatchException(File file, String expected) {
+        super(file.getName() + " doesn't match sha1 " + expected);
+    }
+}
@@ -0,0 +1,15 @@
+package pojlib.util;
+
+import java.io.IOException;
+
+/**
+ * A request that got an answer other than 200, the status decides whether {@link RetryPolicy} tries again
+ */
+public class HttpStatusException extends IOException {
+    public final int status;
+
+    public HttpStatusException(String url, int status) {
+        super("HTTP " + status + " from " + url);
+        this.status = status;
+    }
+}
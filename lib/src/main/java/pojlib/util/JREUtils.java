@@ -19,6 +19,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -40,9 +41,13 @@ public class JREUtils {
     public static String jvmLibraryPath;
     private static String sNativeLibDir;
     private static String runtimeDir;
+    private static String sSplitLdLibraryPath;
+    private static String[] sLdLibraryPathEntries;
+    private static LogChannel sLogChannel;
 
     public static String findInLdLibPath(String libName) {
-        if(Os.getenv("LD_LIBRARY_PATH")==null) {
+        String ldLibraryPath = Os.getenv("LD_LIBRARY_PATH");
+        if(ldLibraryPath==null) {
             try {
                 if (LD_LIBRARY_PATH != null) {
                     Os.setenv("LD_LIBRARY_PATH", LD_LIBRARY_PATH, true);
@@ -52,7 +57,11 @@ public class JREUtils {
             }
             return libName;
         }
-        for (String libPath : Os.getenv("LD_LIBRARY_PATH").split(":")) {
+        if (!ldLibraryPath.equals(sSplitLdLibraryPath)) {
+            sLdLibraryPathEntries = ldLibraryPath.split(":");
+            sSplitLdLibraryPath = ldLibraryPath;
+        }
+        for (String libPath : sLdLibraryPathEntries) {
             File f = new File(libPath, libName);
             if (f.exists() && f.isFile()) {
                 return f.getAbsolutePath();
@@ -62,81 +71,32 @@ public class JREUtils {
     }
 
     public static ArrayList<File> locateLibs(File path) {
-        ArrayList<File> returnValue = new ArrayList<>();
-        File[] list = path.listFiles();
-        if(list != null) {
-            for(File f : list) {
-                if(f.isFile() && f.getName().endsWith(".so")) {
-                    returnValue.add(f);
-                }else if(f.isDirectory()) {
-                    returnValue.addAll(locateLibs(f));
-                }
-            }
-        }
-        return returnValue;
+        return NativeLoadPlan.locateLibs(path);
     }
 
     public static void initJavaRuntime() {
-        dlopen(findInLdLibPath("libjli.so"));
-        if(!dlopen("libjvm.so")){
-            Log.w("DynamicLoader","Failed to load with no path, trying with full path");
-            dlopen(jvmLibraryPath+"/libjvm.so");
-        }
-        dlopen(findInLdLibPath("libverify.so"));
-        dlopen(findInLdLibPath("libjava.so"));
-        // dlopen(findInLdLibPath("libjsig.so"));
-        dlopen(findInLdLibPath("libnet.so"));
-        dlopen(findInLdLibPath("libnio.so"));
-        dlopen(findInLdLibPath("libawt.so"));
-        dlopen(findInLdLibPath("libawt_headless.so"));
-        dlopen(findInLdLibPath("libfreetype.so"));
-        dlopen(findInLdLibPath("libfontmanager.so"));
-        for(File f : locateLibs(new File(runtimeDir + "/lib"))) {
-            dlopen(f.getAbsolutePath());
+        List<String> libs = NativeLoadPlan.get(runtimeDir, jvmLibraryPath, sNativeLibDir, JREUtils::findInLdLibPath);
+        for (String lib : libs) {
+            if (!dlopen(lib)) {
+                Log.w("DynamicLoader", "Failed to load " + lib);
+                // Work it out again next time, something changed under us
+                NativeLoadPlan.invalidate();
+            }
         }
-        dlopen(sNativeLibDir + "/libopenal.so");
     }
 
     public static void redirectAndPrintJRELog() {
-        Log.v("jrelog","Log starts here");
-        JREUtils.logToLogger(Logger.getInstance());
-        new Thread(new Runnable(){
-            int failTime = 0;
-            ProcessBuilder logcatPb;
-            @Override
-            public void run() {
-                try {
-                    if (logcatPb == null) {
-                        logcatPb = new ProcessBuilder().command("logcat", /* "-G", "1mb", */ "-v", "brief", "-s", "jrelog:I", "LIBGL:I").redirectErrorStream(true);
-                    }
-                            Log.i("jrelog-logcat","Clearing logcat");
-                    new ProcessBuilder().command("logcat", "-c").redirectErrorStream(true).start();
-                    Log.i("jrelog-logcat","Starting logcat");
-                    java.lang.Process p = logcatPb.start();
-
-                    byte[] buf = new byte[1024];
-                    int len;
-                    while ((len = p.getInputStream().read(buf)) != -1) {
-                        String currStr = new String(buf, 0, len);
-                        Logger.getInstance().appendToLog(currStr);
-                    }
-                            if (p.waitFor() != 0) {
-                        Log.e("jrelog-logcat", "Logcat exited with code " + p.exitValue());
-                        failTime++;
-                        Log.i("jrelog-logcat", (failTime <= 10 ? "Restarting logcat" : "Too many restart fails") + " (attempt " + failTime + "/10");
-                        if (failTime <= 10) {
-                            run();
-                        } else {
-                            Logger.getInstance().appendToLog("ERROR: Unable to get more log.");
-                        }
-                            }
-                } catch (Throwable e) {
-                    Log.e("jrelog-logcat", "Exception on logging thread", e);
-                    Logger.getInstance().appendToLog("Exception on logging thread:\n" + Log.getStackTraceString(e));
-                }
+        synchronized (JREUtils.class) {
+            if (sLogChannel != null) return;
+            LogChannel channel = new LogChannel(Logger.getInstance());
+            if (!startLogChannel(channel, channel.getNativeBuffer())) {
+                Log.e("jrelog", "Unable to redirect stdout and stderr");
+                Logger.getInstance().appendToLog("ERROR: Unable to get the game's log.");
+                return;
             }
-        }).start();
-        Log.i("jrelog-logcat","Logcat thread started");
+            sLogChannel = channel;
+        }
+        Log.i("jrelog", "Log channel started");
     }
 
     public static void relocateLibPath(final Context ctx) {
@@ -190,19 +150,40 @@ public class JREUtils {
     }
 
     public static int launchJavaVM(final Activity activity,final List<String> JVMArgs, String versionName) throws Throwable {
+        return launchJavaVM(activity, JVMArgs, versionName, LaunchProfile.BALANCED, null);
+    }
+
+    /**
+     * @param profile Heap, gc and jit settings
+     * @param customArgs Extra jvm arguments of the instance, may be null. They override the profile and JVM_ARGS in custom_env.txt,
+     *                   -Xshare:off there disables the {@link AppCds} archive
+     */
+    public static int launchJavaVM(final Activity activity,final List<String> JVMArgs, String versionName, LaunchProfile profile, String customArgs) throws Throwable {
         JREUtils.relocateLibPath(activity);
         setJavaEnvironment(activity);
 
         final String graphicsLib = loadGraphicsLibrary();
-        List<String> userArgs = getJavaArgs(activity);
+        List<String> generatedArgs = getJavaArgs(activity);
 
         //Add automatically generated args
-        userArgs.add("-Xms" + 2048 + "M");
-        userArgs.add("-Xmx" + 2048 + "M");
-        userArgs.add("-Dorg.lwjgl.opengl.libname=" + graphicsLib);
-        userArgs.add("-Dorg.lwjgl.opengles.libname=" + "/system/lib64/libGLESv3.so");
-        userArgs.add("-Dorg.lwjgl.egl.libname=" + "/system/lib64/libEGL.so");
-        userArgs.add("-Dfabric.addMods=" + Constants.MC_DIR + "/mods/" + versionName);
+        generatedArgs.add("-Dorg.lwjgl.opengl.libname=" + graphicsLib);
+        generatedArgs.add("-Dorg.lwjgl.opengles.libname=" + "/system/lib64/libGLESv3.so");
+        generatedArgs.add("-Dorg.lwjgl.egl.libname=" + "/system/lib64/libEGL.so");
+        generatedArgs.add("-Dfabric.addMods=" + Constants.MC_DIR + "/mods/" + versionName);
+
+        File modsDir = new File(Constants.MC_DIR + "/mods/" + versionName);
+        File[] mods = modsDir.listFiles((dir, name) -> name.endsWith(".jar"));
+        File runtime = new File(activity.getFilesDir(), "runtimes/jre-17");
+        List<String> profileArgs = profile.jvmArgs(LaunchProfile.getTotalMemoryMb(activity), mods == null ? 0 : mods.length,
+                LaunchProfile.hasShenandoah(runtime));
+        int classpathIndex = JVMArgs.indexOf("-cp") + 1;
+        String classpath = classpathIndex > 0 && classpathIndex < JVMArgs.size() ? JVMArgs.get(classpathIndex) : null;
+        List<String> cdsArgs = AppCds.jvmArgs(runtime, classpath, modsDir);
+        String envArgs = Os.getenv("JVM_ARGS");
+        List<String> userArgs = JavaArgs.merge(generatedArgs, profileArgs, cdsArgs,
+                envArgs == null ? null : parseJavaArguments(envArgs),
+                customArgs == null ? null : parseJavaArguments(customArgs));
+        Logger.getInstance().appendToLog("Launching with " + profile + " profile: " + userArgs);
 
         userArgs.addAll(JVMArgs);
         System.out.println(JVMArgs);
@@ -254,47 +235,10 @@ public class JREUtils {
     }
 
     /**
-     * Parse and separate java arguments in a user friendly fashion
-     * It supports multi line and absence of spaces between arguments
-     * The function also supports auto-removal of improper arguments, although it may miss some.
-     *
-     * @param args The un-parsed argument list.
-     * @return Parsed args as an ArrayList
+     * @see JavaArgs#parse(String)
      */
     public static ArrayList<String> parseJavaArguments(String args){
-        ArrayList<String> parsedArguments = new ArrayList<>(0);
-        args = args.trim().replace(" ", "");
-        //For each prefixes, we separate args.
-        for(String prefix : new String[]{"-XX:-","-XX:+", "-XX:","--","-"}){
-            while (true){
-                int start = args.indexOf(prefix);
-                if(start == -1) break;
-                //Get the end of the current argument
-                int end = args.indexOf("-", start + prefix.length());
-                if(end == -1) end = args.length();
-
-                //Extract it
-                String parsedSubString = args.substring(start, end);
-                args = args.replace(parsedSubString, "");
-
-                //Check if two args aren't bundled together by mistake
-                if(parsedSubString.indexOf('=') == parsedSubString.lastIndexOf('=')) {
-                    int arraySize = parsedArguments.size();
-                    if(arraySize > 0){
-                        String lastString = parsedArguments.get(arraySize - 1);
-                        // Looking for list elements
-                        if(lastString.charAt(lastString.length() - 1) == ',' ||
-                                parsedSubString.contains(",")){
-                            parsedArguments.set(arraySize - 1, lastString + parsedSubString);
-                            continue;
-                        }
-                    }
-                    parsedArguments.add(parsedSubString);
-                }
-                else Log.w("JAVA ARGS PARSER", "Removed improper arguments: " + parsedSubString);
-            }
-        }
-        return parsedArguments;
+        return JavaArgs.parse(args);
     }
 
     /**
@@ -310,7 +254,7 @@ public class JREUtils {
     public static native long getEGLDisplayPtr();
     public static native long getEGLConfigPtr();
     public static native int chdir(String path);
-    public static native void logToLogger(final Logger logger);
+    private static native boolean startLogChannel(LogChannel channel, ByteBuffer buffer);
     public static native boolean dlopen(String libPath);
     public static native void setLdLibraryPath(String ldLibraryPath);
 
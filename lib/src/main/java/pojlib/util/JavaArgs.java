@@ -0,0 +1,89 @@
+package pojlib.util;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Java argument handling that doesn't depend on the native launcher, so it can be used
+ * (and benchmarked) without loading {@link JREUtils}.
+ */
+public class JavaArgs {
+    private JavaArgs() {}
+
+    /**
+     * Parse and separate java arguments in a user friendly fashion
+     * It supports multi line and absence of spaces between arguments
+     * The function also supports auto-removal of improper arguments, although it may miss some.
+     *
+     * @param args The un-parsed argument list.
+     * @return Parsed args as an ArrayList
+     */
+    public static ArrayList<String> parse(String args){
+        ArrayList<String> parsedArguments = new ArrayList<>(0);
+        args = args.trim().replace(" ", "");
+        //For each prefixes, we separate args.
+        for(String prefix : new String[]{"-XX:-","-XX:+", "-XX:","--","-"}){
+            while (true){
+                int start = args.indexOf(prefix);
+                if(start == -1) break;
+                //Get the end of the current argument
+                int end = args.indexOf("-", start + prefix.length());
+                if(end == -1) end = args.length();
+
+                //Extract it
+                String parsedSubString = args.substring(start, end);
+                args = args.replace(parsedSubString, "");
+
+                //Check if two args aren't bundled together by mistake
+                if(parsedSubString.indexOf('=') == parsedSubString.lastIndexOf('=')) {
+                    int arraySize = parsedArguments.size();
+                    if(arraySize > 0){
+                        String lastString = parsedArguments.get(arraySize - 1);
+                        // Looking for list elements
+                        if(lastString.charAt(lastString.length() - 1) == ',' ||
+                                parsedSubString.contains(",")){
+                            parsedArguments.set(arraySize - 1, lastString + parsedSubString);
+                            continue;
+                        }
+                    }
+                    parsedArguments.add(parsedSubString);
+                }
+                else Log.w("JAVA ARGS PARSER", "Removed improper arguments: " + parsedSubString);
+            }
+        }
+        return parsedArguments;
+    }
+
+    /**
+     * Merges argument lists, an argument in a later list replaces the same option in an earlier one.
+     * For example -Xmx4G replaces -Xmx2048M, -XX:-AlwaysPreTouch replaces -XX:+AlwaysPreTouch
+     * and -Dfoo=b replaces -Dfoo=a. Selecting a garbage collector replaces any other selected collector.
+     *
+     * @param lists Argument lists, from lowest to highest priority
+     * @return The merged arguments, in the order they first appeared
+     */
+    @SafeVarargs
+    public static ArrayList<String> merge(List<String>... lists) {
+        Map<String, String> merged = new LinkedHashMap<>();
+        for (List<String> list : lists) {
+            if (list == null) continue;
+            for (String arg : list) merged.put(optionKey(arg), arg);
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    private static String optionKey(String arg) {
+        for (String sizeOption : new String[]{"-Xms", "-Xmx", "-Xss", "-Xmn"}) {
+            if (arg.startsWith(sizeOption)) return sizeOption;
+        }
+        if (arg.startsWith("-XX:+Use") && arg.endsWith("GC")) return "gc";
+        if (arg.startsWith("-XX:+") || arg.startsWith("-XX:-")) return "-XX:" + arg.substring(5);
+        int equals = arg.indexOf('=');
+        if ((arg.startsWith("-XX:") || arg.startsWith("-D")) && equals != -1) return arg.substring(0, equals);
+        return arg;
+    }
+}
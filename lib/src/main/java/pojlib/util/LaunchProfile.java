@@ -0,0 +1,160 @@
+package pojlib.util;
+
+import android.app.ActivityManager;
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JVM heap, garbage collector and JIT settings for launching the game, picked per instance.
+ * The heap is sized from the device's total memory and the number of installed mods, leaving enough for the
+ * system and the unity side of the app. Anything here can be overridden by custom arguments, see {@link JavaArgs#merge(List[])}.
+ */
+public enum LaunchProfile {
+    /** Smallest heap that still runs a light modpack, for when the headset is shared with other apps */
+    LOW_MEMORY(0.20, 1024, 2048, 256, 64,
+            "-XX:+UseG1GC", "-XX:MaxGCPauseMillis=100", "-XX:G1PeriodicGCInterval=15000", "-XX:CICompilerCount=2"),
+    /** About what was always used, short G1 pauses */
+    BALANCED(0.35, 1536, 3584, 384, 128,
+            "-XX:+UseG1GC", "-XX:MaxGCPauseMillis=50", "-XX:+ParallelRefProcEnabled", "-XX:G1ReservePercent=15"),
+    /** Biggest heap, concurrent collector to avoid frame drops, G1 on runtimes built without Shenandoah */
+    PERFORMANCE(0.45, 2048, 4608, 512, 240,
+            "-XX:+UseShenandoahGC", "-XX:+UseStringDeduplication");
+
+    // Left to the system, unity and the native renderer
+    private static final long RESERVED_MB = 2048;
+    private static final long MB_PER_MOD = 16;
+    private static final long MAX_MOD_MB = 512;
+    private static final String SHENANDOAH = "-XX:+UseShenandoahGC";
+    // libjvm path -> length and mtime it was scanned at, and whether it has Shenandoah
+    private static final Map<String, String> scanned = new ConcurrentHashMap<>();
+
+    private final double heapFraction;
+    private final long minHeapMb;
+    private final long maxHeapMb;
+    private final long metaspaceMb;
+    private final long codeCacheMb;
+    private final List<String> flags;
+
+    LaunchProfile(double heapFraction, long minHeapMb, long maxHeapMb, long metaspaceMb, long codeCacheMb, String... flags) {
+        this.heapFraction = heapFraction;
+        this.minHeapMb = minHeapMb;
+        this.maxHeapMb = maxHeapMb;
+        this.metaspaceMb = metaspaceMb;
+        this.codeCacheMb = codeCacheMb;
+        this.flags = Arrays.asList(flags);
+    }
+
+    /**
+     * @param name A profile name as stored in an instance, may be null
+     * @return The matching profile, or {@link #BALANCED} if there is none
+     */
+    public static LaunchProfile fromName(String name) {
+        if (name != null) {
+            for (LaunchProfile profile : values()) {
+                if (profile.name().equalsIgnoreCase(name)) return profile;
+            }
+        }
+        return BALANCED;
+    }
+
+    /**
+     * @param totalMemMb Total memory of the device
+     * @param modCount Number of mods that will be loaded
+     * @return The max heap size in MB
+     */
+    public long heapMb(long totalMemMb, int modCount) {
+        long heap = (long) (totalMemMb * heapFraction) + Math.min(MAX_MOD_MB, modCount * MB_PER_MOD);
+        heap = Math.max(minHeapMb, Math.min(maxHeapMb, heap));
+        // Never squeeze the rest of the device below the reserve, unless even the minimum doesn't fit
+        return Math.max(Math.min(minHeapMb, 1024), Math.min(heap, totalMemMb - RESERVED_MB));
+    }
+
+    /**
+     * @param totalMemMb Total memory of the device
+     * @param modCount Number of mods that will be loaded
+     * @param shenandoah If the runtime has the Shenandoah collector, see {@link #hasShenandoah(File)}
+     * @return The jvm arguments of this profile
+     */
+    public List<String> jvmArgs(long totalMemMb, int modCount, boolean shenandoah) {
+        long heap = heapMb(totalMemMb, modCount);
+        // Committing all of a multi-GB heap at start would take it from the rest of the device for nothing
+        long initialHeap = Math.min(heap, Math.max(512, heap / 2));
+
+        List<String> args = new ArrayList<>();
+        args.add("-Xms" + initialHeap + "M");
+        args.add("-Xmx" + heap + "M");
+        args.add("-XX:MaxMetaspaceSize=" + metaspaceMb + "M");
+        args.add("-XX:ReservedCodeCacheSize=" + codeCacheMb + "M");
+        for (String flag : flags) {
+            // Unrecognized gc flags make the jvm refuse to start
+            args.add(flag.equals(SHENANDOAH) && !shenandoah ? "-XX:+UseG1GC" : flag);
+        }
+        return args;
+    }
+
+    /**
+     * Looks for the Shenandoah flags in the runtime's libjvm, builds without the collector don't have them.
+     * Scanned again only when libjvm changed.
+     * @param runtimeDir Home of the java runtime
+     * @return True if the runtime has the Shenandoah collector
+     */
+    public static boolean hasShenandoah(File runtimeDir) {
+        File libjvm = new File(runtimeDir, "lib/server/libjvm.so");
+        if (!libjvm.isFile()) libjvm = new File(runtimeDir, "lib/client/libjvm.so");
+        if (!libjvm.isFile()) return false;
+
+        String version = libjvm.length() + ":" + libjvm.lastModified() + ":";
+        String cached = scanned.get(libjvm.getPath());
+        if (cached != null && cached.startsWith(version)) return cached.endsWith("true");
+
+        boolean found;
+        try {
+            found = contains(libjvm, "UseShenandoahGC".getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            Logger.getInstance().appendToLog("Failed to read " + libjvm + ": " + e);
+            return false;
+        }
+        scanned.put(libjvm.getPath(), version + found);
+        return found;
+    }
+
+    private static boolean contains(File file, byte[] needle) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        // The end of the last read is kept at the start, for matches across reads
+        int kept = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer, kept, buffer.length - kept)) != -1) {
+                int end = kept + read;
+                for (int i = 0; i + needle.length <= end; i++) {
+                    int j = 0;
+                    while (j < needle.length && buffer[i + j] == needle[j]) j++;
+                    if (j == needle.length) return true;
+                }
+                kept = Math.min(end, needle.length - 1);
+                System.arraycopy(buffer, end - kept, buffer, 0, kept);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Total memory of the device in MB
+     */
+    public static long getTotalMemoryMb(Context ctx) {
+        ActivityManager activityManager = (ActivityManager) ctx.getSystemService(Context.ACTIVITY_SERVICE);
+        ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+        activityManager.getMemoryInfo(memoryInfo);
+        return memoryInfo.totalMem / (1024 * 1024);
+    }
+}
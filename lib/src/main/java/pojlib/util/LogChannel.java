@@ -0,0 +1,105 @@
+package pojlib.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Receives everything the process writes to stdout and stderr and hands it to the {@link Logger} line by line.
+ * <p>
+ * Native code redirects both into pipes and reads them on one thread in large chunks, straight into a shared direct
+ * buffer, then calls {@link #onNativeData(int, int)}. Lines are cut out of the chunk by index and each becomes one
+ * String, tagged with where it came from. A line split across two reads is carried over to the next one.
+ */
+public class LogChannel {
+
+    public static final int SOURCE_STDOUT = 0;
+    public static final int SOURCE_STDERR = 1;
+    static final int CHUNK_SIZE = 64 * 1024;
+    // A "line" longer than this is logged in parts
+    static final int MAX_LINE = 16 * 1024;
+    private static final String[] TAGS = {"[out] ", "[err] "};
+
+    private final Logger logger;
+    private final ByteBuffer nativeBuffer;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private final byte[][] carry = new byte[TAGS.length][];
+    private final int[] carryLength = new int[TAGS.length];
+
+    public LogChannel(Logger logger) {
+        this.logger = logger;
+        this.nativeBuffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+    }
+
+    /**
+     * @return The buffer native code reads into, owned by the native logging thread
+     */
+    public ByteBuffer getNativeBuffer() {
+        return nativeBuffer;
+    }
+
+    /**
+     * Called by the native logging thread after reading into {@link #getNativeBuffer()}
+     */
+    @SuppressWarnings("unused")
+    private void onNativeData(int source, int length) {
+        nativeBuffer.clear();
+        nativeBuffer.get(chunk, 0, length);
+        accept(source, chunk, length);
+    }
+
+    /**
+     * Logs every complete line in the data and keeps the incomplete rest for the next call
+     *
+     * @param source {@link #SOURCE_STDOUT} or {@link #SOURCE_STDERR}
+     */
+    void accept(int source, byte[] data, int length) {
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (data[i] != '\n') continue;
+            if (carryLength[source] > 0) {
+                append(source, data, start, i - start);
+                emit(source, carry[source], 0, carryLength[source]);
+                carryLength[source] = 0;
+            } else {
+                emit(source, data, start, i - start);
+            }
+            start = i + 1;
+        }
+        if (start < length) {
+            append(source, data, start, length - start);
+            if (carryLength[source] >= MAX_LINE) {
+                emit(source, carry[source], 0, carryLength[source]);
+                carryLength[source] = 0;
+            }
+        }
+    }
+
+    /**
+     * Logs what is left of an unterminated last line, for when the pipe closes
+     */
+    void finish() {
+        for (int source = 0; source < TAGS.length; source++) {
+            if (carryLength[source] == 0) continue;
+            emit(source, carry[source], 0, carryLength[source]);
+            carryLength[source] = 0;
+        }
+    }
+
+    private void append(int source, byte[] data, int offset, int length) {
+        byte[] buffer = carry[source];
+        int needed = carryLength[source] + length;
+        if (buffer == null) {
+            buffer = carry[source] = new byte[Math.max(256, needed)];
+        } else if (buffer.length < needed) {
+            buffer = carry[source] = Arrays.copyOf(buffer, Math.max(buffer.length * 2, needed));
+        }
+        System.arraycopy(data, offset, buffer, carryLength[source], length);
+        carryLength[source] = needed;
+    }
+
+    private void emit(int source, byte[] data, int offset, int length) {
+        if (length > 0 && data[offset + length - 1] == '\r') length--;
+        logger.appendToLog(TAGS[source] + new String(data, offset, length, StandardCharsets.UTF_8));
+    }
+}
@@ -2,37 +2,74 @@ package pojlib.util;
 
 import androidx.annotation.Keep;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 /** Singleton class made to log on one file
  * The singleton part can be removed but will require more implementation from the end-dev
+ * <p>
+ * Logging never touches the file on the calling thread. Lines go into a lock-free ring buffer and a single writer
+ * thread writes them out in batches. If the writer falls behind and the buffer is full, a caller waits at most
+ * {@link #MAX_WAIT_NANOS} for space and then drops the line, the number of dropped lines is written to the log later.
+ * The log is rotated to latestlog.1.txt (and .2) once it grows past {@link #MAX_FILE_BYTES}.
  */
 @Keep
 public class Logger {
-    private static Logger sLoggerSingleton = null;
+    private static volatile Logger sLoggerSingleton = null;
+
+    static final int DEFAULT_CAPACITY = 16384;
+    static final long MAX_FILE_BYTES = 8 * 1024 * 1024;
+    static final int ROTATED_FILES = 2;
+    static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
 
     /* Instance variables */
     private final File mLogFile;
-    private PrintStream mLogStream;
-    private WeakReference<eventLogListener> mLogListenerWeakReference = null;
+    private final long mMaxFileBytes;
+    private Writer mLogWriter;
+    private long mFileBytes;
+    private volatile WeakReference<eventLogListener> mLogListenerWeakReference = null;
+
+    /* Ring buffer, many producers and the writer thread as the only consumer */
+    private final AtomicReferenceArray<Object> mSlots;
+    private final int mMask;
+    private final AtomicLong mTail = new AtomicLong();
+    private volatile long mHead;
+    // Everything before this is in the file
+    private volatile long mFlushed;
+    private final AtomicLong mDropped = new AtomicLong();
+    private final Thread mWriterThread;
+    private volatile boolean mResetRequested;
+    private volatile boolean mShutdown;
 
     /* No public construction */
     private Logger(){
-        this("latestlog.txt");
+        this(new File(Constants.USER_HOME, "latestlog.txt"), DEFAULT_CAPACITY, MAX_FILE_BYTES);
     }
 
-    private Logger(String fileName){
-        mLogFile = new File(Constants.USER_HOME, fileName);
+    Logger(File logFile, int capacity, long maxFileBytes){
+        mLogFile = logFile;
+        mMaxFileBytes = maxFileBytes;
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mSlots = new AtomicReferenceArray<>(size);
+        mMask = size - 1;
         // Make a new instance of the log file
-        mLogFile.delete();
-        try {
-            mLogFile.createNewFile();
-            mLogStream = new PrintStream(mLogFile.getAbsolutePath());
-        }catch (IOException e){e.printStackTrace();}
+        openLogFile();
 
+        mWriterThread = new Thread(this::writeLoop, "Logger");
+        mWriterThread.setDaemon(true);
+        mWriterThread.setPriority(Thread.MIN_PRIORITY);
+        mWriterThread.start();
     }
 
     public static Logger getInstance(){
@@ -49,28 +86,190 @@ public class Logger {
 
     /** Print the text to the log file if not censored */
     public void appendToLog(String text){
-        if(shouldCensorLog(text)) return;
-        appendToLogUnchecked(text);
+        // Checked on the writer thread, a null slot would mean not filled yet
+        enqueue(String.valueOf(text));
     }
 
     /** Print the text to the log file, no china censoring there */
     public void appendToLogUnchecked(String text){
-        mLogStream.println(text);
-        notifyLogListener(text);
+        enqueue(new Unchecked(String.valueOf(text)));
     }
 
     /** Reset the log file, effectively erasing any previous logs */
     public void reset(){
-        try{
-            mLogFile.delete();
-            mLogFile.createNewFile();
-            mLogStream = new PrintStream(mLogFile.getAbsolutePath());
-        }catch (IOException e){ e.printStackTrace();}
+        // What was logged before the reset must not end up in the new file
+        flush();
+        mResetRequested = true;
+        flush();
     }
 
-    /** Disables the printing */
+    /** Disables the printing, what was logged before is still written */
     public void shutdown(){
-        mLogStream.close();
+        flush();
+        mShutdown = true;
+        LockSupport.unpark(mWriterThread);
+        try {
+            mWriterThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until everything logged before this call is in the file, for at most a second
+     */
+    public void flush(){
+        long target = mTail.get();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while ((mFlushed < target || mResetRequested) && mWriterThread.isAlive() && System.nanoTime() < deadline) {
+            LockSupport.unpark(mWriterThread);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+        }
+    }
+
+    /** @return Number of lines that were dropped because the writer couldn't keep up */
+    public long getDroppedCount(){
+        return mDropped.get();
+    }
+
+    private void enqueue(Object line){
+        if (mShutdown) return;
+        long waitStart = 0;
+        while (true) {
+            long tail = mTail.get();
+            if (tail - mHead >= mSlots.length()) {
+                // Full, give the writer a moment and drop the line if that doesn't help
+                LockSupport.unpark(mWriterThread);
+                if (waitStart == 0) waitStart = System.nanoTime();
+                else if (System.nanoTime() - waitStart > MAX_WAIT_NANOS) {
+                    mDropped.incrementAndGet();
+                    return;
+                }
+                Thread.yield();
+                continue;
+            }
+            if (mTail.compareAndSet(tail, tail + 1)) {
+                mSlots.set((int) (tail & mMask), line);
+                // Wake the writer early if the buffer is filling up
+                if (tail - mHead == mSlots.length() / 2) LockSupport.unpark(mWriterThread);
+                return;
+            }
+        }
+    }
+
+    private void writeLoop(){
+        long reportedDrops = 0;
+        while (true) {
+            if (mResetRequested) {
+                closeLogFile();
+                mLogFile.delete();
+                openLogFile();
+                mResetRequested = false;
+            }
+
+            boolean wroteAnything = false;
+            long head = mHead;
+            Object line;
+            // A claimed slot may not be filled yet, it is picked up on the next round
+            while ((line = mSlots.get((int) (head & mMask))) != null) {
+                mSlots.set((int) (head & mMask), null);
+                head++;
+                mHead = head;
+                try {
+                    write(line);
+                } catch (RuntimeException e) {
+                    // One bad line must not take the writer down with it
+                    e.printStackTrace();
+                }
+                wroteAnything = true;
+            }
+
+            long dropped = mDropped.get();
+            if (dropped != reportedDrops) {
+                writeLine("[Logger] " + (dropped - reportedDrops) + " lines dropped, logging too fast");
+                reportedDrops = dropped;
+                wroteAnything = true;
+            }
+
+            if (wroteAnything) {
+                try {
+                    if (mLogWriter != null) mLogWriter.flush();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                mFlushed = head;
+            } else if (mShutdown) {
+                closeLogFile();
+                return;
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private void write(Object line){
+        String text;
+        if (line instanceof Unchecked) {
+            text = ((Unchecked) line).text;
+        } else {
+            text = (String) line;
+            if (shouldCensorLog(text)) return;
+        }
+        writeLine(text);
+        try {
+            notifyLogListener(text);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeLine(String text){
+        if (mLogWriter == null) return;
+        try {
+            mLogWriter.write(text);
+            mLogWriter.write('\n');
+            // Close enough, most lines are ascii
+            mFileBytes += text.length() + 1;
+            if (mFileBytes > mMaxFileBytes) rotate();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void rotate(){
+        closeLogFile();
+        String name = mLogFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot == -1 ? name : name.substring(0, dot);
+        String extension = dot == -1 ? "" : name.substring(dot);
+        for (int i = ROTATED_FILES; i > 0; i--) {
+            File from = i == 1 ? mLogFile : new File(mLogFile.getParentFile(), base + "." + (i - 1) + extension);
+            File to = new File(mLogFile.getParentFile(), base + "." + i + extension);
+            to.delete();
+            from.renameTo(to);
+        }
+        openLogFile();
+    }
+
+    private void openLogFile(){
+        mLogFile.delete();
+        try {
+            mLogWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mLogFile), StandardCharsets.UTF_8), 64 * 1024);
+        } catch (IOException e) {
+            e.printStackTrace();
+            mLogWriter = null;
+        }
+        mFileBytes = 0;
+    }
+
+    private void closeLogFile(){
+        if (mLogWriter == null) return;
+        try {
+            mLogWriter.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        mLogWriter = null;
     }
 
     /**
@@ -83,20 +282,29 @@ public class Logger {
         return text.contains("Session ID is");
     }
 
+    private static class Unchecked {
+        final String text;
+
+        Unchecked(String text) {
+            this.text = text;
+        }
+    }
+
     /** Small listener for anything listening to the log */
     public interface eventLogListener {
         void onEventLogged(String text);
     }
 
-    /** Link a log listener to the logger */
+    /** Link a log listener to the logger, it is called from the logger's own thread */
     public void setLogListener(eventLogListener logListener){
         this.mLogListenerWeakReference = new WeakReference<>(logListener);
     }
 
     /** Notifies the event listener, if it exists */
     private void notifyLogListener(String text){
-        if(mLogListenerWeakReference == null) return;
-        eventLogListener logListener = mLogListenerWeakReference.get();
+        WeakReference<eventLogListener> reference = mLogListenerWeakReference;
+        if(reference == null) return;
+        eventLogListener logListener = reference.get();
         if(logListener == null){
             mLogListenerWeakReference = null;
             return;
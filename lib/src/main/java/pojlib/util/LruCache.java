@@ -0,0 +1,55 @@
+package pojlib.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small thread safe, size bounded cache that evicts the least recently used entry and expires entries after a fixed time.
+ */
+public class LruCache<K, V> {
+
+    private final long ttlMs;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private static class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public LruCache(int maxEntries, long ttlMs) {
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) return null;
+        if (System.currentTimeMillis() >= entry.expiresAt) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMs));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,314 @@
+package pojlib.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Sends requests for the hosts in {@link Constants} to the fastest healthy mirror of that host.
+ * <p>
+ * Every origin has its own url from {@link Constants} and any number of mirrors in front of it, read from
+ * mirrors.json in {@link Constants#USER_HOME} or set with {@link #setMirrors(Origin, List)}:
+ * <pre>{"MOJANG_RESOURCES": ["http://192.168.1.20:8080/assets"]}</pre>
+ * A mirror has to serve the same paths as its origin. Latency and errors of every mirror are tracked as moving
+ * averages, mirrors that mostly fail go to the back until a cool down has passed, the rest are tried fastest first.
+ * Urls of other hosts are left alone.
+ */
+public class Mirrors {
+
+    public enum Origin {
+        MOJANG_META(() -> Constants.MOJANG_META_URL),
+        MOJANG_DATA(() -> Constants.MOJANG_DATA_URL),
+        MOJANG_RESOURCES(() -> Constants.MOJANG_RESOURCES_URL),
+        MOJANG_LIBRARIES(() -> Constants.MOJANG_LIBRARIES_URL),
+        FABRIC_META(() -> Constants.FABRIC_META_URL),
+        FABRIC_MAVEN(() -> Constants.FABRIC_MAVEN_URL),
+        QUILT_META(() -> Constants.QUILT_META_URL),
+        QUILT_MAVEN(() -> Constants.QUILT_MAVEN_URL),
+        MODRINTH_API(() -> Constants.MODRINTH_API_URL),
+        CURSEFORGE_API(() -> Constants.CURSEFORGE_API_URL);
+
+        private final Supplier<String> url;
+
+        Origin(Supplier<String> url) {
+            this.url = url;
+        }
+
+        public String url() {
+            return trimSlash(url.get());
+        }
+    }
+
+    // Weight of the newest sample in the moving averages
+    private static final double ALPHA = 0.3;
+    private static final double UNHEALTHY_ERROR_RATE = 0.5;
+    private static final long COOL_DOWN_MS = 30_000;
+    private static final long MIN_HEDGE_DELAY_MS = 50;
+    private static final long UNKNOWN_HEDGE_DELAY_MS = 500;
+
+    private static final Map<Origin, List<String>> mirrors = new EnumMap<>(Origin.class);
+    private static final Map<String, Health> health = new ConcurrentHashMap<>();
+    private static boolean loaded;
+
+    private static final ExecutorService hedgePool = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "Mirrors");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Latency and error rate of one mirror
+     */
+    static class Health {
+        double latencyMs = -1;
+        double errorRate;
+        long unhealthySince;
+
+        synchronized void record(boolean ok, long latencyMs) {
+            errorRate = errorRate * (1 - ALPHA) + (ok ? 0 : ALPHA);
+            if (ok) this.latencyMs = this.latencyMs < 0 ? latencyMs : this.latencyMs * (1 - ALPHA) + latencyMs * ALPHA;
+            if (errorRate >= UNHEALTHY_ERROR_RATE) {
+                if (unhealthySince == 0) unhealthySince = System.currentTimeMillis();
+            } else {
+                unhealthySince = 0;
+            }
+        }
+
+        synchronized boolean isHealthy() {
+            // Given another chance once it cooled down, a success brings it back
+            return unhealthySince == 0 || System.currentTimeMillis() - unhealthySince > COOL_DOWN_MS;
+        }
+
+        synchronized double getLatencyMs() {
+            return latencyMs;
+        }
+    }
+
+    /**
+     * Replaces the mirrors of an origin, tried in this order while nothing is known about them
+     */
+    public static synchronized void setMirrors(Origin origin, List<String> urls) {
+        load();
+        List<String> trimmed = new ArrayList<>();
+        for (String url : urls) trimmed.add(trimSlash(url));
+        mirrors.put(origin, trimmed);
+    }
+
+    /**
+     * Forgets all mirrors and their health, mirrors.json is read again on the next request
+     */
+    public static synchronized void reset() {
+        mirrors.clear();
+        health.clear();
+        loaded = false;
+    }
+
+    /**
+     * @return Every url the resource can be fetched from, best first. Just the url itself if it isn't from a known origin.
+     */
+    public static List<String> route(String url) {
+        List<String> routes = new ArrayList<>();
+        Origin origin = originOf(url);
+        if (origin == null) {
+            routes.add(url);
+            return routes;
+        }
+
+        String path = url.substring(origin.url().length());
+        List<String> bases;
+        synchronized (Mirrors.class) {
+            load();
+            bases = new ArrayList<>(mirrors.getOrDefault(origin, new ArrayList<>()));
+        }
+        bases.add(origin.url());
+        // Stable, so the configured order decides between mirrors nothing is known about yet
+        bases.sort(Comparator.comparing((String base) -> !health(base).isHealthy())
+                .thenComparingDouble(base -> Math.max(0, health(base).getLatencyMs())));
+        for (String base : bases) routes.add(base + path);
+        return routes;
+    }
+
+    /**
+     * @return The base url of the best mirror of an origin
+     */
+    public static String best(Origin origin) {
+        return route(origin.url()).get(0);
+    }
+
+    /**
+     * Reports how a request to a url went, for picking mirrors later
+     */
+    public static void record(String url, boolean ok, long latencyMs) {
+        String base = baseOf(url);
+        if (base != null) health(base).record(ok, latencyMs);
+    }
+
+    public interface Fetch<T> {
+        T fetch(String url) throws IOException;
+    }
+
+    /**
+     * Tries the mirrors of a url in order until one works
+     * @throws IOException The last mirror's failure
+     */
+    public static <T> T fetch(String url, Fetch<T> fetch) throws IOException {
+        IOException last = null;
+        for (String route : route(url)) {
+            long start = System.nanoTime();
+            try {
+                T result = fetch.fetch(route);
+                record(route, true, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return result;
+            } catch (IOException e) {
+                // Even a 404 moves on, a LAN cache doesn't have to have everything, but that isn't the mirror failing
+                if (!isMissing(e)) record(route, false, 0);
+                last = e;
+            }
+        }
+        throw last;
+    }
+
+    /**
+     * Like {@link #fetch(String, Fetch)}, but when the best mirror is slower than usual to answer the next one is
+     * asked too, and whichever answers first wins. Only for small requests, the slower one isn't stopped.
+     */
+    public static <T> T fetchHedged(String url, Fetch<T> fetch) throws IOException {
+        List<String> routes = route(url);
+        if (routes.size() == 1) return fetch(url, fetch);
+
+        ExecutorCompletionService<T> completion = new ExecutorCompletionService<>(hedgePool);
+        List<Future<T>> started = new ArrayList<>();
+        int next = 0;
+        int running = 0;
+        IOException last = null;
+        try {
+            started.add(completion.submit(timed(routes.get(next++), fetch)));
+            running++;
+            while (running > 0) {
+                Future<T> done = next < routes.size()
+                        ? completion.poll(hedgeDelay(routes.get(next - 1)), TimeUnit.MILLISECONDS)
+                        : completion.take();
+                if (done == null) {
+                    // Slower than usual, ask the next mirror as well
+                    started.add(completion.submit(timed(routes.get(next++), fetch)));
+                    running++;
+                    continue;
+                }
+                running--;
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    last = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                    if (running == 0 && next < routes.size()) {
+                        started.add(completion.submit(timed(routes.get(next++), fetch)));
+                        running++;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + url);
+        } finally {
+            for (Future<T> future : started) future.cancel(true);
+        }
+        throw last;
+    }
+
+    private static <T> Callable<T> timed(String route, Fetch<T> fetch) {
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                T result = fetch.fetch(route);
+                record(route, true, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return result;
+            } catch (IOException e) {
+                // Cut off because another mirror won, that says nothing about this one
+                if (!Thread.currentThread().isInterrupted() && !isMissing(e)) record(route, false, 0);
+                throw e;
+            }
+        };
+    }
+
+    private static boolean isMissing(IOException e) {
+        return e instanceof HttpStatusException && ((HttpStatusException) e).status == 404;
+    }
+
+    private static long hedgeDelay(String route) {
+        String base = baseOf(route);
+        double latency = base == null ? -1 : health(base).getLatencyMs();
+        // Twice the usual latency is a tail worth cutting off
+        return latency < 0 ? UNKNOWN_HEDGE_DELAY_MS : Math.max(MIN_HEDGE_DELAY_MS, (long) (latency * 2));
+    }
+
+    private static Health health(String base) {
+        return health.computeIfAbsent(base, b -> new Health());
+    }
+
+    private static Origin originOf(String url) {
+        for (Origin origin : Origin.values()) {
+            String base = origin.url();
+            if (!base.isEmpty() && url.startsWith(base) && (url.length() == base.length() || url.charAt(base.length()) == '/')) return origin;
+        }
+        return null;
+    }
+
+    /**
+     * @return The origin or mirror base a url belongs to
+     */
+    private static String baseOf(String url) {
+        Origin origin = originOf(url);
+        if (origin != null) return origin.url();
+        synchronized (Mirrors.class) {
+            for (List<String> bases : mirrors.values()) {
+                for (String base : bases) {
+                    if (url.startsWith(base)) return base;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void load() {
+        if (loaded) return;
+        loaded = true;
+        File config = new File(Constants.USER_HOME, "mirrors.json");
+        if (!config.exists()) return;
+        JsonObject json = GsonUtils.jsonFileToObject(config.getAbsolutePath(), JsonObject.class);
+        if (json == null) return;
+        for (Map.Entry<String, JsonElement> entry : json.entrySet()) {
+            Origin origin;
+            try {
+                origin = Origin.valueOf(entry.getKey());
+            } catch (IllegalArgumentException e) {
+                Logger.getInstance().appendToLog("mirrors.json: unknown origin " + entry.getKey());
+                continue;
+            }
+            List<String> urls = new ArrayList<>();
+            JsonArray array = entry.getValue().getAsJsonArray();
+            for (JsonElement url : array) urls.add(trimSlash(url.getAsString()));
+            mirrors.put(origin, urls);
+        }
+    }
+
+    private static String trimSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
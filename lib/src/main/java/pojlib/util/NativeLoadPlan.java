@@ -0,0 +1,116 @@
+package pojlib.util;
+
+import com.google.gson.annotations.SerializedName;
+
+import pojlib.install.RuntimeInstaller;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The native libraries of the java runtime to dlopen before starting the jvm, in order.
+ * Working it out means walking the whole runtime and searching LD_LIBRARY_PATH, so the result is kept on disk
+ * and only worked out again when the runtime or the app's native library dir changes.
+ */
+public class NativeLoadPlan {
+
+    // Loaded first and in this order, the rest of the runtime depends on them
+    private static final String[] CORE_LIBS = {"libjli.so", "libjvm.so", "libverify.so", "libjava.so", "libnet.so", "libnio.so"};
+    // Only needed once something touches awt or fonts, the jvm loads them itself from java.home then
+    static final Set<String> DEFERRED_LIBS = new HashSet<>(Arrays.asList(
+            "libawt.so", "libawt_headless.so", "libawt_xawt.so", "libfreetype.so", "libfontmanager.so",
+            "libjawt.so", "libsplashscreen.so", "liblcms.so", "libmlib_image.so", "libjavajpeg.so"));
+
+    @SerializedName("key")
+    String key;
+    @SerializedName("libs")
+    List<String> libs = new ArrayList<>();
+
+    /**
+     * @param runtimeDir The java runtime
+     * @param jvmLibraryPath Directory of the libjvm.so to use
+     * @param nativeLibDir The app's native library dir
+     * @param resolver Finds a library by name on LD_LIBRARY_PATH, returns the name as is if it can't
+     * @return Absolute paths of the libraries to load, in order
+     */
+    public static List<String> get(String runtimeDir, String jvmLibraryPath, String nativeLibDir, Function<String, String> resolver) {
+        String planFile = Constants.USER_HOME + "/native-load-plan.json";
+        String key = key(runtimeDir, jvmLibraryPath, nativeLibDir);
+
+        NativeLoadPlan plan = null;
+        try {
+            plan = GsonUtils.jsonFileToObject(planFile, NativeLoadPlan.class);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        if (plan != null && key.equals(plan.key) && plan.libs != null && allExist(plan.libs)) return plan.libs;
+
+        plan = new NativeLoadPlan();
+        plan.key = key;
+        plan.libs = build(new File(runtimeDir, "lib"), jvmLibraryPath, nativeLibDir, resolver);
+        GsonUtils.objectToJsonFile(planFile, plan);
+        return plan.libs;
+    }
+
+    /**
+     * Drops the stored plan, for when loading from it failed
+     */
+    public static void invalidate() {
+        new File(Constants.USER_HOME + "/native-load-plan.json").delete();
+    }
+
+    static List<String> build(File runtimeLibDir, String jvmLibraryPath, String nativeLibDir, Function<String, String> resolver) {
+        Set<String> libs = new LinkedHashSet<>();
+        for (String name : CORE_LIBS) {
+            String path = name.equals("libjvm.so") ? jvmLibraryPath + "/libjvm.so" : resolver.apply(name);
+            if (new File(path).isFile()) libs.add(new File(path).getAbsolutePath());
+        }
+
+        List<File> found = locateLibs(runtimeLibDir);
+        found.sort(null);
+        Set<String> loadedNames = new HashSet<>(Arrays.asList(CORE_LIBS));
+        for (File lib : found) {
+            String name = lib.getName();
+            if (DEFERRED_LIBS.contains(name) || loadedNames.contains(name)) continue;
+            libs.add(lib.getAbsolutePath());
+        }
+
+        File openal = new File(nativeLibDir, "libopenal.so");
+        if (openal.isFile()) libs.add(openal.getAbsolutePath());
+        return new ArrayList<>(libs);
+    }
+
+    static ArrayList<File> locateLibs(File path) {
+        ArrayList<File> returnValue = new ArrayList<>();
+        File[] list = path.listFiles();
+        if(list != null) {
+            for(File f : list) {
+                if(f.isFile() && f.getName().endsWith(".so")) {
+                    returnValue.add(f);
+                }else if(f.isDirectory()) {
+                    returnValue.addAll(locateLibs(f));
+                }
+            }
+        }
+        return returnValue;
+    }
+
+    private static String key(String runtimeDir, String jvmLibraryPath, String nativeLibDir) {
+        // Rewritten by RuntimeInstaller whenever any runtime file changes
+        File manifest = new File(runtimeDir, RuntimeInstaller.INSTALLED_MANIFEST);
+        return manifest.lastModified() + ":" + manifest.length() + ":" + jvmLibraryPath + ":" + nativeLibDir;
+    }
+
+    private static boolean allExist(List<String> libs) {
+        for (String lib : libs) {
+            if (!new File(lib).isFile()) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,244 @@
+package pojlib.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Fetches many small files from one host over a single keep-alive connection, with several requests in flight.
+ * <p>
+ * {@link java.net.HttpURLConnection} waits for every response before sending the next request, which makes a few KB
+ * object cost a whole round trip. Here requests are written up to {@link #depth} ahead of the responses, HTTP/1.1
+ * answers them in order. If the server closes the connection, the unanswered requests are sent again on a new one.
+ * A response that was read counts as the answer to its request, whatever the handler does with it, so no path is
+ * sent again once it was answered. {@link #close()} can be called from another thread to stop a fetch. Bodies are read
+ * into memory, so this is only meant for small files.
+ */
+public class PipelinedFetcher implements Closeable {
+
+    public static final int DEFAULT_DEPTH = 16;
+    // Anything bigger than this has no business going through here
+    private static final int MAX_BODY = 4 * 1024 * 1024;
+    // Connections in a row that dropped before answering anything
+    private static final int MAX_STALLS = 3;
+    private static final int TIMEOUT_MS = 10000;
+
+    public interface Handler {
+        /**
+         * Called in request order, body is null unless the status is 200
+         */
+        void onResponse(String path, int status, byte[] body) throws IOException;
+    }
+
+    private static class Response {
+        final int status;
+        final byte[] body;
+        // The server closes the connection after it
+        final boolean closing;
+
+        Response(int status, byte[] body, boolean closing) {
+            this.status = status;
+            this.body = body;
+            this.closing = closing;
+        }
+    }
+
+    private final String host;
+    private final int port;
+    private final boolean https;
+    private final int depth;
+    private volatile Socket socket;
+    private volatile boolean closed;
+    private InputStream in;
+    private OutputStream out;
+
+    /**
+     * @param base Scheme, host and port to connect to, its path is ignored
+     */
+    public PipelinedFetcher(URL base, int depth) {
+        this.host = base.getHost();
+        this.https = base.getProtocol().equals("https");
+        this.port = base.getPort() != -1 ? base.getPort() : base.getDefaultPort();
+        this.depth = depth;
+    }
+
+    /**
+     * @param paths Absolute paths on the host, including any base path
+     */
+    public void fetch(List<String> paths, Handler handler) throws IOException {
+        int answered = 0;
+        int stalls = 0;
+        while (answered < paths.size()) {
+            if (closed) throw new IOException("Fetching from " + host + " was stopped");
+            if (socket == null) connect();
+            int sent = answered;
+            int answeredBefore = answered;
+            boolean writable = true;
+            boolean closing = false;
+            try {
+                while (answered < paths.size() && !closing) {
+                    if (writable) {
+                        try {
+                            // Keep the pipe full, the requests are tiny so writing never blocks for long
+                            while (sent < paths.size() && sent - answered < depth) {
+                                writeRequest(paths.get(sent));
+                                sent++;
+                            }
+                            out.flush();
+                        } catch (SocketException e) {
+                            // The server closed its end, what it answered before that can still be read
+                            writable = false;
+                        }
+                    }
+                    if (answered == sent) throw new EOFException("Connection to " + host + " closed");
+                    Response response = readResponse();
+                    if (closed) break;
+                    closing = response.closing;
+                    handler.onResponse(paths.get(answered++), response.status, response.status == 200 ? response.body : null);
+                }
+            } catch (EOFException | SocketException e) {
+                // The server hung up on pipelined requests, send the rest again as long as connections get anywhere
+                stalls = answered > answeredBefore ? 0 : stalls + 1;
+                if (stalls > MAX_STALLS) throw e;
+                closing = true;
+            }
+            if (closing || closed) disconnect();
+        }
+    }
+
+    private void connect() throws IOException {
+        Socket plain = new Socket();
+        plain.connect(new InetSocketAddress(host, port), TIMEOUT_MS);
+        plain.setSoTimeout(TIMEOUT_MS);
+        plain.setTcpNoDelay(true);
+        if (https) {
+            SSLSocket ssl = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(plain, host, port, true);
+            SSLParameters params = ssl.getSSLParameters();
+            params.setEndpointIdentificationAlgorithm("HTTPS");
+            ssl.setSSLParameters(params);
+            ssl.startHandshake();
+            socket = ssl;
+        } else {
+            socket = plain;
+        }
+        in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+        out = socket.getOutputStream();
+    }
+
+    private void writeRequest(String path) throws IOException {
+        String request = "GET " + path + " HTTP/1.1\r\nHost: " + host + (port == (https ? 443 : 80) ? "" : ":" + port)
+                + "\r\nUser-Agent: pojlib\r\nAccept-Encoding: identity\r\n\r\n";
+        out.write(request.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private Response readResponse() throws IOException {
+        String statusLine;
+        int status;
+        // Skip 100 Continue and friends
+        do {
+            statusLine = readLine();
+            String[] parts = statusLine.split(" ", 3);
+            if (parts.length < 2 || !parts[0].startsWith("HTTP/")) throw new IOException("Bad status line from " + host + ": " + statusLine);
+            status = Integer.parseInt(parts[1]);
+            if (status < 200) while (!readLine().isEmpty());
+        } while (status < 200);
+
+        long length = -1;
+        boolean chunked = false;
+        boolean closing = statusLine.startsWith("HTTP/1.0");
+        for (String line = readLine(); !line.isEmpty(); line = readLine()) {
+            int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            if (name.equals("content-length")) length = Long.parseLong(value);
+            else if (name.equals("transfer-encoding")) chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+            else if (name.equals("connection")) closing = value.equalsIgnoreCase("close") || (closing && !value.equalsIgnoreCase("keep-alive"));
+        }
+
+        byte[] body;
+        if (status == 204 || status == 304) body = new byte[0];
+        else if (chunked) body = readChunked();
+        else if (length >= 0) body = readFully(length);
+        else throw new IOException("Response from " + host + " has no length, can't pipeline");
+
+        return new Response(status, body, closing);
+    }
+
+    private byte[] readChunked() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        while (true) {
+            String line = readLine();
+            int semicolon = line.indexOf(';');
+            long size = Long.parseLong((semicolon < 0 ? line : line.substring(0, semicolon)).trim(), 16);
+            if (size == 0) {
+                // Trailers
+                while (!readLine().isEmpty());
+                return body.toByteArray();
+            }
+            if (body.size() + size > MAX_BODY) throw new IOException("Response from " + host + " is too big to pipeline");
+            body.write(readFully(size));
+            readLine();
+        }
+    }
+
+    private byte[] readFully(long length) throws IOException {
+        if (length > MAX_BODY) throw new IOException("Response from " + host + " is too big to pipeline");
+        byte[] body = new byte[(int) length];
+        int read = 0;
+        while (read < body.length) {
+            int count = in.read(body, read, body.length - read);
+            if (count == -1) throw new EOFException("Connection to " + host + " closed in the middle of a response");
+            read += count;
+        }
+        return body;
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) throw new EOFException("Connection to " + host + " closed");
+            if (b != '\r') line.append((char) b);
+        }
+        return line.toString();
+    }
+
+    private void disconnect() {
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (IOException ignored) {}
+        socket = null;
+        in = null;
+        out = null;
+    }
+
+    /**
+     * Closes the connection, a fetch running on another thread stops without handling another response
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Socket socket = this.socket;
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,133 @@
+package pojlib.util;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Retries a download the same way in every install stage.
+ * <p>
+ * Only failures that can go away on their own are retried: timeouts, dropped connections, 408/429/5xx answers and
+ * files that didn't match their hash. Anything else, like a 404, fails right away. Waits between attempts use
+ * decorrelated jitter, so downloads that failed together don't hammer the server together again.
+ * <p>
+ * One policy is meant to be shared by a whole stage. All its calls draw from one budget of retries, a stage where
+ * everything keeps failing gives up once that is used up instead of retrying every file.
+ */
+public class RetryPolicy {
+
+    public static final int DEFAULT_ATTEMPTS = 5;
+    public static final long DEFAULT_BASE_DELAY_MS = 500;
+    public static final long DEFAULT_MAX_DELAY_MS = 15000;
+    public static final int DEFAULT_BUDGET = 64;
+
+    public interface Attempt<T> {
+        T run() throws IOException;
+    }
+
+    interface Sleeper {
+        void sleep(long ms) throws InterruptedException;
+    }
+
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final AtomicInteger budget;
+    private final Sleeper sleeper;
+    private final Random random;
+
+    public RetryPolicy() {
+        this(DEFAULT_ATTEMPTS, DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS, DEFAULT_BUDGET);
+    }
+
+    /**
+     * @param maxAttempts Attempts per call, including the first
+     * @param budget Retries shared by every call through this policy
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs, int budget) {
+        this(maxAttempts, baseDelayMs, maxDelayMs, budget, Thread::sleep, new Random());
+    }
+
+    RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs, int budget, Sleeper sleeper, Random random) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.budget = new AtomicInteger(budget);
+        this.sleeper = sleeper;
+        this.random = random;
+    }
+
+    /**
+     * Runs the attempt until it succeeds, fails with something that isn't worth retrying or runs out of attempts
+     * @param what What is being done, for the log
+     * @throws IOException The last failure
+     */
+    public <T> T run(String what, Attempt<T> attempt) throws IOException {
+        long delay = baseDelayMs;
+        for (int i = 1; ; i++) {
+            try {
+                return attempt.run();
+            } catch (IOException e) {
+                if (!isRetriable(e) || i >= maxAttempts) throw e;
+                if (budget.getAndDecrement() <= 0) {
+                    throw new IOException("Gave up on " + what + ", too many failures in this stage", e);
+                }
+
+                delay = nextDelay(delay);
+                Logger.getInstance().appendToLog("Retrying " + what + " in " + delay + "ms (attempt " + (i + 1) + "/" + maxAttempts + "): " + e);
+                try {
+                    sleeper.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while retrying " + what);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Retries left in the budget
+     */
+    public int getBudget() {
+        return Math.max(0, budget.get());
+    }
+
+    /**
+     * Decorrelated jitter, a random wait between the base delay and three times the last one
+     */
+    long nextDelay(long previous) {
+        long upper = Math.max(baseDelayMs + 1, Math.min(maxDelayMs, previous * 3));
+        long delay = baseDelayMs + (long) (random.nextDouble() * (upper - baseDelayMs));
+        return Math.min(maxDelayMs, delay);
+    }
+
+    /**
+     * Whether trying again could help, looks through the causes since failures tend to be wrapped
+     */
+    public static boolean isRetriable(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof HttpStatusException) {
+                int status = ((HttpStatusException) t).status;
+                return status == 408 || status == 425 || status == 429 || status >= 500;
+            }
+            if (t instanceof HashMismatchException) return true;
+            // Covers socket timeouts too
+            if (t instanceof InterruptedIOException) return !(t.getClass() == InterruptedIOException.class);
+            if (t instanceof ConnectException || t instanceof SocketException || t instanceof EOFException
+                    || t instanceof UnknownHostException) return true;
+        }
+        // Other I/O errors from the network are usually transient, a missing file or a full disk isn't
+        return e instanceof IOException && !(e instanceof FileNotFoundException) && !isDiskError(e);
+    }
+
+    private static boolean isDiskError(Throwable e) {
+        String message = e.getMessage();
+        return message != null && (message.contains("ENOSPC") || message.contains("No space left"));
+    }
+}
@@ -348,6 +348,29 @@ JNIEXPORT void JNICALL Java_org_lwjgl_glfw_CallbackBridge_nativeSendScroll(JNIEn
     }
 }
 
+// Events queued by org.lwjgl.glfw.InputQueue, 3 values each: type, x, y
+#define INPUT_BATCH_STRIDE 3
+#define INPUT_BATCH_CHUNK 64
+JNIEXPORT void JNICALL Java_org_lwjgl_glfw_CallbackBridge_nativeSendInputBatch(JNIEnv* env, jclass clazz, jdoubleArray events, jint count) {
+    jdouble chunk[INPUT_BATCH_CHUNK * INPUT_BATCH_STRIDE];
+    for (jint start = 0; start < count; start += INPUT_BATCH_CHUNK) {
+        jint size = count - start < INPUT_BATCH_CHUNK ? count - start : INPUT_BATCH_CHUNK;
+        // Copied out rather than pinned, sending may call into the other vm
+        (*env)->GetDoubleArrayRegion(env, events, start * INPUT_BATCH_STRIDE, size * INPUT_BATCH_STRIDE, chunk);
+        for (jint i = 0; i < size; i++) {
+            jdouble* event = &chunk[i * INPUT_BATCH_STRIDE];
+            switch ((int) event[0]) {
+                case EVENT_TYPE_CURSOR_POS:
+                    Java_org_lwjgl_glfw_CallbackBridge_nativeSendCursorPos(env, clazz, (jfloat) event[1], (jfloat) event[2]);
+                    break;
+                case EVENT_TYPE_SCROLL:
+                    Java_org_lwjgl_glfw_CallbackBridge_nativeSendScroll(env, clazz, event[1], event[2]);
+                    break;
+            }
+        }
+    }
+}
+
 JNIEXPORT void JNICALL Java_org_lwjgl_glfw_GLFW_nglfwSetShowingWindow(JNIEnv* env, jclass clazz, jlong window) {
     showingWindow = (long) window;
 }
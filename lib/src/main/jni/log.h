@@ -4,14 +4,17 @@
 #define TAG "jrelog"
 #endif
 
+#include <stdio.h>
+
 #ifdef __cplusplus
 extern "C" {
 #endif
 
-#define LOGE(...) __android_log_print(ANDROID_LOG_INFO,    TAG, __VA_ARGS__)
+// stderr is read by the log channel, so these end up in latestlog.txt too
+#define LOGE(...) do { __android_log_print(ANDROID_LOG_INFO,    TAG, __VA_ARGS__); fprintf(stderr, __VA_ARGS__); fputc('\n', stderr); } while(0)
 #define LOGW(...) __android_log_print(ANDROID_LOG_SILENT,    TAG, __VA_ARGS__)
 #define LOGI(...) __android_log_print(ANDROID_LOG_SILENT,    TAG, __VA_ARGS__)
-#define LOGD(...) __android_log_print(ANDROID_LOG_INFO,    TAG, __VA_ARGS__)
+#define LOGD(...) do { __android_log_print(ANDROID_LOG_INFO,    TAG, __VA_ARGS__); fprintf(stderr, __VA_ARGS__); fputc('\n', stderr); } while(0)
 
 #ifdef __cplusplus
 }
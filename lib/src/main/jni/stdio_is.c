@@ -4,58 +4,89 @@
 #include <unistd.h>
 #include <pthread.h>
 #include <stdio.h>
+#include <errno.h>
+#include <poll.h>
 
 //
 // Created by maks on 17.02.21.
 //
+// stdout and stderr each go into their own pipe, one thread reads both in large chunks into the
+// channel's direct buffer and lets pojlib.util.LogChannel split and tag the lines.
+//
 static JavaVM *_______jvm;
-static volatile jmethodID _______method;
-static volatile jobject _______obj;
-static int pfd[2];
+static jmethodID _______method;
+static jmethodID _______finish;
+static jobject _______obj;
+static char *_______buf;
+static jlong _______buf_size;
+static int out_pfd[2];
+static int err_pfd[2];
 static pthread_t logger;
-static void *logger_thread() {
+static volatile bool started = false;
+
+static void *logger_thread(void *unused) {
     JNIEnv *env;
-    jstring str;
     (*_______jvm)->AttachCurrentThread(_______jvm,&env,NULL);
-    ssize_t  rsize;
-    char buf[2048];
-    while((rsize = read(pfd[0], buf, sizeof(buf)-1)) > 0) {
-        if(buf[rsize-1]=='\n') {
-            rsize=rsize-1;
+    struct pollfd fds[2] = {
+            { .fd = out_pfd[0], .events = POLLIN },
+            { .fd = err_pfd[0], .events = POLLIN }
+    };
+    int open = 2;
+    while(open > 0) {
+        if(poll(fds, 2, -1) < 0) {
+            if(errno == EINTR) continue;
+            break;
+        }
+        for(int source = 0; source < 2; source++) {
+            if(fds[source].fd < 0 || !(fds[source].revents & (POLLIN | POLLHUP | POLLERR))) continue;
+            ssize_t rsize = read(fds[source].fd, _______buf, _______buf_size);
+            if(rsize > 0) {
+                (*env)->CallVoidMethod(env,_______obj,_______method,source,(jint)rsize);
+                if((*env)->ExceptionCheck(env)) (*env)->ExceptionClear(env);
+            } else if(rsize == 0 || (errno != EINTR && errno != EAGAIN)) {
+                close(fds[source].fd);
+                fds[source].fd = -1;
+                open--;
+            }
         }
-        buf[rsize]=0x00;
-        str = (*env)->NewStringUTF(env,buf);
-        (*env)->CallVoidMethod(env,_______obj,_______method,str);
-        (*env)->DeleteLocalRef(env,str);
     }
-    (*env)->DeleteGlobalRef(env,_______method);
+    (*env)->CallVoidMethod(env,_______obj,_______finish);
+    if((*env)->ExceptionCheck(env)) (*env)->ExceptionClear(env);
     (*env)->DeleteGlobalRef(env,_______obj);
     (*_______jvm)->DetachCurrentThread(_______jvm);
+    return NULL;
 }
-JNIEXPORT void JNICALL
-Java_pojlib_util_JREUtils_logToLogger(JNIEnv *env, jclass clazz, jobject javaLogger) {
-    // TODO: implement logToActivity()
-    jclass loggableActivityClass = (*env)->FindClass(env,"pojlib/util/Logger");
-    _______method = (*env)->GetMethodID(env,loggableActivityClass,"appendToLog", "(Ljava/lang/String;)V");
+
+JNIEXPORT jboolean JNICALL
+Java_pojlib_util_JREUtils_startLogChannel(JNIEnv *env, jclass clazz, jobject channel, jobject buffer) {
+    if(started) return JNI_TRUE;
+
+    jclass channelClass = (*env)->GetObjectClass(env,channel);
+    _______method = (*env)->GetMethodID(env,channelClass,"onNativeData", "(II)V");
+    _______finish = (*env)->GetMethodID(env,channelClass,"finish", "()V");
+    _______buf = (*env)->GetDirectBufferAddress(env,buffer);
+    _______buf_size = (*env)->GetDirectBufferCapacity(env,buffer);
+    if(_______method == NULL || _______finish == NULL || _______buf == NULL) return JNI_FALSE;
     (*env)->GetJavaVM(env,&_______jvm);
-    _______obj = (*env)->NewGlobalRef(env, javaLogger);
+    _______obj = (*env)->NewGlobalRef(env, channel);
 
     setvbuf(stdout, 0, _IOLBF, 0); // make stdout line-buffered
     setvbuf(stderr, 0, _IONBF, 0); // make stderr unbuffered
 
-    /* create the pipe and redirect stdout and stderr */
-    pipe(pfd);
-    dup2(pfd[1], 1);
-    dup2(pfd[1], 2);
+    /* create the pipes and redirect stdout and stderr */
+    if(pipe(out_pfd) == -1 || pipe(err_pfd) == -1) {
+        (*env)->DeleteGlobalRef(env,_______obj);
+        return JNI_FALSE;
+    }
+    dup2(out_pfd[1], 1);
+    dup2(err_pfd[1], 2);
 
     /* spawn the logging thread */
-    if(pthread_create(&logger, 0, logger_thread, 0) == -1) {
-        jstring str = (*env)->NewStringUTF(env,"Failed to start logging!");
-        (*env)->CallVoidMethod(env,_______obj,_______method,str);
-        (*env)->DeleteLocalRef(env,str);
-        (*env)->DeleteGlobalRef(env,_______method);
+    if(pthread_create(&logger, 0, logger_thread, 0) != 0) {
         (*env)->DeleteGlobalRef(env,_______obj);
+        return JNI_FALSE;
     }
     pthread_detach(logger);
-
-}
\ No newline at end of file
+    started = true;
+    return JNI_TRUE;
+}
@@ -30,3 +30,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "Pojlib"
 include("lib")
+include("benchmarks")